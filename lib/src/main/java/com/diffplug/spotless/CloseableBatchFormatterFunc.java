@@ -0,0 +1,50 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless;
+
+import java.io.File;
+import java.util.List;
+
+/** {@link FormatterFunc.Closeable#ofDangerous(AutoCloseable, FormatterFunc)} for a function which supports batches. */
+final class CloseableBatchFormatterFunc implements FormatterFunc.Closeable, FormatterFunc.Batch {
+	private final AutoCloseable closeable;
+	private final FormatterFunc.Batch function;
+
+	CloseableBatchFormatterFunc(AutoCloseable closeable, FormatterFunc.Batch function) {
+		this.closeable = closeable;
+		this.function = function;
+	}
+
+	@Override
+	public void close() {
+		ThrowingEx.run(closeable::close);
+	}
+
+	@Override
+	public String apply(String unix, File file) throws Exception {
+		return function.apply(unix, file);
+	}
+
+	@Override
+	public String apply(String unix) throws Exception {
+		return function.apply(unix);
+	}
+
+	@Override
+	public List<FormatterFunc.BatchResult> applyBatch(List<String> unix, List<File> files) throws Exception {
+		return function.applyBatch(unix, files);
+	}
+}
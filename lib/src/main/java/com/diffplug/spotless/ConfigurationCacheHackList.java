@@ -20,13 +20,14 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serial;
 import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Objects;
 
-import com.diffplug.spotless.yaml.SerializeToByteArrayHack;
-
 /**
  * Gradle requires three things:
  * - Gradle defines cache equality based on your serialized representation
@@ -52,6 +53,10 @@ import com.diffplug.spotless.yaml.SerializeToByteArrayHack;
  * Because it is not possible to provide both at the same time.
  * It is a horrific hack, but it works, and it's the only way I can figure
  * to make Spotless work with all of Gradle's cache systems at once.
+ *
+ * A list which is optimized for equality is only ever serialized to be compared,
+ * so it writes a SHA-256 of each step's equality state instead of the state itself,
+ * and once deserialized it holds only these fingerprints.
  */
 public final class ConfigurationCacheHackList implements Serializable {
 	@Serial
@@ -60,20 +65,14 @@ public final class ConfigurationCacheHackList implements Serializable {
 	private boolean optimizeForEquality;
 	private ArrayList<Object> backingList = new ArrayList<>();
 
-	private boolean shouldWeSerializeToByteArrayFirst() {
-		return backingList.stream().anyMatch(SerializeToByteArrayHack.class::isInstance);
-	}
-
 	private void writeObject(ObjectOutputStream out) throws IOException {
-		boolean serializeToByteArrayFirst = shouldWeSerializeToByteArrayFirst();
-		out.writeBoolean(serializeToByteArrayFirst);
 		out.writeBoolean(optimizeForEquality);
 		out.writeInt(backingList.size());
 		for (Object obj : backingList) {
-			// if write out the list on its own, we'll get java's non-deterministic object-graph serialization
-			// by writing each object to raw bytes independently, we avoid this
-			if (serializeToByteArrayFirst) {
-				out.writeObject(LazyForwardingEquality.toBytes((Serializable) obj));
+			if (optimizeForEquality) {
+				// each step is serialized on its own before it is hashed, so java's object-graph
+				// back-references between steps can't make the fingerprint non-deterministic
+				out.writeObject(fingerprintOf(obj));
 			} else {
 				out.writeObject(obj);
 			}
@@ -81,16 +80,11 @@ public final class ConfigurationCacheHackList implements Serializable {
 	}
 
 	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
-		boolean serializeToByteArrayFirst = in.readBoolean();
 		optimizeForEquality = in.readBoolean();
 		backingList = new ArrayList<>();
 		int size = in.readInt();
 		for (int i = 0; i < size; i++) {
-			if (serializeToByteArrayFirst) {
-				backingList.add(LazyForwardingEquality.fromBytes((byte[]) in.readObject()));
-			} else {
-				backingList.add(in.readObject());
-			}
+			backingList.add(in.readObject());
 		}
 	}
 
@@ -126,6 +120,8 @@ public final class ConfigurationCacheHackList implements Serializable {
 		for (Object obj : backingList) {
 			if (obj instanceof FormatterStepSerializationRoundtrip.HackClone clone) {
 				result.add(clone.rehydrate());
+			} else if (obj instanceof String) {
+				throw new IllegalStateException("A list optimized for equality holds only fingerprints once it has been serialized");
 			} else {
 				result.add((FormatterStep) obj);
 			}
@@ -150,4 +146,22 @@ public final class ConfigurationCacheHackList implements Serializable {
 	public int hashCode() {
 		return Objects.hash(optimizeForEquality, backingList);
 	}
+
+	private static String fingerprintOf(Object obj) {
+		if (obj instanceof FormatterStepSerializationRoundtrip.HackClone<?, ?> clone) {
+			return clone.fingerprint();
+		} else if (obj instanceof String fingerprint) {
+			return fingerprint;
+		} else {
+			return sha256(LazyForwardingEquality.toBytes((Serializable) obj));
+		}
+	}
+
+	static String sha256(byte[] bytes) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Every JVM supports SHA-256", e);
+		}
+	}
 }
@@ -15,6 +15,9 @@
  */
 package com.diffplug.spotless;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 /** Superclass of all compound FormatterSteps necessary for {@link com.diffplug.spotless.LazyForwardingEquality#unlazy(java.lang.Object)}. */
@@ -30,8 +33,48 @@ abstract class DelegateFormatterStep implements FormatterStep {
 		return delegateStep.getName();
 	}
 
+	@Override
+	public boolean supportsBatch() throws Exception {
+		return delegateStep.supportsBatch();
+	}
+
+	@Override
+	public boolean isReusable() {
+		return delegateStep.isReusable();
+	}
+
 	@Override
 	public void close() throws Exception {
 		delegateStep.close();
 	}
+
+	/** Which files of a batch the delegate applies to, the others are left unchanged. */
+	interface AppliesTo {
+		boolean test(String rawUnix, File file);
+	}
+
+	/** Passes the files which the delegate applies to as one batch to the delegate, and leaves the others unchanged. */
+	List<FormatterFunc.BatchResult> formatBatchWhere(List<String> rawUnix, List<File> files, AppliesTo appliesTo) throws Exception {
+		List<Integer> applied = new ArrayList<>();
+		List<String> appliedUnix = new ArrayList<>();
+		List<File> appliedFiles = new ArrayList<>();
+		for (int i = 0; i < files.size(); i++) {
+			if (appliesTo.test(rawUnix.get(i), files.get(i))) {
+				applied.add(i);
+				appliedUnix.add(rawUnix.get(i));
+				appliedFiles.add(files.get(i));
+			}
+		}
+		List<FormatterFunc.BatchResult> results = new ArrayList<>(files.size());
+		for (String unix : rawUnix) {
+			results.add(FormatterFunc.BatchResult.of(unix));
+		}
+		if (!applied.isEmpty()) {
+			List<FormatterFunc.BatchResult> appliedResults = delegateStep.formatBatch(appliedUnix, appliedFiles);
+			for (int i = 0; i < applied.size(); i++) {
+				results.set(applied.get(i), appliedResults.get(i));
+			}
+		}
+		return results;
+	}
 }
@@ -32,19 +32,33 @@ import javax.annotation.Nullable;
  */
 public class DirtyState {
 	@Nullable private final byte[] canonicalBytes;
+	private final boolean paddedCell;
 
 	DirtyState(@Nullable byte[] canonicalBytes) {
+		this(canonicalBytes, false);
+	}
+
+	private DirtyState(@Nullable byte[] canonicalBytes, boolean paddedCell) {
 		this.canonicalBytes = canonicalBytes;
+		this.paddedCell = paddedCell;
 	}
 
 	public boolean isClean() {
-		return this == IS_CLEAN;
+		return this == IS_CLEAN || this == IS_CLEAN_AFTER_PADDED_CELL;
 	}
 
 	public boolean didNotConverge() {
 		return this == DID_NOT_CONVERGE;
 	}
 
+	/**
+	 * Returns true if formatting twice didn't settle the file, so that {@link PaddedCell} had to find its canonical
+	 * form, or found that it does not converge. Such a file may be clean, if it already is the canonical form of a cycle.
+	 */
+	public boolean isPaddedCell() {
+		return paddedCell;
+	}
+
 	byte[] canonicalBytes() {
 		if (canonicalBytes == null) {
 			throw new IllegalStateException("First make sure that {@code !isClean()} and {@code !didNotConverge()}");
@@ -65,8 +79,9 @@ public class DirtyState {
 		return IS_CLEAN;
 	}
 
-	static final DirtyState DID_NOT_CONVERGE = new DirtyState(null);
+	static final DirtyState DID_NOT_CONVERGE = new DirtyState(null, true);
 	static final DirtyState IS_CLEAN = new DirtyState(null);
+	private static final DirtyState IS_CLEAN_AFTER_PADDED_CELL = new DirtyState(null, true);
 
 	public static DirtyState of(Formatter formatter, File file) throws IOException {
 		return of(formatter, file, Files.readAllBytes(file.toPath()));
@@ -121,9 +136,9 @@ public class DirtyState {
 		byte[] canonicalBytes = canonical.getBytes(formatter.getEncoding());
 		if (!Arrays.equals(rawBytes, canonicalBytes)) {
 			// and write them to disk if needed
-			return new DirtyState(canonicalBytes);
+			return new DirtyState(canonicalBytes, true);
 		} else {
-			return IS_CLEAN;
+			return IS_CLEAN_AFTER_PADDED_CELL;
 		}
 	}
 }
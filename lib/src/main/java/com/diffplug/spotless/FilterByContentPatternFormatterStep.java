@@ -55,6 +55,11 @@ final class FilterByContentPatternFormatterStep extends DelegateFormatterStep {
 		}
 	}
 
+	@Override
+	public List<FormatterFunc.BatchResult> formatBatch(List<String> rawUnix, List<File> files) throws Exception {
+		return formatBatchWhere(rawUnix, files, (raw, file) -> contentPattern.matcher(raw).find() == (onMatch == OnMatch.INCLUDE));
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) {
@@ -52,6 +52,11 @@ final class FilterByFileFormatterStep extends DelegateFormatterStep {
 		}
 	}
 
+	@Override
+	public List<FormatterFunc.BatchResult> formatBatch(List<String> rawUnix, List<File> files) throws Exception {
+		return formatBatchWhere(rawUnix, files, (raw, file) -> filter.accept(file));
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) {
@@ -25,10 +25,15 @@ import java.io.ObjectStreamException;
 import java.io.Serial;
 import java.io.Serializable;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
+import javax.annotation.Nullable;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +47,8 @@ public final class Formatter implements Serializable, AutoCloseable {
 	private LineEnding.Policy lineEndingsPolicy;
 	private Charset encoding;
 	private List<FormatterStep> steps;
+	/** Results of {@link #prefetch(List)}, one map per step, not serialized. */
+	private transient @Nullable List<Map<PrefetchKey, FormatterFunc.BatchResult>> prefetched;
 
 	private Formatter(LineEnding.Policy lineEndingsPolicy, Charset encoding, List<FormatterStep> steps) {
 		this.lineEndingsPolicy = Objects.requireNonNull(lineEndingsPolicy, "lineEndingsPolicy");
@@ -169,7 +176,8 @@ public final class Formatter implements Serializable, AutoCloseable {
 			FormatterStep step = steps.get(i);
 			Throwable storeForStep;
 			try {
-				String formatted = step.format(unix, file);
+				FormatterFunc.BatchResult prefetchedResult = prefetched == null ? null : prefetched.get(i).get(new PrefetchKey(file, unix));
+				String formatted = prefetchedResult != null ? prefetchedResult.get() : step.format(unix, file);
 				if (formatted == null) {
 					// This probably means it was a step that only checks
 					// for errors and doesn't actually have any fixes.
@@ -194,6 +202,158 @@ public final class Formatter implements Serializable, AutoCloseable {
 		return unix;
 	}
 
+	/**
+	 * Formats the given files ahead of time, so that steps which support {@link FormatterFunc.Batch} can
+	 * process them in one call instead of one call per file. The results are kept until the next call to
+	 * this method or to {@link #clearPrefetch()}, and are used when exactly these files with exactly this content are formatted, including
+	 * the second round which checks that the result converged. Files which can't be read are skipped, they
+	 * will report their problem when they are actually formatted.
+	 * <p>
+	 * Only the steps up to the first step which doesn't support batches are prefetched, since all later
+	 * steps depend on its result, which is only computed when the files are actually formatted. If a step
+	 * fails for the whole batch, nothing is stored for it, and it formats the files one by one instead.
+	 * <p>
+	 * Does nothing if none of the steps supports batches. Callers should pass moderately sized chunks of
+	 * files, because the intermediate results of all steps are held in memory.
+	 */
+	public void prefetch(List<File> files) {
+		clearPrefetch();
+		if (files.isEmpty() || !supportsBatch()) {
+			return;
+		}
+		List<File> toFormat = new ArrayList<>(files.size());
+		List<String> unix = new ArrayList<>(files.size());
+		for (File file : files) {
+			try {
+				byte[] rawBytes = Files.readAllBytes(file.toPath());
+				String raw = new String(rawBytes, encoding);
+				if (EncodingErrorMsg.msg(raw, rawBytes, encoding) == null) {
+					toFormat.add(file);
+					unix.add(LineEnding.toUnix(raw));
+				}
+			} catch (IOException e) {
+				// reported when the file is formatted for real
+			}
+		}
+		List<Map<PrefetchKey, FormatterFunc.BatchResult>> results = new ArrayList<>(steps.size());
+		for (int i = 0; i < steps.size(); i++) {
+			results.add(new HashMap<>());
+		}
+		// the first pass formats the content, the second pass checks whether the formatted content converged
+		for (int pass = 0; pass < 2 && !toFormat.isEmpty(); pass++) {
+			List<String> original = unix;
+			unix = new ArrayList<>(original);
+			for (int i = 0; i < steps.size(); i++) {
+				List<FormatterFunc.BatchResult> stepResults = batchOrNull(steps.get(i), unix, toFormat);
+				if (stepResults == null) {
+					// the remaining steps and the second pass depend on content which is not known yet
+					prefetched = results;
+					return;
+				}
+				for (int j = 0; j < toFormat.size(); j++) {
+					FormatterFunc.BatchResult result = stepResults.get(j);
+					results.get(i).put(new PrefetchKey(toFormat.get(j), unix.get(j)), result);
+					try {
+						String formatted = result.get();
+						if (formatted != null) {
+							unix.set(j, LineEnding.toUnix(formatted));
+						}
+					} catch (Exception e) {
+						// stored for the step, the content continues unchanged like in computeWithLint
+					}
+				}
+			}
+			List<File> changedFiles = new ArrayList<>();
+			List<String> changedUnix = new ArrayList<>();
+			for (int j = 0; j < toFormat.size(); j++) {
+				if (!unix.get(j).equals(original.get(j))) {
+					changedFiles.add(toFormat.get(j));
+					changedUnix.add(unix.get(j));
+				}
+			}
+			toFormat = changedFiles;
+			unix = changedUnix;
+		}
+		prefetched = results;
+	}
+
+	/**
+	 * Drops the results of {@link #prefetch(List)}, so that a formatter which is handed over to somebody else
+	 * neither holds on to their memory nor returns them for files whose content is only equal by chance.
+	 */
+	public void clearPrefetch() {
+		prefetched = null;
+	}
+
+	/** Returns the results of the step for a batch, or null if the step doesn't support batches or failed for the whole batch. */
+	private static @Nullable List<FormatterFunc.BatchResult> batchOrNull(FormatterStep step, List<String> unix, List<File> files) {
+		try {
+			if (!step.supportsBatch()) {
+				return null;
+			}
+			List<FormatterFunc.BatchResult> results = step.formatBatch(unix, files);
+			if (results.size() != files.size()) {
+				LOGGER.warn("Step '{}' returned {} results for a batch of {} files, formatting them one by one", step.getName(), results.size(), files.size());
+				return null;
+			}
+			return results;
+		} catch (Exception e) {
+			LOGGER.debug("Step '{}' failed for a batch of {} files, formatting them one by one", step.getName(), files.size(), e);
+			return null;
+		}
+	}
+
+	/** Returns true if any of the steps can format many files in one call, which makes {@link #prefetch(List)} worthwhile. */
+	public boolean supportsBatch() {
+		for (FormatterStep step : steps) {
+			try {
+				if (step.supportsBatch()) {
+					return true;
+				}
+			} catch (Exception e) {
+				// reported when the step is used for real
+			}
+		}
+		return false;
+	}
+
+	/** Returns true if all steps are {@link FormatterStep#isReusable() reusable}, so that this formatter can stand in for an equal one. */
+	public boolean isReusable() {
+		for (FormatterStep step : steps) {
+			if (!step.isReusable()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static final class PrefetchKey {
+		private final File file;
+		private final String unix;
+
+		PrefetchKey(File file, String unix) {
+			this.file = file;
+			this.unix = unix;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof PrefetchKey)) {
+				return false;
+			}
+			PrefetchKey that = (PrefetchKey) o;
+			return file.equals(that.file) && unix.equals(that.unix);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * file.hashCode() + unix.hashCode();
+		}
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -223,6 +383,7 @@ public final class Formatter implements Serializable, AutoCloseable {
 	@SuppressWarnings("rawtypes")
 	@Override
 	public void close() {
+		clearPrefetch();
 		for (FormatterStep step : steps) {
 			try {
 				step.close();
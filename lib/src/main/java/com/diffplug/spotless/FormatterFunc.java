@@ -19,6 +19,8 @@ import java.io.File;
 import java.util.List;
 import java.util.Objects;
 
+import javax.annotation.Nullable;
+
 /**
  * A {@code Function<String, String>} which can throw an exception.  Technically, there
  * is also a {@code File} argument which gets passed around as well, but that is invisible
@@ -62,6 +64,9 @@ public interface FormatterFunc {
 		public static Closeable ofDangerous(AutoCloseable closeable, FormatterFunc function) {
 			Objects.requireNonNull(closeable, "closeable");
 			Objects.requireNonNull(function, "function");
+			if (function instanceof Batch batch) {
+				return new CloseableBatchFormatterFunc(closeable, batch);
+			}
 			return new Closeable() {
 				@Override
 				public void close() {
@@ -163,6 +168,51 @@ public interface FormatterFunc {
 		return needsFile;
 	}
 
+	/**
+	 * A {@link FormatterFunc} which can format many files at once, e.g. in a single round trip
+	 * to a formatter server. Used by {@link Formatter#prefetch(List)}.
+	 */
+	interface Batch extends FormatterFunc {
+		/**
+		 * Formats {@code unix.get(i)}, which is the content of {@code files.get(i)}, for every {@code i}.
+		 * A problem with a single file must be returned as a {@link BatchResult#failed(Throwable)} for
+		 * that file, an exception thrown from this method fails the whole batch.
+		 *
+		 * @return one result per file, in the same order as {@code files}
+		 */
+		List<BatchResult> applyBatch(List<String> unix, List<File> files) throws Exception;
+	}
+
+	/** The outcome of formatting a single file in a {@link Batch}: either the formatted content, or the problem. */
+	final class BatchResult {
+		private final @Nullable String formatted;
+		private final @Nullable Throwable problem;
+
+		private BatchResult(@Nullable String formatted, @Nullable Throwable problem) {
+			this.formatted = formatted;
+			this.problem = problem;
+		}
+
+		public static BatchResult of(@Nullable String formatted) {
+			return new BatchResult(formatted, null);
+		}
+
+		public static BatchResult failed(Throwable problem) {
+			return new BatchResult(null, Objects.requireNonNull(problem));
+		}
+
+		/** Returns the formatted content, or throws the problem. */
+		public @Nullable String get() throws Exception {
+			if (problem == null) {
+				return formatted;
+			} else if (problem instanceof Exception exception) {
+				throw exception;
+			} else {
+				throw ThrowingEx.asRuntimeRethrowError(problem);
+			}
+		}
+	}
+
 	/** @see FormatterFunc#needsFile(NeedsFile) */
 	@FunctionalInterface
 	interface NeedsFile extends FormatterFunc {
@@ -17,6 +17,8 @@ package com.diffplug.spotless;
 
 import java.io.File;
 import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
@@ -63,6 +65,47 @@ public interface FormatterStep extends Serializable, AutoCloseable {
 		return List.of();
 	}
 
+	/**
+	 * Formats several files at once, where {@code rawUnix.get(i)} is the content of {@code files.get(i)}.
+	 * Steps whose formatter implements {@link FormatterFunc.Batch} do this in a single call, all others
+	 * simply format one file after another.
+	 *
+	 * @return one result per file, in the same order as {@code files}
+	 * @throws Exception if the whole batch failed, in which case the files are formatted one by one instead
+	 */
+	default List<FormatterFunc.BatchResult> formatBatch(List<String> rawUnix, List<File> files) throws Exception {
+		List<FormatterFunc.BatchResult> results = new ArrayList<>(files.size());
+		for (int i = 0; i < files.size(); i++) {
+			try {
+				results.add(FormatterFunc.BatchResult.of(format(rawUnix.get(i), files.get(i))));
+			} catch (Throwable e) {
+				results.add(FormatterFunc.BatchResult.failed(e));
+			}
+		}
+		return results;
+	}
+
+	/** Returns true if {@link #formatBatch(List, List)} is cheaper than formatting the files one by one. */
+	default boolean supportsBatch() throws Exception {
+		return false;
+	}
+
+	/**
+	 * Returns false if an equal step can't stand in for this one, because this one gave up on the remaining files, or
+	 * because its equality doesn't capture everything it does.
+	 */
+	default boolean isReusable() {
+		return true;
+	}
+
+	/**
+	 * Returns a new FormatterStep which is never reused in place of an equal step, for steps whose equality doesn't
+	 * capture everything they do, such as a user-provided function.
+	 */
+	default FormatterStep notReusable() {
+		return new NotReusableFormatterStep(this);
+	}
+
 	/**
 	 * Returns a new {@code FormatterStep} which, observing the value of {@code formatIfMatches},
 	 * will only apply, or not, its changes to files which pass the given filter.
@@ -87,6 +130,21 @@ public interface FormatterStep extends Serializable, AutoCloseable {
 		return new FilterByFileFormatterStep(this, filter);
 	}
 
+	/**
+	 * Returns a new FormatterStep which fails a file if this step doesn't finish it within the given
+	 * time budget. On timeout this step is closed, which kills the processes and servers it started,
+	 * and the error names the offending file.
+	 *
+	 * @param timeout
+	 *            the time budget for formatting a single file
+	 * @param restartAfterTimeout
+	 *            if true, the tool is started again for the remaining files, otherwise
+	 *            all remaining files fail immediately
+	 */
+	default FormatterStep withTimeout(Duration timeout, boolean restartAfterTimeout) {
+		return new TimeoutFormatterStep(this, timeout, restartAfterTimeout);
+	}
+
 	/**
 	 * @param name
 	 *             The name of the formatter step.
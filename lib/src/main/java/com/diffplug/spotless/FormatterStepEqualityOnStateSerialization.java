@@ -45,18 +45,32 @@ abstract class FormatterStepEqualityOnStateSerialization<State extends Serializa
 
 	@Override
 	public String format(String rawUnix, File file) throws Exception {
-		if (formatter == null) {
-			formatter = stateToFormatter(state());
-		}
-		return formatter.apply(rawUnix, file);
+		return formatter().apply(rawUnix, file);
 	}
 
 	@Override
 	public List<Lint> lint(String content, File file) throws Exception {
+		return formatter().lint(content, file);
+	}
+
+	@Override
+	public List<FormatterFunc.BatchResult> formatBatch(List<String> rawUnix, List<File> files) throws Exception {
+		if (formatter() instanceof FormatterFunc.Batch batch) {
+			return batch.applyBatch(rawUnix, files);
+		}
+		return FormatterStep.super.formatBatch(rawUnix, files);
+	}
+
+	@Override
+	public boolean supportsBatch() throws Exception {
+		return formatter() instanceof FormatterFunc.Batch;
+	}
+
+	private FormatterFunc formatter() throws Exception {
 		if (formatter == null) {
 			formatter = stateToFormatter(state());
 		}
-		return formatter.lint(content, file);
+		return formatter;
 	}
 
 	@Override
@@ -102,6 +102,8 @@ final class FormatterStepSerializationRoundtrip<RoundtripState extends Serializa
 		transient FormatterStepSerializationRoundtrip<?, ?> original;
 		boolean optimizeForEquality;
 		@Nullable FormatterStepSerializationRoundtrip cleaned;
+		@SuppressFBWarnings(value = "SE_TRANSIENT_FIELD_NOT_RESTORED", justification = "HackClone")
+		private transient @Nullable String fingerprint;
 
 		HackClone(@Nullable FormatterStepSerializationRoundtrip<RoundtripState, EqualityState> original, boolean optimizeForEquality) {
 			this.original = original;
@@ -121,6 +123,14 @@ final class FormatterStepSerializationRoundtrip<RoundtripState extends Serializa
 			out.defaultWriteObject();
 		}
 
+		/** A SHA-256 of the serialized form, computed once since steps are immutable. */
+		synchronized String fingerprint() {
+			if (fingerprint == null) {
+				fingerprint = ConfigurationCacheHackList.sha256(LazyForwardingEquality.toBytes(this));
+			}
+			return fingerprint;
+		}
+
 		public FormatterStep rehydrate() {
 			return original != null ? original : Objects.requireNonNull(cleaned, "how is clean null if this has been serialized?");
 		}
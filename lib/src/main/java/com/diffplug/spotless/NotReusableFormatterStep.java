@@ -0,0 +1,70 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless;
+
+import java.io.File;
+import java.io.Serial;
+import java.util.List;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+/** A step whose equality doesn't capture everything it does, so an equal step must never be used in its place. */
+final class NotReusableFormatterStep extends DelegateFormatterStep {
+	NotReusableFormatterStep(FormatterStep delegateStep) {
+		super(delegateStep);
+	}
+
+	@Override
+	public @Nullable String format(String rawUnix, File file) throws Exception {
+		return delegateStep.format(rawUnix, file);
+	}
+
+	@Override
+	public List<Lint> lint(String content, File file) throws Exception {
+		return delegateStep.lint(content, file);
+	}
+
+	@Override
+	public List<FormatterFunc.BatchResult> formatBatch(List<String> rawUnix, List<File> files) throws Exception {
+		return delegateStep.formatBatch(rawUnix, files);
+	}
+
+	@Override
+	public boolean isReusable() {
+		return false;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		NotReusableFormatterStep that = (NotReusableFormatterStep) o;
+		return Objects.equals(delegateStep, that.delegateStep);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(NotReusableFormatterStep.class, delegateStep);
+	}
+
+	@Serial
+	private static final long serialVersionUID = 1L;
+}
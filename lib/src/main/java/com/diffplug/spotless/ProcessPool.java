@@ -0,0 +1,247 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of warm instances of a long-running tool which talks a request/response protocol over
+ * its stdin and stdout, see {@link ProcessRunner#startInteractive(File, Map, List)}.
+ * <p>
+ * The processes are started lazily when they are first needed, so a pool of size {@code K} only
+ * ever starts as many processes as there are concurrent callers, up to {@code K}. Each call to
+ * {@link #call(Exchange)} borrows one process exclusively, so the protocol doesn't need to be
+ * thread-safe, and the pool as a whole can be used from any number of threads.
+ * <p>
+ * Before every exchange the process is checked to be alive, and a dead process is restarted.
+ * If an exchange fails with an {@link IOException}, which usually means the tool crashed
+ * or closed its streams, the process is restarted and the exchange is retried once. Exchanges
+ * must therefore be safe to repeat. If an exchange fails for any other reason, the state of the
+ * protocol is unknown, so the process is killed and restarted on its next use.
+ * <p>
+ * If the pool has a timeout, a process which doesn't complete an exchange within that time is
+ * killed, and the exchange fails with a {@link TimeoutException} without being retried.
+ */
+public final class ProcessPool implements AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ProcessPool.class);
+
+	/** How much of stderr is kept for diagnostics when a process dies. */
+	private static final int STDERR_CAPACITY = 64 * 1024;
+
+	/** Starts a new instance of the tool using the given runner, usually via {@link ProcessRunner#startInteractive(File, Map, List)}. */
+	@FunctionalInterface
+	public interface Launcher {
+		ProcessRunner.LongRunningProcess start(ProcessRunner runner) throws IOException;
+	}
+
+	/** One request/response round trip with a process of the pool. */
+	@FunctionalInterface
+	public interface Exchange<T> {
+		T exchange(ProcessRunner.LongRunningProcess process) throws Exception;
+	}
+
+	private final String name;
+	private final Launcher launcher;
+	private final @Nullable Duration timeout;
+	private final @Nullable ScheduledExecutorService watchdog;
+	private final List<Slot> slots;
+	private final BlockingQueue<Slot> idle;
+	private volatile boolean closed;
+
+	private ProcessPool(String name, int size, @Nullable Duration timeout, Launcher launcher) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Pool size must be at least 1, was " + size);
+		}
+		this.name = name;
+		this.launcher = launcher;
+		this.timeout = timeout;
+		this.watchdog = timeout == null ? null : Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "spotless-process-pool-watchdog");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.slots = new ArrayList<>(size);
+		this.idle = new ArrayBlockingQueue<>(size);
+		for (int i = 0; i < size; ++i) {
+			Slot slot = new Slot();
+			slots.add(slot);
+			idle.add(slot);
+		}
+	}
+
+	/** Creates a pool of up to {@code size} processes which are started by the given launcher. */
+	public static ProcessPool create(String name, int size, Launcher launcher) {
+		return new ProcessPool(name, size, null, launcher);
+	}
+
+	/** Creates a pool of up to {@code size} processes which are started by the given launcher, and killed if an exchange takes longer than {@code timeout}. */
+	public static ProcessPool create(String name, int size, Duration timeout, Launcher launcher) {
+		return new ProcessPool(name, size, Objects.requireNonNull(timeout, "timeout"), launcher);
+	}
+
+	/** Creates a pool of up to {@code size} processes which are started with the given arguments. */
+	public static ProcessPool create(int size, @Nullable File cwd, @Nullable Map<String, String> environment, List<String> args) {
+		List<String> argsCopy = List.copyOf(args);
+		return new ProcessPool(argsCopy.get(0), size, null, runner -> runner.startInteractive(cwd, environment, argsCopy));
+	}
+
+	/** Creates a pool of up to {@code size} processes which are started with the given arguments, and killed if an exchange takes longer than {@code timeout}. */
+	public static ProcessPool create(int size, @Nullable File cwd, @Nullable Map<String, String> environment, List<String> args, Duration timeout) {
+		List<String> argsCopy = List.copyOf(args);
+		return new ProcessPool(argsCopy.get(0), size, Objects.requireNonNull(timeout, "timeout"), runner -> runner.startInteractive(cwd, environment, argsCopy));
+	}
+
+	/** The maximum number of processes in this pool. */
+	public int size() {
+		return slots.size();
+	}
+
+	/** Borrows a process, waiting until one is available, and runs the given exchange with it. */
+	public <T> T call(Exchange<T> exchange) throws Exception {
+		checkOpen();
+		Slot slot = idle.take();
+		try {
+			checkOpen();
+			return slot.call(exchange);
+		} finally {
+			idle.add(slot);
+		}
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("ProcessPool for " + name + " has been closed and must not be used anymore.");
+		}
+	}
+
+	/** Kills all processes of the pool. */
+	@Override
+	public void close() {
+		closed = true;
+		if (watchdog != null) {
+			watchdog.shutdownNow();
+		}
+		for (Slot slot : slots) {
+			slot.kill();
+		}
+	}
+
+	private final class Slot {
+		private volatile @Nullable ProcessRunner.LongRunningProcess process;
+
+		private volatile boolean timedOut;
+
+		<T> T call(Exchange<T> exchange) throws Exception {
+			try {
+				return exchangeWithTimeout(exchange);
+			} catch (IOException e) {
+				if (timedOut) {
+					throw timeoutException();
+				}
+				String stderr = kill();
+				LOGGER.warn("Restarting {} after it failed with '{}'{}", name, e.getMessage(), stderr);
+				try {
+					return exchangeWithTimeout(exchange);
+				} catch (Exception retryFailure) {
+					kill();
+					throw timedOut ? timeoutException() : retryFailure;
+				}
+			} catch (Exception e) {
+				kill();
+				throw timedOut ? timeoutException() : e;
+			}
+		}
+
+		private <T> T exchangeWithTimeout(Exchange<T> exchange) throws Exception {
+			ProcessRunner.LongRunningProcess current = ensureAlive();
+			if (watchdog == null) {
+				return exchange.exchange(current);
+			}
+			timedOut = false;
+			ScheduledFuture<?> kill = watchdog.schedule(() -> {
+				timedOut = true;
+				current.destroyForcibly();
+			}, timeout.toMillis(), TimeUnit.MILLISECONDS);
+			try {
+				return exchange.exchange(current);
+			} finally {
+				kill.cancel(false);
+			}
+		}
+
+		private TimeoutException timeoutException() {
+			kill();
+			return new TimeoutException(name + " did not respond within " + timeout + " and was killed");
+		}
+
+		private ProcessRunner.LongRunningProcess ensureAlive() throws IOException {
+			ProcessRunner.LongRunningProcess current = process;
+			if (current != null && !current.isAlive()) {
+				String stderr = kill();
+				LOGGER.warn("Restarting {} after it exited unexpectedly{}", name, stderr);
+				current = null;
+			}
+			if (current == null) {
+				current = launcher.start(ProcessRunner.usingRingBuffersOfCapacity(STDERR_CAPACITY));
+				process = current;
+			}
+			return current;
+		}
+
+		/** Kills the process if there is one, and returns its stderr for diagnostics. */
+		String kill() {
+			ProcessRunner.LongRunningProcess current = process;
+			process = null;
+			if (current == null) {
+				return "";
+			}
+			try {
+				current.destroy();
+				if (!current.waitFor(5, TimeUnit.SECONDS)) {
+					current.destroyForcibly().waitFor();
+				}
+				String stderr = current.result().stdErrUtf8().trim();
+				return stderr.isEmpty() ? "" : ", stderr:\n" + stderr;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return "";
+			} catch (ExecutionException e) {
+				return "";
+			} finally {
+				current.close();
+			}
+		}
+	}
+}
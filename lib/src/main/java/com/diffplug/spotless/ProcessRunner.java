@@ -27,6 +27,9 @@ import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -46,12 +49,16 @@ import javax.annotation.Nullable;
  * flushing stdout and stderr to buffers.  These threads will remain alive until
  * the ProcessRunner is closed, so it is especially useful for repeated
  * calls to an external process.
+ * <p>
+ * Closing the ProcessRunner kills all processes which it started and which
+ * are still running, so that a hung process can be aborted from another thread.
  */
 public class ProcessRunner implements AutoCloseable {
 	private final ExecutorService threadStdOut = Executors.newSingleThreadExecutor();
 	private final ExecutorService threadStdErr = Executors.newSingleThreadExecutor();
 	private final ByteArrayOutputStream bufStdOut;
 	private final ByteArrayOutputStream bufStdErr;
+	private final Set<Process> running = ConcurrentHashMap.newKeySet();
 
 	public ProcessRunner() {
 		this(-1);
@@ -117,6 +124,12 @@ public class ProcessRunner implements AutoCloseable {
 			return process.result();
 		} catch (ExecutionException e) {
 			throw ThrowingEx.asRuntime(e);
+		} catch (InterruptedException e) {
+			// the caller gave up on the process, e.g. after a timeout, so it must not outlive the call
+			process.destroyForcibly();
+			throw e;
+		} finally {
+			running.remove(process.delegate);
 		}
 	}
 
@@ -154,6 +167,7 @@ public class ProcessRunner implements AutoCloseable {
 		}
 
 		Process process = builder.start();
+		running.add(process);
 		Future<byte[]> outputFut = threadStdOut.submit(() -> drainToBytes(process.getInputStream(), bufStdOut));
 		Future<byte[]> errorFut = null;
 		if (!redirectErrorStream) {
@@ -166,6 +180,32 @@ public class ProcessRunner implements AutoCloseable {
 		return new LongRunningProcess(process, args, outputFut, errorFut);
 	}
 
+	/**
+	 * Creates a process with the given arguments whose stdin and stdout are left open, so that
+	 * the caller can talk to the process with its own protocol via {@link LongRunningProcess#getOutputStream()}
+	 * and {@link LongRunningProcess#getInputStream()}.
+	 * <br>
+	 * Only stderr is drained, ideally into a ring buffer (see {@link #usingRingBuffersOfCapacity(int)}) so that a chatty
+	 * process can't exhaust memory. Its content is available from {@link LongRunningProcess#result()} once the process
+	 * has exited, {@link Result#stdOut()} is always empty for an interactive process.
+	 * <br>
+	 * To dispose this {@code ProcessRunner} instance, call {@link LongRunningProcess#close()}, which also kills the process.
+	 */
+	public LongRunningProcess startInteractive(@Nullable File cwd, @Nullable Map<String, String> environment, List<String> args) throws IOException {
+		checkState();
+		ProcessBuilder builder = new ProcessBuilder(args);
+		if (cwd != null) {
+			builder.directory(cwd);
+		}
+		if (environment != null) {
+			builder.environment().putAll(environment);
+		}
+		Process process = builder.start();
+		running.add(process);
+		Future<byte[]> errorFut = threadStdErr.submit(() -> drainToBytes(process.getErrorStream(), bufStdErr));
+		return new LongRunningProcess(process, args, CompletableFuture.completedFuture(new byte[0]), errorFut);
+	}
+
 	private static void drain(InputStream input, OutputStream output) throws IOException {
 		byte[] buf = new byte[1024];
 		int numRead;
@@ -182,6 +222,12 @@ public class ProcessRunner implements AutoCloseable {
 
 	@Override
 	public void close() {
+		for (Process process : running) {
+			if (process.isAlive()) {
+				process.destroyForcibly();
+			}
+		}
+		running.clear();
 		threadStdOut.shutdown();
 		threadStdErr.shutdown();
 	}
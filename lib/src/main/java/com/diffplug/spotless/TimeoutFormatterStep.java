@@ -0,0 +1,211 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless;
+
+import java.io.File;
+import java.io.Serial;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Runs the delegate step on a worker thread and gives up on a file once the time budget is exhausted.
+ * <p>
+ * A timed out worker is interrupted, and once it stopped the delegate is closed to kill whatever tool
+ * it was waiting on. Steps created by {@link FormatterStep#createLazy} recreate their tool on the next
+ * call after being closed, which is what makes the restart work. A worker which ignores the interrupt
+ * is abandoned, and closes its delegate once it stops, while a fresh copy of the delegate handles the
+ * remaining files, so that a delegate is never closed while it is still formatting.
+ */
+@SuppressFBWarnings("SE_TRANSIENT_FIELD_NOT_RESTORED")
+final class TimeoutFormatterStep extends DelegateFormatterStep {
+	private static final Logger LOGGER = LoggerFactory.getLogger(TimeoutFormatterStep.class);
+
+	/** The longest time to wait for an interrupted worker to stop before abandoning it. */
+	private static final Duration MAX_STOP_WAIT = Duration.ofSeconds(5);
+
+	private final Duration timeout;
+	private final boolean restartAfterTimeout;
+
+	// guarded by this
+	private transient @Nullable ExecutorService worker;
+	private transient @Nullable FormatterStep current;
+	private transient boolean delegateAbandoned;
+	private transient volatile @Nullable String gaveUpOn;
+
+	TimeoutFormatterStep(FormatterStep delegateStep, Duration timeout, boolean restartAfterTimeout) {
+		super(delegateStep);
+		this.timeout = Objects.requireNonNull(timeout);
+		this.restartAfterTimeout = restartAfterTimeout;
+	}
+
+	/** The file this step timed out on if it is disabled for the remaining files, otherwise null. */
+	@Nullable
+	String gaveUpOn() {
+		return gaveUpOn;
+	}
+
+	@Override
+	public @Nullable String format(String rawUnix, File file) throws Exception {
+		return withTimeout(file.toString(), timeout, restartAfterTimeout, step -> step.format(rawUnix, file));
+	}
+
+	@Override
+	public List<Lint> lint(String content, File file) throws Exception {
+		return withTimeout(file.toString(), timeout, restartAfterTimeout, step -> step.lint(content, file));
+	}
+
+	/**
+	 * The budget of a batch is the budget of all its files. A timed out batch doesn't tell which file was
+	 * the problem, so the step is always restarted, and the files are formatted one by one instead.
+	 */
+	@Override
+	public List<FormatterFunc.BatchResult> formatBatch(List<String> rawUnix, List<File> files) throws Exception {
+		Duration budget = timeout.multipliedBy(Math.max(1, files.size()));
+		return withTimeout("a batch of " + files.size() + " files", budget, true, step -> step.formatBatch(rawUnix, files));
+	}
+
+	@Override
+	public boolean supportsBatch() throws Exception {
+		return gaveUpOn == null && currentStep().supportsBatch();
+	}
+
+	@Override
+	public boolean isReusable() {
+		return gaveUpOn == null && currentStep().isReusable();
+	}
+
+	/** The step which handles the next call, never one which an abandoned worker may still be using. */
+	private synchronized FormatterStep currentStep() {
+		if (current == null) {
+			current = delegateAbandoned ? copyOf(delegateStep) : delegateStep;
+		}
+		return current;
+	}
+
+	private interface StepCall<T> {
+		T call(FormatterStep step) throws Exception;
+	}
+
+	private synchronized <T> T withTimeout(String what, Duration budget, boolean restart, StepCall<T> call) throws Exception {
+		if (gaveUpOn != null) {
+			throw new TimeoutException("Step '" + getName() + "' is disabled because it timed out on " + gaveUpOn);
+		}
+		FormatterStep step = currentStep();
+		if (worker == null) {
+			worker = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "spotless-step-" + getName());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		Future<T> future = worker.submit(() -> call.call(step));
+		try {
+			return future.get(budget.toMillis(), TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw ThrowingEx.asRuntimeRethrowError(cause);
+		} catch (TimeoutException e) {
+			abort(future, what, restart);
+			throw new TimeoutException("Step '" + getName() + "' did not finish " + what + " within " + budget
+					+ (restart ? ", it will be restarted for the remaining files" : ", it is disabled for the remaining files"));
+		}
+	}
+
+	/** Stops the worker, and closes the step it was using once the worker is done with it. */
+	private void abort(Future<?> future, String what, boolean restart) throws InterruptedException {
+		FormatterStep step = Objects.requireNonNull(current);
+		ExecutorService stuck = Objects.requireNonNull(worker);
+		worker = null;
+		future.cancel(true);
+		// runs right after the timed out call, so the step is never closed while it is formatting
+		stuck.execute(() -> closeAfterTimeout(step, what));
+		stuck.shutdown();
+		Duration wait = timeout.compareTo(MAX_STOP_WAIT) < 0 ? timeout : MAX_STOP_WAIT;
+		if (!stuck.awaitTermination(wait.toMillis(), TimeUnit.MILLISECONDS)) {
+			LOGGER.warn("Step '{}' did not stop after it timed out on {}, it is closed once it stops", getName(), what);
+			delegateAbandoned |= step == delegateStep;
+			current = restart ? copyOf(delegateStep) : null;
+		}
+		if (!restart) {
+			gaveUpOn = what;
+		}
+	}
+
+	private void closeAfterTimeout(FormatterStep step, String what) {
+		try {
+			step.close();
+		} catch (Exception e) {
+			LOGGER.warn("Unable to close step '{}' after it timed out on {}", getName(), what, e);
+		}
+	}
+
+	private static FormatterStep copyOf(FormatterStep step) {
+		return (FormatterStep) LazyForwardingEquality.fromBytes(LazyForwardingEquality.toBytes(step));
+	}
+
+	@Override
+	public synchronized void close() {
+		if (worker != null) {
+			worker.shutdownNow();
+			worker = null;
+		}
+		// without a current step after a timeout, the abandoned worker closes the step once it stops
+		FormatterStep step = current == null && gaveUpOn == null && !delegateAbandoned ? delegateStep : current;
+		current = null;
+		if (step != null) {
+			ThrowingEx.run(step::close);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		TimeoutFormatterStep that = (TimeoutFormatterStep) o;
+		return Objects.equals(delegateStep, that.delegateStep)
+				&& Objects.equals(timeout, that.timeout)
+				&& restartAfterTimeout == that.restartAfterTimeout;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(delegateStep, timeout, restartAfterTimeout);
+	}
+
+	@Serial
+	private static final long serialVersionUID = 1L;
+}
@@ -24,7 +24,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.PosixFilePermission;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +72,12 @@ public final class BiomeStep {
 	 */
 	private String language;
 
+	/**
+	 * Whether to format via a long-running Biome daemon ({@code biome start}) instead
+	 * of spawning a new Biome process with a cold configuration for every file.
+	 */
+	private boolean daemon;
+
 	/**
 	 * Path to the Biome executable. Can be <code>null</code>, but either a path to
 	 * the executable of a download directory and version must be given. The path
@@ -279,6 +287,25 @@ public final class BiomeStep {
 		return this;
 	}
 
+	/**
+	 * Sets whether Biome should be run as a long-running daemon. When enabled, one
+	 * Biome server is started via {@code biome start} when the formatter is first
+	 * used, and each file is formatted with {@code biome format --use-server}, which
+	 * connects to the running server and reuses its loaded configuration and
+	 * parsers. If the daemon cannot be started or a request to it fails, formatting
+	 * falls back to the regular per-file invocation. A daemon which is already
+	 * running, e.g. for an editor, is reused and left running. A daemon started by
+	 * this step is stopped via {@code biome stop} once the last formatter using it
+	 * is closed.
+	 *
+	 * @param daemon Whether to format via the Biome daemon.
+	 * @return This builder instance for chaining method calls.
+	 */
+	public BiomeStep withDaemon(boolean daemon) {
+		this.daemon = daemon;
+		return this;
+	}
+
 	/**
 	 * Resolves the Biome executable, possibly downloading it from the network, and
 	 * creates a new state instance with the resolved executable that can format
@@ -300,7 +327,7 @@ public final class BiomeStep {
 		LOGGER.debug("Using Biome executable located at  '{}'", resolvedPathToExe);
 		var exeSignature = FileSignature.signAsList(new File(resolvedPathToExe));
 		makeExecutable(resolvedPathToExe);
-		return new State(resolvedPathToExe, exeSignature, configPath, language);
+		return new State(resolvedPathToExe, exeSignature, configPath, language, daemon);
 	}
 
 	/**
@@ -365,6 +392,9 @@ public final class BiomeStep {
 		 */
 		private final String language;
 
+		/** Whether to format via a long-running Biome daemon. */
+		private final boolean daemon;
+
 		/**
 		 * Creates a new state for instance which can format code with the given Biome
 		 * executable.
@@ -374,26 +404,32 @@ public final class BiomeStep {
 		 * @param configPath   Path to the optional directory with the {@code biome.json}
 		 *                     config file, can be <code>null</code>, in which case the
 		 *                     defaults are used.
+		 * @param daemon       Whether to format via a long-running Biome daemon.
 		 */
-		private State(String exe, FileSignature exeSignature, String configPath, String language) {
+		private State(String exe, FileSignature exeSignature, String configPath, String language, boolean daemon) {
 			this.pathToExe = exe;
 			this.exeSignature = exeSignature;
 			this.configPath = configPath;
 			this.language = language;
+			this.daemon = daemon;
 		}
 
 		/**
 		 * Builds the list of arguments for the command that executes Biome to format a
 		 * piece of code passed via stdin.
 		 *
-		 * @param file File to format.
+		 * @param file      File to format.
+		 * @param useServer Whether to connect to the running Biome daemon.
 		 * @return The Biome command to use for formatting code.
 		 */
-		private String[] buildBiomeCommand(File file) {
+		private String[] buildBiomeCommand(File file, boolean useServer) {
 			var fileName = resolveFileName(file);
 			var argList = new ArrayList<String>();
 			argList.add(pathToExe);
 			argList.add("format");
+			if (useServer) {
+				argList.add("--use-server");
+			}
 			argList.add("--stdin-file-path");
 			argList.add(fileName);
 			if (configPath != null) {
@@ -418,8 +454,41 @@ public final class BiomeStep {
 		 *                              for Biome to finish formatting.
 		 */
 		private String format(ProcessRunner runner, String input, File file) throws IOException, InterruptedException {
+			return format(runner, input, file, false);
+		}
+
+		/**
+		 * Formats the given piece of code with the running Biome daemon. When the
+		 * daemon is not available, or when the request to the daemon fails, the code is
+		 * formatted with the regular per-file invocation instead. If that succeeds, the
+		 * daemon is considered broken and not used for any further files.
+		 *
+		 * @param daemon The Biome daemon to use.
+		 * @param input  Code to format.
+		 * @param file   File to format.
+		 * @return The formatted code.
+		 * @throws IOException          When a file system error occurred while
+		 *                              executing Biome.
+		 * @throws InterruptedException When this thread was interrupted while waiting
+		 *                              for Biome to finish formatting.
+		 */
+		private String formatWithDaemon(Daemon daemon, String input, File file) throws IOException, InterruptedException {
+			if (daemon.isAvailable()) {
+				try {
+					return format(daemon.runner, input, file, true);
+				} catch (RuntimeException e) {
+					var formatted = format(daemon.runner, input, file, false);
+					LOGGER.warn("Biome daemon failed to format file '{}', falling back to per-file invocation", file);
+					daemon.markBroken();
+					return formatted;
+				}
+			}
+			return format(daemon.runner, input, file, false);
+		}
+
+		private String format(ProcessRunner runner, String input, File file, boolean useServer) throws IOException, InterruptedException {
 			var stdin = input.getBytes(StandardCharsets.UTF_8);
-			var args = buildBiomeCommand(file);
+			var args = buildBiomeCommand(file, useServer);
 			if (LOGGER.isDebugEnabled()) {
 				LOGGER.debug("Running Biome command to format code: '{}'", String.join(", ", args));
 			}
@@ -492,7 +561,126 @@ public final class BiomeStep {
 		 */
 		private FormatterFunc.Closeable toFunc() {
 			var runner = new ProcessRunner();
+			if (daemon) {
+				return FormatterFunc.Closeable.of(new Daemon(pathToExe, runner), this::formatWithDaemon);
+			}
 			return FormatterFunc.Closeable.of(runner, this::format);
 		}
 	}
+
+	/**
+	 * The formatters of this JVM which use the Biome daemon of each executable, and
+	 * whether one of them started that daemon. Biome runs a single daemon per user
+	 * and version, which an editor or a concurrent build may use as well, so it is
+	 * only stopped if it was started from here, once its last user here is closed.
+	 */
+	private static final Map<String, DaemonUsage> DAEMON_USAGE = new HashMap<>();
+
+	private static final class DaemonUsage {
+		private int users;
+		private boolean startedHere;
+	}
+
+	/**
+	 * The output of {@code biome start} only says that it spawned a new daemon, as
+	 * opposed to finding one which was already running, in this message. Without
+	 * it, the daemon is considered somebody else's and is left running.
+	 *
+	 * @param startOutput The stdout and stderr of {@code biome start}.
+	 * @return Whether that call spawned the daemon.
+	 */
+	static boolean spawnedDaemon(String startOutput) {
+		return startOutput.contains("successfully started");
+	}
+
+	/**
+	 * A Biome daemon that is started lazily via {@code biome start} on the first
+	 * format request, or joined if it is already running. Closing the daemon closes
+	 * the process runner used for invoking Biome, and stops the daemon via
+	 * {@code biome stop} only if it was started from this JVM and no other
+	 * formatter of this JVM uses it anymore.
+	 */
+	private static final class Daemon implements AutoCloseable {
+		private final String pathToExe;
+		private final ProcessRunner runner;
+		private boolean attempted;
+		private boolean joined;
+		private boolean broken;
+
+		private Daemon(String pathToExe, ProcessRunner runner) {
+			this.pathToExe = pathToExe;
+			this.runner = runner;
+		}
+
+		/**
+		 * Starts or joins the daemon if that was not attempted yet.
+		 *
+		 * @return Whether the daemon is running and can be used for formatting.
+		 * @throws InterruptedException When this thread was interrupted while waiting
+		 *                              for the daemon to start.
+		 */
+		private boolean isAvailable() throws InterruptedException {
+			if (!attempted) {
+				attempted = true;
+				synchronized (DAEMON_USAGE) {
+					var usage = DAEMON_USAGE.computeIfAbsent(pathToExe, unused -> new DaemonUsage());
+					if (usage.users == 0) {
+						try {
+							var result = runner.exec(pathToExe, "start");
+							if (result.exitNotZero()) {
+								LOGGER.warn("Unable to start Biome daemon, falling back to per-file invocation\n{}", result);
+								return false;
+							}
+							usage.startedHere = spawnedDaemon(result.stdOutUtf8() + result.stdErrUtf8());
+							LOGGER.debug("{} Biome daemon for executable '{}'", usage.startedHere ? "Started" : "Joined", pathToExe);
+						} catch (IOException e) {
+							LOGGER.warn("Unable to start Biome daemon, falling back to per-file invocation", e);
+							return false;
+						}
+					}
+					usage.users++;
+					joined = true;
+				}
+			}
+			return joined && !broken;
+		}
+
+		private void markBroken() {
+			broken = true;
+		}
+
+		@Override
+		public void close() {
+			try {
+				if (joined) {
+					leave();
+				}
+			} finally {
+				runner.close();
+			}
+		}
+
+		private void leave() {
+			synchronized (DAEMON_USAGE) {
+				var usage = DAEMON_USAGE.get(pathToExe);
+				if (--usage.users > 0) {
+					return;
+				}
+				DAEMON_USAGE.remove(pathToExe);
+				if (!usage.startedHere) {
+					return;
+				}
+				try {
+					var result = runner.exec(pathToExe, "stop");
+					if (result.exitNotZero()) {
+						LOGGER.warn("Unable to stop Biome daemon\n{}", result);
+					}
+				} catch (IOException e) {
+					LOGGER.warn("Unable to stop Biome daemon", e);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
 }
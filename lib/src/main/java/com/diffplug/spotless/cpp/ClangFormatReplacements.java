@@ -0,0 +1,162 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.cpp;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the output of {@code clang-format --output-replacements-xml} and applies it to the original content.
+ * <p>
+ * The offsets and lengths reported by clang-format are in bytes of the UTF-8 encoded input, so the
+ * replacements are applied on the byte level.
+ */
+final class ClangFormatReplacements {
+	private static final Pattern REPLACEMENTS = Pattern.compile("<replacements\\b([^>]*?)(?:/>|>(.*?)</replacements>)", Pattern.DOTALL);
+	private static final Pattern INCOMPLETE = Pattern.compile("incomplete_format\\s*=\\s*['\"]true['\"]");
+	private static final Pattern REPLACEMENT = Pattern.compile(
+			"<replacement\\s+offset\\s*=\\s*['\"](\\d+)['\"]\\s+length\\s*=\\s*['\"](\\d+)['\"]\\s*(?:/>|>(.*?)</replacement>)",
+			Pattern.DOTALL);
+	private static final Pattern ENTITY = Pattern.compile("&(#x[0-9a-fA-F]+|#[0-9]+|lt|gt|amp|apos|quot);");
+
+	private final List<Replacement> replacements;
+	private final boolean incomplete;
+
+	private ClangFormatReplacements(List<Replacement> replacements, boolean incomplete) {
+		this.replacements = replacements;
+		this.incomplete = incomplete;
+	}
+
+	/** Parses the XML emitted by clang-format for a single file. */
+	static ClangFormatReplacements parse(String xml) {
+		List<ClangFormatReplacements> all = parseAll(xml);
+		if (all.size() != 1) {
+			throw new IllegalArgumentException("Unexpected output from clang-format, expected replacements XML for one file but was:\n" + xml);
+		}
+		return all.get(0);
+	}
+
+	/** Parses the XML emitted by clang-format for several files, one {@code <replacements>} element per file, in order. */
+	static List<ClangFormatReplacements> parseAll(String xml) {
+		List<ClangFormatReplacements> all = new ArrayList<>();
+		Matcher matcher = REPLACEMENTS.matcher(xml);
+		while (matcher.find()) {
+			boolean incomplete = INCOMPLETE.matcher(matcher.group(1)).find();
+			all.add(new ClangFormatReplacements(parseReplacements(matcher.group(2) == null ? "" : matcher.group(2)), incomplete));
+		}
+		if (all.isEmpty()) {
+			throw new IllegalArgumentException("Unexpected output from clang-format, expected replacements XML but was:\n" + xml);
+		}
+		return all;
+	}
+
+	private static List<Replacement> parseReplacements(String xml) {
+		List<Replacement> replacements = new ArrayList<>();
+		Matcher matcher = REPLACEMENT.matcher(xml);
+		while (matcher.find()) {
+			int offset = Integer.parseInt(matcher.group(1));
+			int length = Integer.parseInt(matcher.group(2));
+			String text = matcher.group(3) == null ? "" : unescape(matcher.group(3));
+			replacements.add(new Replacement(offset, length, text));
+		}
+		replacements.sort(Comparator.comparingInt(r -> r.offset));
+		return replacements;
+	}
+
+	/** Returns true if clang-format did not report any replacements, i.e. the content is already clean. */
+	boolean isEmpty() {
+		return replacements.isEmpty();
+	}
+
+	/**
+	 * Applies the replacements to the content which was passed to clang-format.
+	 *
+	 * @throws IllegalArgumentException if clang-format could not format the content completely, e.g. because of a syntax error
+	 */
+	String applyTo(String input) {
+		if (incomplete) {
+			throw new IllegalArgumentException("clang-format could not format the file completely, it probably contains a syntax error");
+		}
+		if (replacements.isEmpty()) {
+			return input;
+		}
+		byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length);
+		int cursor = 0;
+		for (Replacement replacement : replacements) {
+			if (replacement.offset < cursor || replacement.offset + replacement.length > bytes.length) {
+				throw new IllegalArgumentException("Invalid clang-format replacement at offset " + replacement.offset + " with length " + replacement.length + " for content of " + bytes.length + " bytes");
+			}
+			output.write(bytes, cursor, replacement.offset - cursor);
+			output.writeBytes(replacement.text.getBytes(StandardCharsets.UTF_8));
+			cursor = replacement.offset + replacement.length;
+		}
+		output.write(bytes, cursor, bytes.length - cursor);
+		return output.toString(StandardCharsets.UTF_8);
+	}
+
+	private static String unescape(String text) {
+		if (text.indexOf('&') == -1) {
+			return text;
+		}
+		Matcher matcher = ENTITY.matcher(text);
+		StringBuilder builder = new StringBuilder(text.length());
+		while (matcher.find()) {
+			String entity = matcher.group(1);
+			String replacement;
+			switch (entity) {
+			case "lt":
+				replacement = "<";
+				break;
+			case "gt":
+				replacement = ">";
+				break;
+			case "amp":
+				replacement = "&";
+				break;
+			case "apos":
+				replacement = "'";
+				break;
+			case "quot":
+				replacement = "\"";
+				break;
+			default:
+				int codePoint = entity.startsWith("#x") ? Integer.parseInt(entity.substring(2), 16) : Integer.parseInt(entity.substring(1));
+				replacement = new String(Character.toChars(codePoint));
+			}
+			matcher.appendReplacement(builder, Matcher.quoteReplacement(replacement));
+		}
+		matcher.appendTail(builder);
+		return builder.toString();
+	}
+
+	private static final class Replacement {
+		final int offset;
+		final int length;
+		final String text;
+
+		Replacement(int offset, int length, String text) {
+			this.offset = offset;
+			this.length = length;
+			this.text = text;
+		}
+	}
+}
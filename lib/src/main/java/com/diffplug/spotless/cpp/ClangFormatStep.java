@@ -19,9 +19,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
 
@@ -44,23 +48,38 @@ public final class ClangFormatStep {
 	private final String version;
 	private final @Nullable String pathToExe;
 	private final @Nullable String style;
+	private final boolean replacementsXml;
 
-	private ClangFormatStep(String version, @Nullable String pathToExe, @Nullable String style) {
+	private ClangFormatStep(String version, @Nullable String pathToExe, @Nullable String style, boolean replacementsXml) {
 		this.version = version;
 		this.pathToExe = pathToExe;
 		this.style = style;
+		this.replacementsXml = replacementsXml;
 	}
 
 	public static ClangFormatStep withVersion(String version) {
-		return new ClangFormatStep(version, null, null);
+		return new ClangFormatStep(version, null, null, false);
 	}
 
 	public ClangFormatStep withStyle(String style) {
-		return new ClangFormatStep(version, pathToExe, style);
+		return new ClangFormatStep(version, pathToExe, style, replacementsXml);
 	}
 
 	public ClangFormatStep withPathToExe(String pathToExe) {
-		return new ClangFormatStep(version, pathToExe, style);
+		return new ClangFormatStep(version, pathToExe, style, replacementsXml);
+	}
+
+	/**
+	 * If true, clang-format is invoked with {@code --output-replacements-xml}, so that for clean files
+	 * only an empty list of replacements is piped back instead of the whole file. For dirty files the
+	 * replacements are applied to the input, which gives the same result as the regular mode, except
+	 * that a file which clang-format cannot format completely is reported as an error.
+	 * <p>
+	 * If the style does not depend on the location of the file, i.e. it is set and is not {@code file},
+	 * many files are formatted by a single clang-format invocation.
+	 */
+	public ClangFormatStep withReplacementsXml(boolean replacementsXml) {
+		return new ClangFormatStep(version, pathToExe, style, replacementsXml);
 	}
 
 	public FormatterStep create() {
@@ -90,51 +109,136 @@ public final class ClangFormatStep {
 
 		final String version;
 		final @Nullable String style;
+		final boolean replacementsXml;
 		final ForeignExe exe;
 
 		RoundtripState(ClangFormatStep step, ForeignExe exe) {
 			this.version = step.version;
 			this.style = step.style;
+			this.replacementsXml = step.replacementsXml;
 			this.exe = exe;
 		}
 
 		private EqualityState toEquality() {
-			return new EqualityState(version, style, exe);
+			return new EqualityState(version, style, replacementsXml, exe);
 		}
 	}
 
 	@SuppressFBWarnings("SE_TRANSIENT_FIELD_NOT_RESTORED")
 	static class EqualityState implements Serializable {
 		private static final long serialVersionUID = -1825662356883926318L;
+		/** Keeps the command line of a single invocation well below the limits of every OS. */
+		private static final int MAX_FILES_PER_INVOCATION = 100;
+
 		// used for up-to-date checks and caching
 		final String version;
 		final @Nullable String style;
+		final boolean replacementsXml;
 		final transient ForeignExe exe;
 		// used for executing
 		private transient @Nullable List<String> args;
 
-		EqualityState(String version, @Nullable String style, ForeignExe pathToExe) {
+		EqualityState(String version, @Nullable String style, boolean replacementsXml, ForeignExe pathToExe) {
 			this.version = version;
 			this.style = style;
+			this.replacementsXml = replacementsXml;
 			this.exe = Objects.requireNonNull(pathToExe);
 		}
 
-		String format(ProcessRunner runner, String input, File file) throws IOException, InterruptedException {
+		private List<String> args() throws IOException, InterruptedException {
 			if (args == null) {
 				final List<String> tmpArgs = new ArrayList<>();
 				tmpArgs.add(exe.confirmVersionAndGetAbsolutePath());
 				if (style != null) {
 					tmpArgs.add("--style=" + style);
 				}
+				if (replacementsXml) {
+					tmpArgs.add("--output-replacements-xml");
+				}
 				args = tmpArgs;
 			}
-			final String[] processArgs = args.toArray(new String[args.size() + 1]);
-			processArgs[processArgs.length - 1] = "--assume-filename=" + file.getName();
-			return runner.exec(input.getBytes(StandardCharsets.UTF_8), processArgs).assertExitZero(StandardCharsets.UTF_8);
+			return args;
+		}
+
+		String format(ProcessRunner runner, String input, File file) throws IOException, InterruptedException {
+			final List<String> processArgs = new ArrayList<>(args());
+			processArgs.add("--assume-filename=" + file.getName());
+			String output = runner.exec(input.getBytes(StandardCharsets.UTF_8), processArgs).assertExitZero(StandardCharsets.UTF_8);
+			if (replacementsXml) {
+				return ClangFormatReplacements.parse(output).applyTo(input);
+			}
+			return output;
+		}
+
+		/**
+		 * Formats the files with as few clang-format invocations as possible. clang-format only reads several
+		 * files from disk, so the content of each file is written to a temporary copy with the same name.
+		 */
+		List<FormatterFunc.BatchResult> formatBatch(ProcessRunner runner, List<String> inputs, List<File> files) throws IOException, InterruptedException {
+			List<FormatterFunc.BatchResult> results = new ArrayList<>(files.size());
+			Path dir = Files.createTempDirectory("spotless-clang-format");
+			try {
+				for (int from = 0; from < files.size(); from += MAX_FILES_PER_INVOCATION) {
+					int to = Math.min(files.size(), from + MAX_FILES_PER_INVOCATION);
+					final List<String> processArgs = new ArrayList<>(args());
+					for (int i = from; i < to; i++) {
+						Path copy = dir.resolve(Integer.toString(i)).resolve(files.get(i).getName());
+						Files.createDirectories(copy.getParent());
+						Files.write(copy, inputs.get(i).getBytes(StandardCharsets.UTF_8));
+						processArgs.add(copy.toString());
+					}
+					String output = runner.exec(processArgs).assertExitZero(StandardCharsets.UTF_8);
+					List<ClangFormatReplacements> replacements = ClangFormatReplacements.parseAll(output);
+					if (replacements.size() != to - from) {
+						throw new IllegalArgumentException("Expected replacements for " + (to - from) + " files from clang-format, but got " + replacements.size());
+					}
+					for (int i = from; i < to; i++) {
+						try {
+							results.add(FormatterFunc.BatchResult.of(replacements.get(i - from).applyTo(inputs.get(i))));
+						} catch (IllegalArgumentException e) {
+							results.add(FormatterFunc.BatchResult.failed(e));
+						}
+					}
+				}
+			} finally {
+				deleteRecursively(dir);
+			}
+			return results;
+		}
+
+		private static void deleteRecursively(Path dir) throws IOException {
+			try (Stream<Path> paths = Files.walk(dir)) {
+				for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+					Files.delete(path);
+				}
+			}
+		}
+
+		/** True if the style is the same for every file, regardless of the {@code .clang-format} files around it. */
+		boolean styleIsLocationIndependent() {
+			return style != null && !style.startsWith("file");
 		}
 
 		FormatterFunc.Closeable toFunc() {
 			ProcessRunner runner = new ProcessRunner();
+			if (replacementsXml && styleIsLocationIndependent()) {
+				return FormatterFunc.Closeable.ofDangerous(runner, new FormatterFunc.Batch() {
+					@Override
+					public String apply(String input) {
+						throw new UnsupportedOperationException("clang-format needs the file name");
+					}
+
+					@Override
+					public String apply(String unix, File file) throws Exception {
+						return format(runner, unix, file);
+					}
+
+					@Override
+					public List<FormatterFunc.BatchResult> applyBatch(List<String> unix, List<File> files) throws Exception {
+						return formatBatch(runner, unix, files);
+					}
+				});
+			}
 			return FormatterFunc.Closeable.of(runner, this::format);
 		}
 	}
@@ -15,17 +15,28 @@
  */
 package com.diffplug.spotless.generic;
 
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
 
 import com.diffplug.spotless.FileSignature;
 import com.diffplug.spotless.FormatterFunc;
 import com.diffplug.spotless.FormatterStep;
+import com.diffplug.spotless.ProcessPool;
 import com.diffplug.spotless.ProcessRunner;
 
 public final class NativeCmdStep {
@@ -35,46 +46,190 @@ public final class NativeCmdStep {
 	public static FormatterStep create(String name, File pathToExe, List<String> arguments) {
 		Objects.requireNonNull(name, "name");
 		Objects.requireNonNull(pathToExe, "pathToExe");
-		return FormatterStep.createLazy(name, () -> new State(FileSignature.promise(pathToExe), arguments), State::toRuntime, Runtime::toFunc);
+		return FormatterStep.createLazy(name, () -> new State(FileSignature.promise(pathToExe), arguments, null), State::toRuntime, Runtime::toFunc);
+	}
+
+	/**
+	 * Creates a step which starts the command once and keeps it alive for the entire build, sending it one file after another
+	 * over a length-prefixed protocol on stdin and stdout. All integers are 32-bit big-endian, all strings are UTF-8.
+	 * <ul>
+	 * <li>request: length of the absolute path, path, length of the content, content</li>
+	 * <li>response: status, length of the body, body</li>
+	 * </ul>
+	 * A status of {@code 0} means that the body is the formatted content, any other status means that the body is an error message
+	 * for that file. The command must not write anything else to stdout, but may log to stderr. If the command doesn't answer within
+	 * {@code timeout} it is killed, and if it crashes it is restarted.
+	 */
+	public static FormatterStep createStreaming(String name, File pathToExe, List<String> arguments, Duration timeout) {
+		return createStreaming(name, pathToExe, arguments, timeout, 1);
+	}
+
+	/**
+	 * Same as {@link #createStreaming(String, File, List, Duration)}, but keeps up to {@code instances} copies of the command alive.
+	 * With more than one instance, the step formats a batch of files (see {@link com.diffplug.spotless.Formatter#prefetch(List)})
+	 * on all instances at once, each instance takes an equal share of the files.
+	 */
+	public static FormatterStep createStreaming(String name, File pathToExe, List<String> arguments, Duration timeout, int instances) {
+		Objects.requireNonNull(name, "name");
+		Objects.requireNonNull(pathToExe, "pathToExe");
+		Objects.requireNonNull(timeout, "timeout");
+		if (instances < 1) {
+			throw new IllegalArgumentException("instances must be at least 1, was " + instances);
+		}
+		return FormatterStep.createLazy(name, () -> new State(FileSignature.promise(pathToExe), arguments, timeout, instances), State::toRuntime, Runtime::toFunc);
 	}
 
 	static class State implements Serializable {
-		private static final long serialVersionUID = 2L;
+		private static final long serialVersionUID = 3L;
 		final FileSignature.Promised pathToExe;
 		final List<String> arguments;
+		final @Nullable Duration streamingTimeout;
+		final int streamingInstances;
 
-		State(FileSignature.Promised pathToExe, List<String> arguments) {
+		State(FileSignature.Promised pathToExe, List<String> arguments, @Nullable Duration streamingTimeout) {
+			this(pathToExe, arguments, streamingTimeout, 1);
+		}
+
+		State(FileSignature.Promised pathToExe, List<String> arguments, @Nullable Duration streamingTimeout, int streamingInstances) {
 			this.pathToExe = pathToExe;
 			this.arguments = arguments;
+			this.streamingTimeout = streamingTimeout;
+			this.streamingInstances = streamingInstances;
 		}
 
 		Runtime toRuntime() {
-			return new Runtime(pathToExe.get().getOnlyFile(), arguments);
+			return new Runtime(pathToExe.get().getOnlyFile(), arguments, streamingTimeout, streamingInstances);
 		}
 	}
 
 	static class Runtime implements Serializable {
-		private static final long serialVersionUID = 2L;
+		private static final long serialVersionUID = 3L;
 		final File pathToExe;
 		final List<String> arguments;
+		final @Nullable Duration streamingTimeout;
+		final int streamingInstances;
 
-		Runtime(File pathToExe, List<String> arguments) {
+		Runtime(File pathToExe, List<String> arguments, @Nullable Duration streamingTimeout, int streamingInstances) {
 			this.pathToExe = pathToExe;
 			this.arguments = arguments;
+			this.streamingTimeout = streamingTimeout;
+			this.streamingInstances = streamingInstances;
 		}
 
-		String format(ProcessRunner runner, String input) throws IOException, InterruptedException {
+		private List<String> argumentsWithPathToExe() {
 			List<String> argumentsWithPathToExe = new ArrayList<>();
 			argumentsWithPathToExe.add(pathToExe.getAbsolutePath());
 			if (arguments != null) {
 				argumentsWithPathToExe.addAll(arguments);
 			}
-			return runner.exec(input.getBytes(StandardCharsets.UTF_8), argumentsWithPathToExe).assertExitZero(StandardCharsets.UTF_8);
+			return argumentsWithPathToExe;
+		}
+
+		String format(ProcessRunner runner, String input) throws IOException, InterruptedException {
+			return runner.exec(input.getBytes(StandardCharsets.UTF_8), argumentsWithPathToExe()).assertExitZero(StandardCharsets.UTF_8);
+		}
+
+		String formatStreaming(ProcessPool pool, String input, File file) throws Exception {
+			byte[] path = file.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+			byte[] content = input.getBytes(StandardCharsets.UTF_8);
+			StreamingResponse response = pool.call(process -> {
+				DataOutputStream request = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+				request.writeInt(path.length);
+				request.write(path);
+				request.writeInt(content.length);
+				request.write(content);
+				request.flush();
+				DataInputStream reply = new DataInputStream(process.getInputStream());
+				int status = reply.readInt();
+				byte[] body = new byte[reply.readInt()];
+				reply.readFully(body);
+				return new StreamingResponse(status, body);
+			});
+			String body = new String(response.body, StandardCharsets.UTF_8);
+			if (response.status != 0) {
+				throw new IllegalArgumentException(pathToExe.getName() + " failed with status " + response.status + " for " + file + ": " + body);
+			}
+			return body;
 		}
 
 		FormatterFunc.Closeable toFunc() {
+			if (streamingTimeout != null) {
+				ProcessPool pool = ProcessPool.create(streamingInstances, null, null, argumentsWithPathToExe(), streamingTimeout);
+				if (streamingInstances > 1) {
+					StreamingBatchFunc func = new StreamingBatchFunc(this, pool);
+					return FormatterFunc.Closeable.ofDangerous(func, func);
+				}
+				return FormatterFunc.Closeable.of(pool, this::formatStreaming);
+			}
 			ProcessRunner runner = new ProcessRunner();
 			return FormatterFunc.Closeable.of(runner, this::format);
 		}
 	}
+
+	/** Formats the files of a batch on all instances of the pool at once. */
+	private static final class StreamingBatchFunc implements FormatterFunc.NeedsFile, FormatterFunc.Batch, AutoCloseable {
+		private final Runtime runtime;
+		private final ProcessPool pool;
+		private final ExecutorService partitions = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "spotless-native-cmd");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		StreamingBatchFunc(Runtime runtime, ProcessPool pool) {
+			this.runtime = runtime;
+			this.pool = pool;
+		}
+
+		@Override
+		public String applyWithFile(String unix, File file) throws Exception {
+			return runtime.formatStreaming(pool, unix, file);
+		}
+
+		@Override
+		public List<BatchResult> applyBatch(List<String> unix, List<File> files) throws Exception {
+			int count = Math.min(pool.size(), files.size());
+			List<Future<List<BatchResult>>> futures = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				int from = files.size() * i / count;
+				int to = files.size() * (i + 1) / count;
+				futures.add(partitions.submit(() -> {
+					List<BatchResult> results = new ArrayList<>(to - from);
+					for (int j = from; j < to; j++) {
+						try {
+							results.add(BatchResult.of(runtime.formatStreaming(pool, unix.get(j), files.get(j))));
+						} catch (Exception e) {
+							results.add(BatchResult.failed(e));
+						}
+					}
+					return results;
+				}));
+			}
+			List<BatchResult> results = new ArrayList<>(files.size());
+			for (Future<List<BatchResult>> future : futures) {
+				try {
+					results.addAll(future.get());
+				} catch (ExecutionException e) {
+					throw e.getCause() instanceof Exception cause ? cause : e;
+				}
+			}
+			return results;
+		}
+
+		@Override
+		public void close() {
+			partitions.shutdownNow();
+			pool.close();
+		}
+	}
+
+	private static final class StreamingResponse {
+		final int status;
+		final byte[] body;
+
+		StreamingResponse(int status, byte[] body) {
+			this.status = status;
+			this.body = body;
+		}
+	}
 }
@@ -15,16 +15,65 @@
  */
 package com.diffplug.spotless.npm;
 
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.diffplug.spotless.FormatterFunc;
+
 abstract class BaseNpmRestService {
 
-	protected final SimpleRestClient restClient;
+	protected final NpmServerClient restClient;
 
 	BaseNpmRestService(String baseUrl) {
-		this.restClient = SimpleRestClient.forBaseUrl(baseUrl);
+		this(SimpleRestClient.forBaseUrl(baseUrl));
+	}
+
+	BaseNpmRestService(NpmServerClient restClient) {
+		this.restClient = requireNonNull(restClient);
 	}
 
 	public String shutdown() {
 		return restClient.post("/shutdown");
 	}
 
+	/**
+	 * Posts a batch request and splits the response into one result per file. A problem with a single
+	 * file is returned as a {@link SimpleRestClient.SimpleRestResponseException} with status 500 for that file.
+	 */
+	protected List<FormatterFunc.BatchResult> postBatch(String endpoint, Map<String, Object> jsonParams, int fileCount) {
+		return parseBatchResponse(endpoint, restClient.postJson(endpoint, jsonParams), fileCount);
+	}
+
+	/** Parses the response written by {@code sendBatch} in common-serve.js. */
+	static List<FormatterFunc.BatchResult> parseBatchResponse(String endpoint, String response, int fileCount) {
+		List<FormatterFunc.BatchResult> results = new ArrayList<>(fileCount);
+		int pos = 0;
+		while (pos < response.length()) {
+			char kind = response.charAt(pos);
+			int newline = response.indexOf('\n', pos);
+			if ((kind != 'O' && kind != 'E') || newline == -1) {
+				throw new IllegalStateException("Malformed batch response from " + endpoint + " at offset " + pos);
+			}
+			int length = Integer.parseInt(response.substring(pos + 1, newline));
+			int end = newline + 1 + length;
+			if (end > response.length()) {
+				throw new IllegalStateException("Truncated batch response from " + endpoint + " at offset " + pos);
+			}
+			String text = response.substring(newline + 1, end);
+			if (kind == 'O') {
+				results.add(FormatterFunc.BatchResult.of(text));
+			} else {
+				results.add(FormatterFunc.BatchResult.failed(new SimpleRestClient.SimpleRestResponseException(500, text, "Unexpected response for file in batch at " + endpoint)));
+			}
+			pos = end;
+		}
+		if (results.size() != fileCount) {
+			throw new IllegalStateException("Expected " + fileCount + " results from " + endpoint + " but got " + results.size());
+		}
+		return results;
+	}
+
 }
@@ -20,11 +20,15 @@ import static java.util.Objects.requireNonNull;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nonnull;
 
@@ -37,6 +41,7 @@ import com.diffplug.spotless.FormatterStep;
 import com.diffplug.spotless.Provisioner;
 import com.diffplug.spotless.ThrowingEx;
 import com.diffplug.spotless.npm.EslintRestService.FormatOption;
+import com.diffplug.spotless.npm.NpmFormatterStepStateBase.RoundtripState;
 
 public final class EslintFormatterStep {
 
@@ -68,12 +73,18 @@ public final class EslintFormatterStep {
 	}
 
 	public static FormatterStep create(Map<String, String> devDependencies, Provisioner provisioner, File projectDir, File buildDir, File cacheDir, NpmPathResolver npmPathResolver, EslintConfig eslintConfig) {
+		return create(devDependencies, provisioner, projectDir, buildDir, cacheDir, npmPathResolver, eslintConfig, NpmServerOptions.defaults());
+	}
+
+	/** Like {@link #create(Map, Provisioner, File, File, File, NpmPathResolver, EslintConfig)}, but with the given options for its node servers. */
+	public static FormatterStep create(Map<String, String> devDependencies, Provisioner provisioner, File projectDir, File buildDir, File cacheDir, NpmPathResolver npmPathResolver, EslintConfig eslintConfig, NpmServerOptions serverOptions) {
 		requireNonNull(devDependencies);
 		requireNonNull(provisioner);
 		requireNonNull(projectDir);
 		requireNonNull(buildDir);
 		return FormatterStep.createLazy(NAME,
-				() -> new State(NAME, devDependencies, projectDir, buildDir, cacheDir, npmPathResolver, eslintConfig),
+				() -> new RoundtripState<>(new State(NAME, devDependencies, projectDir, buildDir, cacheDir, npmPathResolver, eslintConfig, serverOptions)),
+				RoundtripState::equalityState,
 				State::createFormatterFunc);
 	}
 
@@ -83,21 +94,22 @@ public final class EslintFormatterStep {
 		private final EslintConfig origEslintConfig;
 		private EslintConfig eslintConfigInUse;
 
-		State(String stepName, Map<String, String> devDependencies, File projectDir, File buildDir, File cacheDir, NpmPathResolver npmPathResolver, EslintConfig eslintConfig) throws IOException {
+		State(String stepName, Map<String, String> devDependencies, File projectDir, File buildDir, File cacheDir, NpmPathResolver npmPathResolver, EslintConfig eslintConfig, NpmServerOptions serverOptions) throws IOException {
 			super(stepName,
 					new NpmConfig(
 							replaceDevDependencies(
 									NpmResourceHelper.readUtf8StringFromClasspath(EslintFormatterStep.class, "/com/diffplug/spotless/npm/eslint-package.json"),
-									new TreeMap<>(devDependencies)),
-							NpmResourceHelper.readUtf8StringFromClasspath(EslintFormatterStep.class,
-									"/com/diffplug/spotless/npm/common-serve.js",
-									"/com/diffplug/spotless/npm/eslint-serve.js"),
-							npmPathResolver.resolveNpmrcContent()),
+									new TreeMap<>(devDependencies),
+									serverOptions),
+							serveScript(serverOptions, "/com/diffplug/spotless/npm/eslint-serve.js"),
+							npmPathResolver.resolveNpmrcContent(),
+							npmPathResolver.resolvePackageLockContent()),
 					new NpmFormatterStepLocations(
 							projectDir,
 							buildDir,
 							cacheDir,
-							npmPathResolver));
+							npmPathResolver),
+					serverOptions);
 			this.origEslintConfig = requireNonNull(eslintConfig.verify());
 			this.eslintConfigInUse = eslintConfig;
 		}
@@ -118,48 +130,90 @@ public final class EslintFormatterStep {
 		@Override
 		@Nonnull
 		public FormatterFunc createFormatterFunc() {
-			try {
-				LOGGER.info("Creating formatter function (starting server)");
-				Runtime runtime = toRuntime();
-				ServerProcessInfo eslintRestServer = runtime.npmRunServer();
-				EslintRestService restService = new EslintRestService(eslintRestServer.getBaseUrl());
-				return Closeable.ofDangerous(() -> endServer(restService, eslintRestServer), new EslintFilePathPassingFormatterFunc(locations.projectDir(), runtime.nodeServerLayout().nodeModulesDir(), eslintConfigInUse, restService));
-			} catch (IOException e) {
-				throw ThrowingEx.asRuntime(e);
-			}
+			LOGGER.info("Creating formatter function (starting server)");
+			Runtime runtime = toRuntime();
+			NpmServerPool<EslintRestService> servers = runtime.npmServerPool(EslintRestService::new);
+			return Closeable.ofDangerous(() -> endServers(servers), new EslintFilePathPassingFormatterFunc(locations.projectDir(), eslintConfigInUse, servers));
 		}
 
-		private void endServer(BaseNpmRestService restService, ServerProcessInfo restServer) throws Exception {
+		private void endServers(NpmServerPool<EslintRestService> servers) throws Exception {
 			LOGGER.info("Closing formatting function (ending server).");
-			try {
-				restService.shutdown();
-			} catch (Throwable t) {
-				LOGGER.info("Failed to request shutdown of rest service via api. Trying via process.", t);
-			}
-			restServer.close();
+			servers.close();
 		}
 
 	}
 
-	private static class EslintFilePathPassingFormatterFunc implements FormatterFunc.NeedsFile {
+	static class EslintFilePathPassingFormatterFunc implements FormatterFunc.NeedsFile, FormatterFunc.Batch {
 		private final File projectDir;
-		private final File nodeModulesDir;
 		private final EslintConfig eslintConfig;
-		private final EslintRestService restService;
+		private final NpmServerPool<EslintRestService> servers;
+		private final Map<FormatOption, Object> configOptions;
+		private final String configKey;
 
-		public EslintFilePathPassingFormatterFunc(File projectDir, File nodeModulesDir, EslintConfig eslintConfig, EslintRestService restService) {
+		/** Once a server has seen the full config, it keeps an ESLint instance for it and we only send {@link #configKey}. */
+		private final Set<EslintRestService> configKnownByServer = ConcurrentHashMap.newKeySet();
+
+		public EslintFilePathPassingFormatterFunc(File projectDir, EslintConfig eslintConfig, NpmServerPool<EslintRestService> servers) {
 			this.projectDir = requireNonNull(projectDir);
-			this.nodeModulesDir = requireNonNull(nodeModulesDir);
 			this.eslintConfig = requireNonNull(eslintConfig);
-			this.restService = requireNonNull(restService);
+			this.servers = requireNonNull(servers);
+			this.configOptions = new TreeMap<>();
+			setConfigToCallOptions(configOptions);
+			this.configKey = configKey(configOptions, eslintConfig);
 		}
 
 		@Override
 		public String applyWithFile(String unix, File file) throws Exception {
-			Map<FormatOption, Object> eslintCallOptions = new HashMap<>();
-			setConfigToCallOptions(eslintCallOptions);
-			setFilePathToCallOptions(eslintCallOptions, file);
-			return restService.format(unix, eslintCallOptions);
+			return servers.call(restService -> callWithConfig(restService, eslintCallOptions -> {
+				setFilePathToCallOptions(eslintCallOptions, file);
+				return restService.format(unix, eslintCallOptions);
+			}));
+		}
+
+		@Override
+		public List<FormatterFunc.BatchResult> applyBatch(List<String> unix, List<File> files) throws Exception {
+			List<String> filePaths = new ArrayList<>(files.size());
+			for (File file : files) {
+				filePaths.add(file.getAbsolutePath());
+			}
+			return servers.callPartitioned(files.size(), (restService, from, to) -> callWithConfig(restService,
+					eslintCallOptions -> restService.formatBatch(unix.subList(from, to), filePaths.subList(from, to), eslintCallOptions)));
+		}
+
+		/**
+		 * Calls the server with only the config key if it already knows the config, and falls back to sending
+		 * the full config if it doesn't (anymore), e.g. because its instance cache evicted it.
+		 */
+		private <T> T callWithConfig(EslintRestService restService, ThrowingEx.Function<Map<FormatOption, Object>, T> call) throws Exception {
+			if (configKnownByServer.contains(restService)) {
+				Map<FormatOption, Object> keyOnly = new HashMap<>();
+				keyOnly.put(FormatOption.ESLINT_CONFIG_KEY, configKey);
+				try {
+					return call.apply(keyOnly);
+				} catch (SimpleRestClient.SimpleRestResponseException e) {
+					if (e.getStatusCode() != EslintRestService.UNKNOWN_CONFIG_KEY_STATUS) {
+						throw e;
+					}
+					LOGGER.debug("Eslint server does not know config key {} (anymore), sending full config", configKey);
+				}
+			}
+			Map<FormatOption, Object> eslintCallOptions = new HashMap<>(configOptions);
+			eslintCallOptions.put(FormatOption.ESLINT_CONFIG_KEY, configKey);
+			T result = call.apply(eslintCallOptions);
+			configKnownByServer.add(restService);
+			return result;
+		}
+
+		private static String configKey(Map<FormatOption, Object> configOptions, EslintConfig eslintConfig) {
+			StringBuilder key = new StringBuilder();
+			for (Map.Entry<FormatOption, Object> option : configOptions.entrySet()) {
+				key.append(option.getKey().name()).append('=').append(option.getValue()).append('\n');
+			}
+			// the server keeps the instance, so a changed config file must result in a different key
+			if (eslintConfig.getEslintConfigPath() != null && eslintConfig.getEslintConfigPath().isFile()) {
+				return NpmResourceHelper.md5(key.toString(), NpmResourceHelper.readUtf8StringFromFile(eslintConfig.getEslintConfigPath()));
+			}
+			return NpmResourceHelper.md5(key.toString());
 		}
 
 		private void setFilePathToCallOptions(Map<FormatOption, Object> eslintCallOptions, File fileToBeFormatted) {
@@ -177,7 +231,8 @@ public final class EslintFormatterStep {
 				// if we are a ts config, see if we need to use specific paths or use default projectDir
 				File tsConfigFilePath = config.getTypescriptConfigPath();
 				File tsConfigRootDir = tsConfigFilePath != null ? tsConfigFilePath.getParentFile() : projectDir;
-				eslintCallOptions.put(FormatOption.TS_CONFIG_ROOT_DIR, nodeModulesDir.getAbsoluteFile().toPath().relativize(tsConfigRootDir.getAbsoluteFile().toPath()).toString());
+				// absolute, as the server may run in the node modules dir of another subproject which shares the pool
+				eslintCallOptions.put(FormatOption.TS_CONFIG_ROOT_DIR, tsConfigRootDir.getAbsolutePath());
 			}
 		}
 	}
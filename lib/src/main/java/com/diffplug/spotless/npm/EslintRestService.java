@@ -15,16 +15,27 @@
  */
 package com.diffplug.spotless.npm;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import com.diffplug.spotless.FormatterFunc;
+
 public class EslintRestService extends BaseNpmRestService {
 
+	/** Status of the answer if only {@link FormatOption#ESLINT_CONFIG_KEY} was sent and the server has no ESLint instance for it. */
+	static final int UNKNOWN_CONFIG_KEY_STATUS = 409;
+
 	EslintRestService(String baseUrl) {
 		super(baseUrl);
 	}
 
+	EslintRestService(NpmServerClient restClient) {
+		super(restClient);
+	}
+
 	public String format(String fileContent, Map<FormatOption, Object> formatOptions) {
 		Map<String, Object> jsonProperties = new LinkedHashMap<>();
 		jsonProperties.put("file_content", fileContent);
@@ -34,8 +45,25 @@ public class EslintRestService extends BaseNpmRestService {
 		return restClient.postJson("/eslint/format", jsonProperties);
 	}
 
+	/** Formats all files with the same options, {@link FormatOption#FILE_PATH} is given per file by {@code filePaths}. */
+	public List<FormatterFunc.BatchResult> formatBatch(List<String> fileContents, List<String> filePaths, Map<FormatOption, Object> sharedFormatOptions) {
+		List<JsonRawValue> files = new ArrayList<>(fileContents.size());
+		for (int i = 0; i < fileContents.size(); i++) {
+			Map<String, Object> file = new LinkedHashMap<>();
+			file.put("file_content", fileContents.get(i));
+			file.put(FormatOption.FILE_PATH.backendName, filePaths.get(i));
+			files.add(JsonWriter.of(file).toJsonRawValue());
+		}
+		Map<String, Object> jsonProperties = new LinkedHashMap<>();
+		for (Entry<FormatOption, Object> option : sharedFormatOptions.entrySet()) {
+			jsonProperties.put(option.getKey().backendName, option.getValue());
+		}
+		jsonProperties.put("files", files);
+		return postBatch("/eslint/format-batch", jsonProperties, fileContents.size());
+	}
+
 	enum FormatOption {
-		ESLINT_OVERRIDE_CONFIG("eslint_override_config"), ESLINT_OVERRIDE_CONFIG_FILE("eslint_override_config_file"), FILE_PATH("file_path"), TS_CONFIG_ROOT_DIR("ts_config_root_dir");
+		ESLINT_OVERRIDE_CONFIG("eslint_override_config"), ESLINT_OVERRIDE_CONFIG_FILE("eslint_override_config_file"), FILE_PATH("file_path"), TS_CONFIG_ROOT_DIR("ts_config_root_dir"), ESLINT_CONFIG_KEY("eslint_config_key");
 
 		private final String backendName;
 
@@ -15,9 +15,11 @@
  */
 package com.diffplug.spotless.npm;
 
+import static com.diffplug.spotless.npm.NpmProcessFactory.OnlinePreferrence.OFFLINE;
 import static com.diffplug.spotless.npm.NpmProcessFactory.OnlinePreferrence.PREFER_OFFLINE;
 import static com.diffplug.spotless.npm.NpmProcessFactory.OnlinePreferrence.PREFER_ONLINE;
 
+import java.io.File;
 import java.util.Objects;
 
 import javax.annotation.Nonnull;
@@ -46,9 +48,13 @@ public class NodeApp {
 	protected final NpmFormatterStepLocations formatterStepLocations;
 
 	public NodeApp(@Nonnull NodeServerLayout nodeServerLayout, @Nonnull NpmConfig npmConfig, @Nonnull NpmFormatterStepLocations formatterStepLocations) {
+		this(nodeServerLayout, npmConfig, formatterStepLocations, processFactory(formatterStepLocations));
+	}
+
+	NodeApp(@Nonnull NodeServerLayout nodeServerLayout, @Nonnull NpmConfig npmConfig, @Nonnull NpmFormatterStepLocations formatterStepLocations, @Nonnull NpmProcessFactory npmProcessFactory) {
 		this.nodeServerLayout = Objects.requireNonNull(nodeServerLayout);
 		this.npmConfig = Objects.requireNonNull(npmConfig);
-		this.npmProcessFactory = processFactory(formatterStepLocations);
+		this.npmProcessFactory = Objects.requireNonNull(npmProcessFactory);
 		this.formatterStepLocations = Objects.requireNonNull(formatterStepLocations);
 	}
 
@@ -83,6 +89,9 @@ public class NodeApp {
 			} else {
 				NpmResourceHelper.deleteFileIfExists(nodeServerLayout.npmrcFile());
 			}
+			if (this.npmConfig.getPackageLockJsonContent() != null) {
+				NpmResourceHelper.writeUtf8StringToFile(nodeServerLayout.packageLockJsonFile(), this.npmConfig.getPackageLockJsonContent());
+			}
 		});
 	}
 
@@ -92,6 +101,56 @@ public class NodeApp {
 	}
 
 	private void optimizedNpmInstall() {
+		if (this.npmConfig.getPackageLockJsonContent() != null && npmCiFromPackageLock()) {
+			return;
+		}
+		npmInstallFromPackageJson();
+		explainHowToPinPackageLock();
+	}
+
+	/**
+	 * Installs exactly what the pinned package-lock.json says, from the local npm cache if possible, which neither
+	 * resolves versions nor asks the registry for metadata. Returns false if the package-lock.json can't be used.
+	 */
+	private boolean npmCiFromPackageLock() {
+		try {
+			npmProcessFactory.createNpmCiProcess(nodeServerLayout, formatterStepLocations, OFFLINE).waitFor();
+			return true;
+		} catch (NpmProcessException offlineFailure) {
+			if (isPackageLockOutOfSync(offlineFailure.getResult())) {
+				warnPackageLockNotUsable(offlineFailure);
+				return false;
+			}
+			LOGGER.debug("Offline npm ci failed, trying again with access to the registry", offlineFailure);
+		}
+		try {
+			npmProcessFactory.createNpmCiProcess(nodeServerLayout, formatterStepLocations, PREFER_OFFLINE).waitFor();
+			return true;
+		} catch (NpmProcessException e) {
+			warnPackageLockNotUsable(e);
+			return false;
+		}
+	}
+
+	private void warnPackageLockNotUsable(NpmProcessException e) {
+		LOGGER.warn("Installing from {} failed, falling back to npm install. If the package-lock.json is outdated, replace it with {} once the install is done.",
+				formatterStepLocations.packageLockFile(), nodeServerLayout.packageLockJsonFile(), e);
+	}
+
+	/**
+	 * The project is never written to, so if the configured package-lock.json doesn't exist yet, this points to the one
+	 * which the install wrote into the build directory, to be copied there and committed.
+	 */
+	private void explainHowToPinPackageLock() {
+		File packageLockFile = formatterStepLocations.packageLockFile();
+		if (packageLockFile == null || packageLockFile.exists() || !nodeServerLayout.packageLockJsonFile().isFile()) {
+			return;
+		}
+		LOGGER.warn("The node modules of {} are not pinned, because {} doesn't exist. To pin them, copy {} there.",
+				nodeServerLayout.nodeModulesDir().getName(), packageLockFile, nodeServerLayout.packageLockJsonFile());
+	}
+
+	private void npmInstallFromPackageJson() {
 		try {
 			npmProcessFactory.createNpmInstallProcess(nodeServerLayout, formatterStepLocations, PREFER_OFFLINE).waitFor();
 		} catch (NpmProcessException e) {
@@ -115,6 +174,10 @@ public class NodeApp {
 		return isNoMatchingVersionFound(installOutput) || isCannotResolveDependencyTree(installOutput);
 	}
 
+	private static boolean isPackageLockOutOfSync(ProcessRunner.Result result) {
+		return result != null && result.stdOutUtf8().contains("code EUSAGE");
+	}
+
 	private static boolean isNoMatchingVersionFound(String installOutput) {
 		return installOutput.contains("code ETARGET") && installOutput.contains("No matching version found for");
 	}
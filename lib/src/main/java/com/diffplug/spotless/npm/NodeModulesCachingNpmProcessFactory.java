@@ -16,15 +16,20 @@
 package com.diffplug.spotless.npm;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nonnull;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.diffplug.spotless.ProcessRunner;
 import com.diffplug.spotless.ProcessRunner.Result;
 
 public final class NodeModulesCachingNpmProcessFactory implements NpmProcessFactory {
@@ -33,6 +38,9 @@ public final class NodeModulesCachingNpmProcessFactory implements NpmProcessFact
 
 	private static final TimedLogger TIMED_LOGGER = TimedLogger.forLogger(LOGGER);
 
+	/** The version of each node executable, which is asked once per JVM. */
+	private static final Map<File, String> NODE_VERSIONS = new ConcurrentHashMap<>();
+
 	private final File cacheDir;
 
 	private final ShadowCopy shadowCopy;
@@ -62,22 +70,42 @@ public final class NodeModulesCachingNpmProcessFactory implements NpmProcessFact
 	@Override
 	public NpmProcess createNpmInstallProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, OnlinePreferrence onlinePreferrence) {
 		NpmProcess actualNpmInstallProcess = StandardNpmProcessFactory.INSTANCE.createNpmInstallProcess(nodeServerLayout, formatterStepLocations, onlinePreferrence);
-		return new CachingNmpInstall(actualNpmInstallProcess, nodeServerLayout);
+		return new CachingNmpInstall(actualNpmInstallProcess, nodeServerLayout, formatterStepLocations, false);
+	}
+
+	@Override
+	public NpmProcess createNpmCiProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, OnlinePreferrence onlinePreferrence) {
+		NpmProcess actualNpmCiProcess = StandardNpmProcessFactory.INSTANCE.createNpmCiProcess(nodeServerLayout, formatterStepLocations, onlinePreferrence);
+		return new CachingNmpInstall(actualNpmCiProcess, nodeServerLayout, formatterStepLocations, true);
+	}
+
+	@Override
+	public NpmLongRunningProcess createNpmServeProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, UUID nodeServerInstanceId, boolean nodeCompileCache) {
+		return StandardNpmProcessFactory.INSTANCE.createNpmServeProcess(nodeServerLayout, formatterStepLocations, nodeServerInstanceId, nodeCompileCache);
 	}
 
 	@Override
-	public NpmLongRunningProcess createNpmServeProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, UUID nodeServerInstanceId) {
-		return StandardNpmProcessFactory.INSTANCE.createNpmServeProcess(nodeServerLayout, formatterStepLocations, nodeServerInstanceId);
+	public NpmLongRunningProcess createNodeStdioServeProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, boolean nodeCompileCache) {
+		return StandardNpmProcessFactory.INSTANCE.createNodeStdioServeProcess(nodeServerLayout, formatterStepLocations, nodeCompileCache);
+	}
+
+	@Override
+	public NpmProcess createNodeDaemonStartProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, String nodeServerInstanceId, Duration idleTimeout, boolean nodeCompileCache) {
+		return StandardNpmProcessFactory.INSTANCE.createNodeDaemonStartProcess(nodeServerLayout, formatterStepLocations, nodeServerInstanceId, idleTimeout, nodeCompileCache);
 	}
 
 	private class CachingNmpInstall implements NpmProcess {
 
 		private final NpmProcess actualNpmInstallProcess;
 		private final NodeServerLayout nodeServerLayout;
+		private final NpmFormatterStepLocations formatterStepLocations;
+		private final boolean fromPackageLock;
 
-		public CachingNmpInstall(NpmProcess actualNpmInstallProcess, NodeServerLayout nodeServerLayout) {
+		public CachingNmpInstall(NpmProcess actualNpmInstallProcess, NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, boolean fromPackageLock) {
 			this.actualNpmInstallProcess = actualNpmInstallProcess;
 			this.nodeServerLayout = nodeServerLayout;
+			this.formatterStepLocations = formatterStepLocations;
+			this.fromPackageLock = fromPackageLock;
 		}
 
 		@Override
@@ -85,7 +113,7 @@ public final class NodeModulesCachingNpmProcessFactory implements NpmProcessFact
 			String entryName = entryName();
 			if (shadowCopy.entryExists(entryName, NodeServerLayout.NODE_MODULES)) {
 				TIMED_LOGGER.withInfo("Using cached node_modules for {} from {}", entryName, cacheDir)
-						.run(() -> shadowCopy.copyEntryInto(entryName(), NodeServerLayout.NODE_MODULES, nodeServerLayout.nodeModulesDir()));
+						.run(() -> shadowCopy.copyEntryInto(entryName, NodeServerLayout.NODE_MODULES, nodeServerLayout.nodeModulesDir()));
 				return new CachedResult();
 			} else {
 				Result result = TIMED_LOGGER.withInfo("calling actual npm install {}", actualNpmInstallProcess.describe())
@@ -98,11 +126,22 @@ public final class NodeModulesCachingNpmProcessFactory implements NpmProcessFact
 
 		private void storeShadowCopy(String entryName) {
 			TIMED_LOGGER.withInfo("Caching node_modules for {} in {}", entryName, cacheDir)
-					.run(() -> shadowCopy.addEntry(entryName(), new File(nodeServerLayout.nodeModulesDir(), NodeServerLayout.NODE_MODULES)));
+					.run(() -> shadowCopy.addEntry(entryName, new File(nodeServerLayout.nodeModulesDir(), NodeServerLayout.NODE_MODULES)));
 		}
 
+		/**
+		 * Named after what {@code npm install} depends on: the package.json, the .npmrc, the node version and, for
+		 * {@code npm ci}, the package-lock.json. Unlike the node server layout, the serve script is not part of it, so
+		 * projects and versions of a step which only differ in their serve script share an entry.
+		 */
 		private String entryName() {
-			return nodeServerLayout.nodeModulesDir().getName();
+			String packageJsonContent = NpmResourceHelper.readUtf8StringFromFile(nodeServerLayout.packageJsonFile());
+			String npmrcContent = nodeServerLayout.npmrcFile().isFile() ? NpmResourceHelper.readUtf8StringFromFile(nodeServerLayout.npmrcFile()) : "";
+			String nodeVersion = nodeVersion(formatterStepLocations.nodeExecutable());
+			String md5Hash = fromPackageLock
+					? NpmResourceHelper.md5(packageJsonContent, npmrcContent, nodeVersion, NpmResourceHelper.readUtf8StringFromFile(nodeServerLayout.packageLockJsonFile()))
+					: NpmResourceHelper.md5(packageJsonContent, npmrcContent, nodeVersion);
+			return "%s-node-modules-%s".formatted(NodeServerLayout.packageName(packageJsonContent), md5Hash);
 		}
 
 		@Override
@@ -111,6 +150,17 @@ public final class NodeModulesCachingNpmProcessFactory implements NpmProcessFact
 		}
 	}
 
+	private static String nodeVersion(File nodeExecutable) {
+		return NODE_VERSIONS.computeIfAbsent(nodeExecutable.getAbsoluteFile(), node -> {
+			try (ProcessRunner runner = new ProcessRunner()) {
+				return runner.exec(node.getPath(), "--version").assertExitZero(StandardCharsets.UTF_8).trim();
+			} catch (Exception e) {
+				LOGGER.debug("Unable to get the version of {}, using its path instead", node, e);
+				return node.getPath();
+			}
+		});
+	}
+
 	private class CachedResult extends Result {
 
 		public CachedResult() {
@@ -15,6 +15,7 @@
  */
 package com.diffplug.spotless.npm;
 
+import java.time.Duration;
 import java.util.UUID;
 
 import javax.annotation.Nonnull;
@@ -30,13 +31,31 @@ public class NodeServeApp extends NodeApp {
 
 	private static final TimedLogger TIMED_LOGGER = TimedLogger.forLogger(LOGGER);
 
+	private final boolean nodeCompileCache;
+
 	public NodeServeApp(@Nonnull NodeServerLayout nodeServerLayout, @Nonnull NpmConfig npmConfig, @Nonnull NpmFormatterStepLocations formatterStepLocations) {
+		this(nodeServerLayout, npmConfig, formatterStepLocations, true);
+	}
+
+	/** With {@code nodeCompileCache}, the servers keep the compiled code of their modules, see {@link NpmServerOptions#withNodeCompileCache}. */
+	public NodeServeApp(@Nonnull NodeServerLayout nodeServerLayout, @Nonnull NpmConfig npmConfig, @Nonnull NpmFormatterStepLocations formatterStepLocations, boolean nodeCompileCache) {
 		super(nodeServerLayout, npmConfig, formatterStepLocations);
+		this.nodeCompileCache = nodeCompileCache;
 	}
 
 	ProcessRunner.LongRunningProcess startNpmServeProcess(UUID nodeServerInstanceId) {
 		return TIMED_LOGGER.withInfo("Starting npm based server in {} with {}.", this.nodeServerLayout.nodeModulesDir(), this.npmProcessFactory.describe())
-				.call(() -> npmProcessFactory.createNpmServeProcess(nodeServerLayout, formatterStepLocations, nodeServerInstanceId).start());
+				.call(() -> npmProcessFactory.createNpmServeProcess(nodeServerLayout, formatterStepLocations, nodeServerInstanceId, nodeCompileCache).start());
+	}
+
+	ProcessRunner.LongRunningProcess startNodeStdioProcess() {
+		return TIMED_LOGGER.withInfo("Starting node based stdio server in {}.", this.nodeServerLayout.nodeModulesDir())
+				.call(() -> npmProcessFactory.createNodeStdioServeProcess(nodeServerLayout, formatterStepLocations, nodeCompileCache).start());
+	}
+
+	void startNodeDaemon(String nodeServerInstanceId, Duration idleTimeout) {
+		TIMED_LOGGER.withInfo("Starting persistent node based server {} in {}.", nodeServerInstanceId, this.nodeServerLayout.nodeModulesDir())
+				.run(() -> npmProcessFactory.createNodeDaemonStartProcess(nodeServerLayout, formatterStepLocations, nodeServerInstanceId, idleTimeout, nodeCompileCache).waitFor());
 	}
 
 }
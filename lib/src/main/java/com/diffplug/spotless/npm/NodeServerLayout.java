@@ -22,6 +22,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
+
 import com.diffplug.spotless.ThrowingEx;
 
 class NodeServerLayout {
@@ -38,21 +40,30 @@ class NodeServerLayout {
 	private final File npmrcFile;
 
 	NodeServerLayout(File buildDir, String packageJsonContent, String serveJsContent) {
-		this.nodeModulesDir = new File(buildDir, nodeModulesDirName(packageJsonContent, serveJsContent));
+		this(buildDir, packageJsonContent, serveJsContent, null);
+	}
+
+	NodeServerLayout(File buildDir, String packageJsonContent, String serveJsContent, @Nullable String packageLockJsonContent) {
+		this.nodeModulesDir = new File(buildDir, nodeModulesDirName(packageJsonContent, serveJsContent, packageLockJsonContent));
 		this.packageJsonFile = new File(nodeModulesDir, "package.json");
 		this.packageLockJsonFile = new File(nodeModulesDir, "package-lock.json");
 		this.serveJsFile = new File(nodeModulesDir, "serve.js");
 		this.npmrcFile = new File(nodeModulesDir, ".npmrc");
 	}
 
-	private static String nodeModulesDirName(String packageJsonContent, String serveJsContent) {
-		String md5Hash = NpmResourceHelper.md5(packageJsonContent, serveJsContent);
+	private static String nodeModulesDirName(String packageJsonContent, String serveJsContent, @Nullable String packageLockJsonContent) {
+		String md5Hash = packageLockJsonContent == null
+				? NpmResourceHelper.md5(packageJsonContent, serveJsContent)
+				: NpmResourceHelper.md5(packageJsonContent, serveJsContent, packageLockJsonContent);
+		return "%s-node-modules-%s".formatted(packageName(packageJsonContent), md5Hash);
+	}
+
+	static String packageName(String packageJsonContent) {
 		Matcher matcher = PACKAGE_JSON_NAME_PATTERN.matcher(packageJsonContent);
 		if (!matcher.find()) {
 			throw new IllegalArgumentException("package.json must contain a name property");
 		}
-		String packageName = matcher.group(1);
-		return "%s-node-modules-%s".formatted(packageName, md5Hash);
+		return matcher.group(1);
 	}
 
 	File nodeModulesDir() {
@@ -63,6 +74,10 @@ class NodeServerLayout {
 		return packageJsonFile;
 	}
 
+	File packageLockJsonFile() {
+		return packageLockJsonFile;
+	}
+
 	File serveJsFile() {
 		return serveJsFile;
 	}
@@ -33,10 +33,17 @@ class NpmConfig implements Serializable {
 
 	private final String npmrcContent;
 
+	private final String packageLockJsonContent;
+
 	public NpmConfig(@Nonnull String packageJsonContent, String serveScriptContent, String npmrcContent) {
+		this(packageJsonContent, serveScriptContent, npmrcContent, null);
+	}
+
+	public NpmConfig(@Nonnull String packageJsonContent, String serveScriptContent, String npmrcContent, String packageLockJsonContent) {
 		this.packageJsonContent = Objects.requireNonNull(packageJsonContent);
 		this.serveScriptContent = serveScriptContent;
 		this.npmrcContent = npmrcContent;
+		this.packageLockJsonContent = packageLockJsonContent;
 	}
 
 	@Nonnull
@@ -51,4 +58,9 @@ class NpmConfig implements Serializable {
 	public String getNpmrcContent() {
 		return npmrcContent;
 	}
+
+	/** The pinned package-lock.json, or null if {@code npm install} resolves the dependencies. */
+	public String getPackageLockJsonContent() {
+		return packageLockJsonContent;
+	}
 }
@@ -56,6 +56,11 @@ class NpmFormatterStepLocations implements Serializable {
 		return resolver.resolveNpmExecutable();
 	}
 
+	/** Where the package-lock.json of the step is pinned, or null. */
+	public File packageLockFile() {
+		return resolver.packageLockFile();
+	}
+
 	public File nodeExecutable() {
 		return resolver.resolveNodeExecutable();
 	}
@@ -19,15 +19,24 @@ import static java.util.Objects.requireNonNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serial;
 import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,15 +55,64 @@ abstract class NpmFormatterStepStateBase implements Serializable {
 	@Serial
 	private static final long serialVersionUID = 1460749955865959948L;
 
+	/** The dependencies of common-serve.js, which common-stdio.js doesn't need. */
+	private static final String HTTP_SERVER_DEPENDENCIES = ",\n\t\t\"express\": \"5.1.0\",\n\t\t\"http-graceful-shutdown\": \"3.1.14\"";
+
 	private final String stepName;
 	private final NpmConfig npmConfig;
+	/** Not final, because the runtime options are restored by {@link RoundtripState} after deserialization. */
+	private NpmServerOptions serverOptions;
 
 	public final NpmFormatterStepLocations locations;
 
 	protected NpmFormatterStepStateBase(String stepName, NpmConfig npmConfig, NpmFormatterStepLocations locations) throws IOException {
+		this(stepName, npmConfig, locations, NpmServerOptions.defaults());
+	}
+
+	protected NpmFormatterStepStateBase(String stepName, NpmConfig npmConfig, NpmFormatterStepLocations locations, NpmServerOptions serverOptions) throws IOException {
 		this.stepName = requireNonNull(stepName);
 		this.npmConfig = requireNonNull(npmConfig);
 		this.locations = locations;
+		this.serverOptions = requireNonNull(serverOptions);
+	}
+
+	NpmServerOptions serverOptions() {
+		return serverOptions;
+	}
+
+	/**
+	 * The state is the equality of the step, and neither how many servers format its files nor whether node caches
+	 * their compiled code changes how they are formatted, so those options are left out. {@link RoundtripState}
+	 * carries them through serialization instead.
+	 */
+	@Serial
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("stepName", stepName);
+		fields.put("npmConfig", npmConfig);
+		fields.put("serverOptions", serverOptions.withoutRuntimeOptions());
+		fields.put("locations", locations);
+		out.writeFields();
+	}
+
+	/** The roundtrip state of an npm-based step, which is its equality state together with all of its server options. */
+	static final class RoundtripState<S extends NpmFormatterStepStateBase> implements Serializable {
+		@Serial
+		private static final long serialVersionUID = 1L;
+
+		private final S state;
+		private final NpmServerOptions serverOptions;
+
+		RoundtripState(S state) {
+			this.state = requireNonNull(state);
+			this.serverOptions = ((NpmFormatterStepStateBase) state).serverOptions;
+		}
+
+		S equalityState() {
+			NpmFormatterStepStateBase base = state;
+			base.serverOptions = serverOptions;
+			return state;
+		}
 	}
 
 	public Runtime toRuntime() {
@@ -72,8 +130,8 @@ abstract class NpmFormatterStepStateBase implements Serializable {
 
 		Runtime(NpmFormatterStepStateBase parent) {
 			this.parent = parent;
-			this.nodeServerLayout = new NodeServerLayout(parent.locations.buildDir(), parent.npmConfig.getPackageJsonContent(), parent.npmConfig.getServeScriptContent());
-			this.nodeServeApp = new NodeServeApp(nodeServerLayout, parent.npmConfig, parent.locations);
+			this.nodeServerLayout = new NodeServerLayout(parent.locations.buildDir(), parent.npmConfig.getPackageJsonContent(), parent.npmConfig.getServeScriptContent(), parent.npmConfig.getPackageLockJsonContent());
+			this.nodeServeApp = new NodeServeApp(nodeServerLayout, parent.npmConfig, parent.locations, parent.serverOptions.nodeCompileCache());
 		}
 
 		public NodeServerLayout nodeServerLayout() {
@@ -111,6 +169,119 @@ abstract class NpmFormatterStepStateBase implements Serializable {
 			return nodeServeApp.needsPrepareNodeAppLayout();
 		}
 
+		/**
+		 * A pool of up to {@code serverPoolSize} servers, which are started when they are first needed. The layout is
+		 * prepared right away, as the pool may be shared with a step whose servers run from another layout.
+		 */
+		<S extends BaseNpmRestService> NpmServerPool<S> npmServerPool(NpmServerPool.ServiceFactory<S> serviceFactory) {
+			ThrowingEx.run(this::assertNodeServerDirReady);
+			return NpmServerPool.shared(sharedServerPoolKey(),
+					() -> new NpmServerPool<>(parent.serverOptions.serverPoolSize(), serverStarter(), serviceFactory));
+		}
+
+		private NpmServerPool.ServerStarter serverStarter() {
+			if (parent.serverOptions.stdioTransport()) {
+				return this::npmRunStdioServer;
+			} else if (parent.serverOptions.persistentServer()) {
+				AtomicInteger nextSlot = new AtomicInteger();
+				return () -> npmConnectPersistentServer(nextSlot.getAndIncrement());
+			} else {
+				return this::npmRunServer;
+			}
+		}
+
+		/**
+		 * Steps of the same kind (the serve script is part of the key) with the same node modules, npm config, executables
+		 * and server options share their servers, e.g. the same step in all subprojects of a build. The layout directory
+		 * itself is not part of the key, each subproject has its own copy of the same node modules, so steps must only
+		 * send absolute paths to their servers.
+		 */
+		private List<Object> sharedServerPoolKey() {
+			return List.of(
+					NpmResourceHelper.md5(
+							parent.npmConfig.getPackageJsonContent(),
+							Objects.toString(parent.npmConfig.getServeScriptContent(), ""),
+							Objects.toString(parent.npmConfig.getPackageLockJsonContent(), ""),
+							Objects.toString(parent.npmConfig.getNpmrcContent(), "")),
+					parent.locations.nodeExecutable().getAbsolutePath(),
+					parent.locations.npmExecutable().getAbsolutePath(),
+					parent.serverOptions);
+		}
+
+		/**
+		 * Connects to the persistent server in the given slot of this node server layout, npm config and node executable,
+		 * starting it if it isn't running. Each slot has a lock file, so that concurrent builds don't both start it, and
+		 * a secret which only the user can read, so that other users can't send requests to it.
+		 */
+		protected ServerProcessInfo npmConnectPersistentServer(int slot) throws ServerStartException, IOException {
+			assertNodeServerDirReady();
+			final String instanceId = "daemon-%s-%d".formatted(persistentServerKey(), slot);
+			final File serverPortFile = new File(this.nodeServerLayout.nodeModulesDir(), "server-%s.port".formatted(instanceId));
+			final File secretFile = new File(this.nodeServerLayout.nodeModulesDir(), "server-%s.secret".formatted(instanceId));
+			final File lockFile = new File(this.nodeServerLayout.nodeModulesDir(), "server-%s.lock".formatted(instanceId));
+			AtomicReference<ServerProcessInfo> server = new AtomicReference<>();
+			// the file lock keeps out other builds, the folder access other threads of this one
+			ExclusiveFolderAccess.forFolder(lockFile).runExclusively(() -> {
+				try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+					// released when the channel is closed
+					channel.lock();
+					ServerProcessInfo running = connectToPersistentServer(serverPortFile, secretFile, instanceId);
+					if (running == null) {
+						NpmResourceHelper.deleteFileIfExists(serverPortFile);
+						// the server reads its secret when it starts
+						NpmResourceHelper.writeOwnerOnlyFile(secretFile, NpmResourceHelper.randomSecret());
+						nodeServeApp.startNodeDaemon(instanceId, parent.serverOptions.persistentServerIdleTimeout());
+						try {
+							NpmResourceHelper.awaitReadableFile(serverPortFile, Duration.ofSeconds(60));
+						} catch (TimeoutException e) {
+							throw new ServerStartException("Starting persistent server failed, see " + new File(this.nodeServerLayout.nodeModulesDir(), "server-%s.log".formatted(instanceId)), e);
+						}
+						running = connectToPersistentServer(serverPortFile, secretFile, instanceId);
+						if (running == null) {
+							throw new ServerStartException("Persistent server " + instanceId + " doesn't answer", null);
+						}
+					} else {
+						LOGGER.debug("Reusing persistent npm server {}", running);
+					}
+					server.set(running);
+				}
+			});
+			return server.get();
+		}
+
+		/** The persistent server behind the given port file, or null if there is none or it is not the expected one. */
+		@Nullable private ServerProcessInfo connectToPersistentServer(File serverPortFile, File secretFile, String instanceId) {
+			if (!serverPortFile.isFile() || !secretFile.isFile()) {
+				return null;
+			}
+			ServerProcessInfo server = ServerProcessInfo.persistent(NpmResourceHelper.readUtf8StringFromFile(serverPortFile).trim(),
+					NpmResourceHelper.readUtf8StringFromFile(secretFile).trim());
+			try {
+				// the port may be taken by a different process after the server exited without removing its port file
+				if (instanceId.equals(server.client().post("/ping"))) {
+					return server;
+				}
+			} catch (SimpleRestClient.SimpleRestException e) {
+				LOGGER.debug("Persistent npm server {} doesn't answer", instanceId, e);
+			}
+			return null;
+		}
+
+		/** The files of the server are in the layout, so the key only has to tell apart what runs there over time. */
+		private String persistentServerKey() {
+			return NpmResourceHelper.md5(
+					parent.npmConfig.getPackageJsonContent(),
+					Objects.toString(parent.npmConfig.getServeScriptContent(), ""),
+					Objects.toString(parent.npmConfig.getNpmrcContent(), ""),
+					parent.locations.nodeExecutable().getAbsolutePath());
+		}
+
+		/** Starts node directly on the serve script, talking over its stdin and stdout, so there is no port file to wait for. */
+		protected ServerProcessInfo npmRunStdioServer() throws ServerStartException, IOException {
+			assertNodeServerDirReady();
+			return ServerProcessInfo.stdio(nodeServeApp.startNodeStdioProcess());
+		}
+
 		protected ServerProcessInfo npmRunServer() throws ServerStartException, IOException {
 			assertNodeServerDirReady();
 			LongRunningProcess server = null;
@@ -150,6 +321,11 @@ abstract class NpmFormatterStepStateBase implements Serializable {
 	}
 
 	protected static String replaceDevDependencies(String template, Map<String, String> devDependencies) {
+		return replaceDevDependencies(template, devDependencies, NpmServerOptions.defaults());
+	}
+
+	/** Fills the package.json template, with the dependencies needed by the server of the given transport. */
+	protected static String replaceDevDependencies(String template, Map<String, String> devDependencies, NpmServerOptions serverOptions) {
 		StringBuilder builder = new StringBuilder();
 		Iterator<Map.Entry<String, String>> entryIter = devDependencies.entrySet().iterator();
 		while (entryIter.hasNext()) {
@@ -163,7 +339,17 @@ abstract class NpmFormatterStepStateBase implements Serializable {
 				builder.append(",\n");
 			}
 		}
-		return replacePlaceholders(template, Map.of("devDependencies", builder.toString()));
+		return replacePlaceholders(template, Map.of(
+				"devDependencies", builder.toString(),
+				"serverDependencies", serverOptions.stdioTransport() ? "" : HTTP_SERVER_DEPENDENCIES));
+	}
+
+	/** The serve script of a step: the transport of the given options, the batch helpers, and the endpoints of the step. */
+	protected static String serveScript(NpmServerOptions serverOptions, String stepServeScript) {
+		return NpmResourceHelper.readUtf8StringFromClasspath(NpmFormatterStepStateBase.class,
+				serverOptions.stdioTransport() ? "/com/diffplug/spotless/npm/common-stdio.js" : "/com/diffplug/spotless/npm/common-serve.js",
+				"/com/diffplug/spotless/npm/common-batch.js",
+				stepServeScript);
 	}
 
 	private static String replacePlaceholders(String template, Map<String, String> replacements) {
@@ -177,36 +363,91 @@ abstract class NpmFormatterStepStateBase implements Serializable {
 	public abstract FormatterFunc createFormatterFunc();
 
 	protected static class ServerProcessInfo implements AutoCloseable {
-		private final Process server;
-		private final String serverPort;
-		private final File serverPortFile;
+		@Nullable private final Process server;
+		@Nullable private final String serverPort;
+		@Nullable private final File serverPortFile;
+		@Nullable private final NpmStdioClient stdioClient;
+		@Nullable private final String secret;
 
 		public ServerProcessInfo(Process server, String serverPort, File serverPortFile) {
+			this(server, requireNonNull(serverPort), requireNonNull(serverPortFile), null, null);
+		}
+
+		private ServerProcessInfo(@Nullable Process server, @Nullable String serverPort, @Nullable File serverPortFile, @Nullable NpmStdioClient stdioClient, @Nullable String secret) {
 			this.server = server;
 			this.serverPort = serverPort;
 			this.serverPortFile = serverPortFile;
+			this.stdioClient = stdioClient;
+			this.secret = secret;
+		}
+
+		static ServerProcessInfo stdio(Process server) {
+			return new ServerProcessInfo(server, null, null, new NpmStdioClient(server.getOutputStream(), server.getInputStream()), null);
+		}
+
+		/** A server which was not started by this build, and keeps running after it. It requires the given secret with each request. */
+		static ServerProcessInfo persistent(String serverPort, String secret) {
+			return new ServerProcessInfo(null, requireNonNull(serverPort), null, null, requireNonNull(secret));
+		}
+
+		/** Whether the server keeps running when it is closed, so it must not be asked to shut down either. */
+		boolean keepsRunning() {
+			return server == null;
 		}
 
 		public String getBaseUrl() {
+			if (stdioClient != null) {
+				throw new IllegalStateException("Server talks over stdin/stdout, it has no url");
+			}
 			return "http://127.0.0.1:" + this.serverPort;
 		}
 
+		/** A client for the transport of this server. */
+		NpmServerClient client() {
+			if (stdioClient != null) {
+				return stdioClient;
+			}
+			return secret != null ? SimpleRestClient.forBaseUrl(getBaseUrl(), secret) : SimpleRestClient.forBaseUrl(getBaseUrl());
+		}
+
+		/** Ends the server without asking it to shut down, e.g. because it stopped answering. A persistent server is only forgotten. */
+		void destroy() throws Exception {
+			if (server != null) {
+				server.destroyForcibly();
+			}
+			close();
+		}
+
+		@Override
+		public String toString() {
+			if (stdioClient != null) {
+				return "stdio server " + server.pid();
+			}
+			return keepsRunning() ? "persistent server at " + getBaseUrl() : getBaseUrl();
+		}
+
 		@Override
 		public void close() throws Exception {
+			if (server == null) {
+				return;
+			}
 			try {
-				LOGGER.trace("Closing npm server in directory <{}> and port <{}>",
-						serverPortFile.getParent(), serverPort);
-
+				LOGGER.trace("Closing npm server {}", this);
+				if (stdioClient != null) {
+					stdioClient.close();
+				}
 				if (server.isAlive()) {
 					boolean ended = server.waitFor(5, TimeUnit.SECONDS);
 					if (!ended) {
-						LOGGER.info("Force-Closing npm server in directory <{}> and port <{}>", serverPortFile.getParent(), serverPort);
+						LOGGER.info("Force-Closing npm server {}", this);
 						server.destroyForcibly().waitFor();
-						LOGGER.trace("Force-Closing npm server in directory <{}> and port <{}> -- Finished", serverPortFile.getParent(), serverPort);
+						LOGGER.trace("Force-Closing npm server {} -- Finished", this);
 					}
 				}
 			} finally {
-				NpmResourceHelper.deleteFileIfExists(serverPortFile);
+				if (serverPortFile != null) {
+					NpmResourceHelper.deleteFileIfExists(serverPortFile);
+				}
 			}
 		}
 	}
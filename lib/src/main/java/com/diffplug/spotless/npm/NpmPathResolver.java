@@ -34,10 +34,21 @@ public class NpmPathResolver implements Serializable {
 
 	private final List<File> additionalNpmrcLocations;
 
+	private final File explicitPackageLockFile;
+
 	public NpmPathResolver(File explicitNpmExecutable, File explicitNodeExecutable, File explicitNpmrcFile, List<File> additionalNpmrcLocations) {
+		this(explicitNpmExecutable, explicitNodeExecutable, explicitNpmrcFile, additionalNpmrcLocations, null);
+	}
+
+	/**
+	 * Like {@link #NpmPathResolver(File, File, File, List)}, but with a package-lock.json, which pins the node modules
+	 * of the step. If the file doesn't exist yet, the package-lock.json of the first {@code npm install} is written to it.
+	 */
+	public NpmPathResolver(File explicitNpmExecutable, File explicitNodeExecutable, File explicitNpmrcFile, List<File> additionalNpmrcLocations, File explicitPackageLockFile) {
 		this.explicitNpmExecutable = explicitNpmExecutable;
 		this.explicitNodeExecutable = explicitNodeExecutable;
 		this.explicitNpmrcFile = explicitNpmrcFile;
+		this.explicitPackageLockFile = explicitPackageLockFile;
 		// We must not use an immutable list (e.g. List.copyOf) here, because immutable lists cannot be restored
 		// from Gradle’s serialisation. See https://github.com/diffplug/spotless/issues/2372
 		this.additionalNpmrcLocations = new ArrayList<>(additionalNpmrcLocations);
@@ -91,4 +102,16 @@ public class NpmPathResolver implements Serializable {
 				.orElse(null);
 	}
 
+	public File packageLockFile() {
+		return explicitPackageLockFile;
+	}
+
+	/** The content of the package-lock.json, or null if none is configured or it wasn't written yet. */
+	public String resolvePackageLockContent() {
+		return Optional.ofNullable(explicitPackageLockFile)
+				.filter(File::isFile)
+				.map(NpmResourceHelper::readUtf8StringFromFile)
+				.orElse(null);
+	}
+
 }
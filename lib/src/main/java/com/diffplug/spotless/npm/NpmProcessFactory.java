@@ -15,12 +15,13 @@
  */
 package com.diffplug.spotless.npm;
 
+import java.time.Duration;
 import java.util.UUID;
 
 public interface NpmProcessFactory {
 
 	enum OnlinePreferrence {
-		PREFER_OFFLINE("--prefer-offline"), PREFER_ONLINE("--prefer-online");
+		OFFLINE("--offline"), PREFER_OFFLINE("--prefer-offline"), PREFER_ONLINE("--prefer-online");
 
 		private final String option;
 
@@ -35,7 +36,17 @@ public interface NpmProcessFactory {
 
 	NpmProcess createNpmInstallProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, OnlinePreferrence onlinePreferrence);
 
-	NpmLongRunningProcess createNpmServeProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, UUID nodeServerInstanceId);
+	/** Installs exactly the node modules of the package-lock.json in the layout, see {@code npm ci}. */
+	NpmProcess createNpmCiProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, OnlinePreferrence onlinePreferrence);
+
+	/** The server processes keep a {@code NODE_COMPILE_CACHE} in the layout if {@code nodeCompileCache} is set. */
+	NpmLongRunningProcess createNpmServeProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, UUID nodeServerInstanceId, boolean nodeCompileCache);
+
+	/** Runs the serve script directly with node, keeping its stdin and stdout open for the requests and responses. */
+	NpmLongRunningProcess createNodeStdioServeProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, boolean nodeCompileCache);
+
+	/** Runs the serve script with node so that it launches a detached copy of itself, which keeps running after the build. */
+	NpmProcess createNodeDaemonStartProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, String nodeServerInstanceId, Duration idleTimeout, boolean nodeCompileCache);
 
 	default String describe() {
 		return getClass().getSimpleName();
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.npm;
+
+import java.util.Map;
+
+/**
+ * Sends requests to the endpoints of a node server, either over http ({@link SimpleRestClient}) or over
+ * stdin/stdout ({@link NpmStdioClient}). Both report problems as {@link SimpleRestClient.SimpleRestException}.
+ */
+interface NpmServerClient {
+	String postJson(String endpoint, Map<String, Object> jsonParams) throws SimpleRestClient.SimpleRestException;
+
+	String post(String endpoint) throws SimpleRestClient.SimpleRestException;
+}
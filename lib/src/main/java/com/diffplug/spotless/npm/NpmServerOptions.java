@@ -0,0 +1,137 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.npm;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Objects;
+
+/** How the node servers of an npm-based step are run and talked to. */
+public final class NpmServerOptions implements Serializable {
+	@Serial
+	private static final long serialVersionUID = 1L;
+
+	/** How long a persistent server waits for the next request before it exits, unless configured otherwise. */
+	public static final Duration DEFAULT_PERSISTENT_SERVER_IDLE_TIMEOUT = Duration.ofMinutes(30);
+
+	private static final NpmServerOptions DEFAULTS = new NpmServerOptions(1, false, Duration.ZERO, true);
+
+	private final int serverPoolSize;
+	private final boolean stdioTransport;
+	private final Duration persistentServerIdleTimeout;
+	private final boolean nodeCompileCache;
+
+	private NpmServerOptions(int serverPoolSize, boolean stdioTransport, Duration persistentServerIdleTimeout, boolean nodeCompileCache) {
+		if (serverPoolSize < 1) {
+			throw new IllegalArgumentException("serverPoolSize must be at least 1, was " + serverPoolSize);
+		}
+		if (persistentServerIdleTimeout.isNegative()) {
+			throw new IllegalArgumentException("persistentServerIdleTimeout must not be negative, was " + persistentServerIdleTimeout);
+		}
+		if (stdioTransport && !persistentServerIdleTimeout.isZero()) {
+			throw new IllegalArgumentException("A persistent server is reached over http, it can't use the stdio transport");
+		}
+		this.serverPoolSize = serverPoolSize;
+		this.stdioTransport = stdioTransport;
+		this.persistentServerIdleTimeout = persistentServerIdleTimeout;
+		this.nodeCompileCache = nodeCompileCache;
+	}
+
+	/** A single server per step, talked to over http, which keeps a compile cache. */
+	public static NpmServerOptions defaults() {
+		return DEFAULTS;
+	}
+
+	/** Runs up to the given number of servers per step, which format concurrently. */
+	public NpmServerOptions withServerPoolSize(int serverPoolSize) {
+		return new NpmServerOptions(serverPoolSize, stdioTransport, persistentServerIdleTimeout, nodeCompileCache);
+	}
+
+	/**
+	 * Talks to the servers over length-prefixed frames on their stdin and stdout instead of http, which needs
+	 * neither express nor a port file, and sends the file content without escaping it as json.
+	 */
+	public NpmServerOptions withStdioTransport(boolean stdioTransport) {
+		return new NpmServerOptions(serverPoolSize, stdioTransport, persistentServerIdleTimeout, nodeCompileCache);
+	}
+
+	/**
+	 * Keeps the servers running after the build, so that later builds with the same node modules and npm config
+	 * reuse them instead of paying for starting node and loading the formatter again. A server exits once it didn't
+	 * get a request for the given time, {@link Duration#ZERO} turns persistent servers off.
+	 */
+	public NpmServerOptions withPersistentServerIdleTimeout(Duration persistentServerIdleTimeout) {
+		return new NpmServerOptions(serverPoolSize, stdioTransport, Objects.requireNonNull(persistentServerIdleTimeout), nodeCompileCache);
+	}
+
+	/**
+	 * Sets {@code NODE_COMPILE_CACHE} for the servers to a folder in their node server layout, so that node 22.1 and
+	 * newer keep the compiled code of the formatter on disk for the next start. On by default, unless the build
+	 * environment sets {@code NODE_COMPILE_CACHE} itself.
+	 */
+	public NpmServerOptions withNodeCompileCache(boolean nodeCompileCache) {
+		return new NpmServerOptions(serverPoolSize, stdioTransport, persistentServerIdleTimeout, nodeCompileCache);
+	}
+
+	/** These options without the ones which don't change how files are formatted, for the equality of a step. */
+	NpmServerOptions withoutRuntimeOptions() {
+		return new NpmServerOptions(DEFAULTS.serverPoolSize, stdioTransport, persistentServerIdleTimeout, DEFAULTS.nodeCompileCache);
+	}
+
+	public int serverPoolSize() {
+		return serverPoolSize;
+	}
+
+	public boolean stdioTransport() {
+		return stdioTransport;
+	}
+
+	public Duration persistentServerIdleTimeout() {
+		return persistentServerIdleTimeout;
+	}
+
+	public boolean nodeCompileCache() {
+		return nodeCompileCache;
+	}
+
+	public boolean persistentServer() {
+		return !persistentServerIdleTimeout.isZero();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof NpmServerOptions)) {
+			return false;
+		}
+		NpmServerOptions that = (NpmServerOptions) o;
+		return serverPoolSize == that.serverPoolSize && stdioTransport == that.stdioTransport && persistentServerIdleTimeout.equals(that.persistentServerIdleTimeout)
+				&& nodeCompileCache == that.nodeCompileCache;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(serverPoolSize, stdioTransport, persistentServerIdleTimeout, nodeCompileCache);
+	}
+
+	@Override
+	public String toString() {
+		return "NpmServerOptions[serverPoolSize=" + serverPoolSize + ", stdioTransport=" + stdioTransport + ", persistentServerIdleTimeout=" + persistentServerIdleTimeout + ", nodeCompileCache=" + nodeCompileCache + "]";
+	}
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.npm;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.diffplug.spotless.ThrowingEx;
+import com.diffplug.spotless.npm.NpmFormatterStepStateBase.ServerProcessInfo;
+
+/**
+ * Up to {@code size} node servers of the same step. Node is single-threaded, so concurrent requests are spread over
+ * several servers. Servers are started lazily when all started ones are busy, so a pool which is only used by one
+ * thread at a time runs a single server. Closing the pool shuts down all servers, except persistent ones.
+ * <p>
+ * Steps with equal servers share one pool via {@link #shared}, which counts its users and only shuts the servers
+ * down once the last of them closed the pool.
+ */
+final class NpmServerPool<S extends BaseNpmRestService> implements AutoCloseable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(NpmServerPool.class);
+
+	@FunctionalInterface
+	interface ServerStarter {
+		ServerProcessInfo start() throws Exception;
+	}
+
+	@FunctionalInterface
+	interface ServiceFactory<S extends BaseNpmRestService> {
+		S create(NpmServerClient client);
+	}
+
+	/** Handles the items {@code from} (inclusive) to {@code to} (exclusive) of a partitioned call. */
+	@FunctionalInterface
+	interface PartitionCall<S extends BaseNpmRestService, T> {
+		List<T> apply(S service, int from, int to) throws Exception;
+	}
+
+	private static final class Server<S extends BaseNpmRestService> {
+		final ServerProcessInfo process;
+		final S service;
+
+		Server(ServerProcessInfo process, S service) {
+			this.process = process;
+			this.service = service;
+		}
+	}
+
+	/** The open shared pools by their key, guarded by itself. */
+	private static final Map<Object, NpmServerPool<?>> SHARED = new HashMap<>();
+
+	private final int size;
+	private final ServerStarter starter;
+	private final ServiceFactory<S> serviceFactory;
+	private final Deque<Server<S>> idle = new ArrayDeque<>();
+	private final List<Server<S>> started = new ArrayList<>();
+	private int starting;
+	private boolean closed;
+	private ExecutorService partitionExecutor;
+	/** The key in {@link #SHARED} and the number of users, both guarded by {@link #SHARED}. */
+	private @Nullable Object sharedKey;
+	private int users = 1;
+
+	/**
+	 * Returns the open pool with the given key, or creates one. Each call must be paired with a {@link #close()}, and
+	 * a key must only be used for servers which answer all requests alike, whichever step sends them.
+	 */
+	@SuppressWarnings("unchecked")
+	static <S extends BaseNpmRestService> NpmServerPool<S> shared(Object key, Supplier<NpmServerPool<S>> factory) {
+		synchronized (SHARED) {
+			NpmServerPool<S> pool = (NpmServerPool<S>) SHARED.get(key);
+			if (pool != null) {
+				++pool.users;
+				LOGGER.debug("Sharing npm server pool with {} users", pool.users);
+				return pool;
+			}
+			pool = factory.get();
+			pool.sharedKey = key;
+			SHARED.put(key, pool);
+			return pool;
+		}
+	}
+
+	NpmServerPool(int size, ServerStarter starter, ServiceFactory<S> serviceFactory) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Server pool size must be at least 1, was " + size);
+		}
+		this.size = size;
+		this.starter = requireNonNull(starter);
+		this.serviceFactory = requireNonNull(serviceFactory);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Calls the given function with the service of an idle server, starting a new server if none is idle. If the
+	 * connection to the server fails, e.g. because it crashed, the server is dropped and the call is tried once more.
+	 */
+	<T> T call(ThrowingEx.Function<S, T> function) throws Exception {
+		try {
+			return callOnce(function);
+		} catch (SimpleRestClient.SimpleRestIOException e) {
+			if (e.getCause() instanceof InterruptedException || Thread.currentThread().isInterrupted()) {
+				throw e;
+			}
+			LOGGER.info("Lost the connection to an npm server, trying again with another one", e);
+			return callOnce(function);
+		}
+	}
+
+	private <T> T callOnce(ThrowingEx.Function<S, T> function) throws Exception {
+		Server<S> server = borrow();
+		boolean broken = false;
+		try {
+			return function.apply(server.service);
+		} catch (SimpleRestClient.SimpleRestIOException e) {
+			broken = true;
+			throw e;
+		} finally {
+			if (broken) {
+				discard(server);
+			} else {
+				giveBack(server);
+			}
+		}
+	}
+
+	/**
+	 * Splits {@code count} items into one contiguous partition per server and calls the partitions concurrently,
+	 * concatenating their results in order.
+	 */
+	<T> List<T> callPartitioned(int count, PartitionCall<S, T> function) throws Exception {
+		int partitions = Math.min(size, count);
+		if (partitions <= 1) {
+			return call(service -> function.apply(service, 0, count));
+		}
+		List<Future<List<T>>> futures = new ArrayList<>(partitions);
+		for (int i = 0; i < partitions; i++) {
+			int from = (int) ((long) count * i / partitions);
+			int to = (int) ((long) count * (i + 1) / partitions);
+			futures.add(partitionExecutor().submit(() -> call(service -> function.apply(service, from, to))));
+		}
+		List<T> results = new ArrayList<>(count);
+		for (Future<List<T>> future : futures) {
+			try {
+				results.addAll(future.get());
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof Exception cause ? cause : e;
+			}
+		}
+		return results;
+	}
+
+	private synchronized ExecutorService partitionExecutor() {
+		if (partitionExecutor == null) {
+			partitionExecutor = Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "spotless-npm-server-pool");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return partitionExecutor;
+	}
+
+	private Server<S> borrow() throws Exception {
+		synchronized (this) {
+			while (true) {
+				if (closed) {
+					throw new IllegalStateException("Server pool is already closed");
+				}
+				if (!idle.isEmpty()) {
+					return idle.pop();
+				}
+				if (started.size() + starting < size) {
+					++starting;
+					break;
+				}
+				wait();
+			}
+		}
+		// start outside of the lock, so that several servers can start at the same time
+		ServerProcessInfo process = null;
+		Server<S> server = null;
+		try {
+			process = starter.start();
+		} finally {
+			synchronized (this) {
+				--starting;
+				if (process != null && !closed) {
+					server = new Server<>(process, serviceFactory.create(process.client()));
+					started.add(server);
+					LOGGER.debug("Started npm server {} of {}: {}", started.size(), size, process);
+				}
+				notifyAll();
+			}
+		}
+		if (server == null) {
+			process.close();
+			throw new IllegalStateException("Server pool was closed while starting a server");
+		}
+		return server;
+	}
+
+	private synchronized void giveBack(Server<S> server) {
+		idle.push(server);
+		notifyAll();
+	}
+
+	/** Drops a server whose connection is in an unknown state, so that the next borrower starts a new one in its place. */
+	private void discard(Server<S> server) {
+		synchronized (this) {
+			if (!started.remove(server)) {
+				// the pool was closed in the meantime, and closes the server itself
+				return;
+			}
+			notifyAll();
+		}
+		LOGGER.info("Dropping npm server {} after a failed connection", server.process);
+		try {
+			server.process.destroy();
+		} catch (Exception e) {
+			LOGGER.debug("Failed to destroy npm server {}", server.process, e);
+		}
+	}
+
+	@Override
+	public void close() throws Exception {
+		synchronized (SHARED) {
+			if (sharedKey != null) {
+				if (--users > 0) {
+					return;
+				}
+				SHARED.remove(sharedKey, this);
+				sharedKey = null;
+			}
+		}
+		List<Server<S>> toClose;
+		synchronized (this) {
+			closed = true;
+			toClose = new ArrayList<>(started);
+			started.clear();
+			idle.clear();
+			if (partitionExecutor != null) {
+				partitionExecutor.shutdownNow();
+			}
+			notifyAll();
+		}
+		Exception problem = null;
+		for (Server<S> server : toClose) {
+			if (!server.process.keepsRunning()) {
+				try {
+					server.service.shutdown();
+				} catch (Throwable t) {
+					LOGGER.info("Failed to request shutdown of rest service via api. Trying via process.", t);
+				}
+			}
+			try {
+				server.process.close();
+			} catch (Exception e) {
+				if (problem == null) {
+					problem = e;
+				} else {
+					problem.addSuppressed(e);
+				}
+			}
+		}
+		if (problem != null) {
+			throw problem;
+		}
+	}
+}
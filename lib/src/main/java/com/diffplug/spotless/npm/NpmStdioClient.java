@@ -0,0 +1,123 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.npm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Talks to a node server started with {@code common-stdio.js} over its stdin and stdout, one request at a time.
+ * <p>
+ * All ints are big-endian, all strings are UTF-8, and a length of -1 means absent.
+ * <ul>
+ * <li>request: {@code [int length][endpoint] [int length][json options] [int length][file content]}</li>
+ * <li>response: {@code [int status][int length][body]}</li>
+ * </ul>
+ * The {@code file_content} option is sent as the raw file content, so it doesn't need to be escaped as json.
+ */
+final class NpmStdioClient implements NpmServerClient, AutoCloseable {
+	private static final String FILE_CONTENT = "file_content";
+
+	private final DataOutputStream out;
+	private final DataInputStream in;
+	private boolean broken;
+
+	NpmStdioClient(OutputStream stdin, InputStream stdout) {
+		this.out = new DataOutputStream(new BufferedOutputStream(stdin));
+		this.in = new DataInputStream(new BufferedInputStream(stdout));
+	}
+
+	@Override
+	public String postJson(String endpoint, Map<String, Object> jsonParams) throws SimpleRestClient.SimpleRestException {
+		Map<String, Object> options = new LinkedHashMap<>(jsonParams);
+		Object fileContent = options.remove(FILE_CONTENT);
+		if (fileContent != null && !(fileContent instanceof String)) {
+			options.put(FILE_CONTENT, fileContent);
+			fileContent = null;
+		}
+		return exchange(endpoint, JsonWriter.of(options).toJsonString(), (String) fileContent);
+	}
+
+	@Override
+	public String post(String endpoint) throws SimpleRestClient.SimpleRestException {
+		return exchange(endpoint, null, null);
+	}
+
+	private synchronized String exchange(String endpoint, @Nullable String json, @Nullable String fileContent) throws SimpleRestClient.SimpleRestException {
+		int status;
+		String body;
+		try {
+			if (broken) {
+				throw new IOException("An earlier request left the connection to the node server in an unknown state");
+			}
+			// until the whole response has been read, a failure leaves the stream somewhere in the middle of a frame
+			broken = true;
+			writeFrame(endpoint);
+			writeFrame(json);
+			writeFrame(fileContent);
+			out.flush();
+			status = in.readInt();
+			body = readFrame();
+			broken = false;
+		} catch (IOException e) {
+			throw new SimpleRestClient.SimpleRestIOException(e);
+		}
+		if (status != 200) {
+			throw new SimpleRestClient.SimpleRestResponseException(status, body, "Unexpected response status code at " + endpoint);
+		}
+		return body;
+	}
+
+	private void writeFrame(@Nullable String content) throws IOException {
+		if (content == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private String readFrame() throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return "";
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/** Closes stdin of the server, which makes it exit. */
+	@Override
+	public void close() {
+		try {
+			out.close();
+		} catch (IOException e) {
+			// the server is gone already
+		}
+	}
+}
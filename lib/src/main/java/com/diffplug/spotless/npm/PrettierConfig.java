@@ -34,9 +34,20 @@ public class PrettierConfig implements Serializable {
 
 	private final TreeMap<String, Object> options;
 
+	private final boolean perDirectoryConfig;
+
 	public PrettierConfig(@Nullable File prettierConfigPath, @Nullable Map<String, Object> options) {
+		this(prettierConfigPath, options, false);
+	}
+
+	/**
+	 * With {@code perDirectoryConfig}, the config which prettier finds for each file, such as the closest
+	 * {@code .prettierrc}, is applied below the config file and options given here.
+	 */
+	public PrettierConfig(@Nullable File prettierConfigPath, @Nullable Map<String, Object> options, boolean perDirectoryConfig) {
 		this.prettierConfigPathSignature = prettierConfigPath == null ? null : FileSignature.promise(prettierConfigPath);
 		this.options = options == null ? new TreeMap<>() : new TreeMap<>(options);
+		this.perDirectoryConfig = perDirectoryConfig;
 	}
 
 	@Nullable public File getPrettierConfigPath() {
@@ -46,4 +57,8 @@ public class PrettierConfig implements Serializable {
 	public Map<String, Object> getOptions() {
 		return new TreeMap<>(this.options);
 	}
+
+	public boolean isPerDirectoryConfig() {
+		return perDirectoryConfig;
+	}
 }
@@ -20,19 +20,32 @@ import static java.util.Objects.requireNonNull;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.diffplug.spotless.FileSignature;
 import com.diffplug.spotless.FormatterFunc;
 import com.diffplug.spotless.FormatterFunc.Closeable;
 import com.diffplug.spotless.FormatterStep;
 import com.diffplug.spotless.Provisioner;
 import com.diffplug.spotless.ThrowingEx;
+import com.diffplug.spotless.npm.NpmFormatterStepStateBase.RoundtripState;
 
 public final class PrettierFormatterStep {
 
@@ -42,6 +55,12 @@ public final class PrettierFormatterStep {
 
 	public static final String DEFAULT_VERSION = "2.8.8";
 
+	/** The config files which prettier looks for, like {@code CONFIG_FILE_NAME} in prettier-serve.js. */
+	private static final Pattern CONFIG_FILE_NAME = Pattern.compile("\\.prettierrc.*|prettier\\.config\\..*|package\\.json|package\\.yaml");
+
+	/** Directories without config files of the project, the node server layouts have a package.json of their own. */
+	private static final Set<String> SKIPPED_DIRECTORIES = Set.of("node_modules", ".git", ".gradle");
+
 	public static Map<String, String> defaultDevDependencies() {
 		return defaultDevDependenciesWithPrettier(DEFAULT_VERSION);
 	}
@@ -51,83 +70,168 @@ public final class PrettierFormatterStep {
 	}
 
 	public static FormatterStep create(Map<String, String> devDependencies, Provisioner provisioner, File projectDir, File buildDir, File cacheDir, NpmPathResolver npmPathResolver, PrettierConfig prettierConfig) {
+		return create(devDependencies, provisioner, projectDir, buildDir, cacheDir, npmPathResolver, prettierConfig, NpmServerOptions.defaults());
+	}
+
+	/** Like {@link #create(Map, Provisioner, File, File, File, NpmPathResolver, PrettierConfig)}, but with the given options for its node servers. */
+	public static FormatterStep create(Map<String, String> devDependencies, Provisioner provisioner, File projectDir, File buildDir, File cacheDir, NpmPathResolver npmPathResolver, PrettierConfig prettierConfig, NpmServerOptions serverOptions) {
 		requireNonNull(devDependencies);
 		requireNonNull(provisioner);
 		requireNonNull(buildDir);
 		return FormatterStep.createLazy(NAME,
-				() -> new State(NAME, devDependencies, projectDir, buildDir, cacheDir, npmPathResolver, prettierConfig),
+				() -> new RoundtripState<>(new State(NAME, devDependencies, projectDir, buildDir, cacheDir, npmPathResolver, prettierConfig, serverOptions)),
+				RoundtripState::equalityState,
 				State::createFormatterFunc);
 	}
 
+	/**
+	 * The config files which prettier may find for the files of the project: those in the project, without the node
+	 * modules and the given build directory, and those in the directories above it, where prettier keeps looking.
+	 */
+	static List<File> perDirectoryConfigFiles(File projectDir, File buildDir) throws IOException {
+		Path project = projectDir.toPath().toAbsolutePath().normalize();
+		Path build = buildDir.toPath().toAbsolutePath().normalize();
+		List<File> configFiles = new ArrayList<>();
+		Files.walkFileTree(project, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				if (dir.equals(project)) {
+					return FileVisitResult.CONTINUE;
+				}
+				String name = dir.getFileName().toString();
+				boolean skipped = dir.equals(build) || SKIPPED_DIRECTORIES.contains(name) || name.contains("-node-modules-");
+				return skipped ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile() && CONFIG_FILE_NAME.matcher(file.getFileName().toString()).matches()) {
+					configFiles.add(file.toFile());
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				// prettier can't read it either
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		for (Path parent = project.getParent(); parent != null; parent = parent.getParent()) {
+			try (Stream<Path> files = Files.list(parent)) {
+				files.filter(file -> Files.isRegularFile(file) && CONFIG_FILE_NAME.matcher(file.getFileName().toString()).matches())
+						.forEach(file -> configFiles.add(file.toFile()));
+			} catch (IOException e) {
+				// prettier can't read it either
+			}
+		}
+		configFiles.sort(null);
+		return configFiles;
+	}
+
 	private static class State extends NpmFormatterStepStateBase implements Serializable {
 
 		private static final long serialVersionUID = -539537027004745812L;
 		private final PrettierConfig prettierConfig;
+		/** The config files which prettier may find per directory, so that changing, adding or moving one formats again. */
+		@Nullable private final ArrayList<String> perDirectoryConfigPaths;
+		@Nullable private final FileSignature perDirectoryConfigSignature;
 
-		State(String stepName, Map<String, String> devDependencies, File projectDir, File buildDir, File cacheDir, NpmPathResolver npmPathResolver, PrettierConfig prettierConfig) throws IOException {
+		State(String stepName, Map<String, String> devDependencies, File projectDir, File buildDir, File cacheDir, NpmPathResolver npmPathResolver, PrettierConfig prettierConfig, NpmServerOptions serverOptions) throws IOException {
 			super(stepName,
 					new NpmConfig(
 							replaceDevDependencies(
 									NpmResourceHelper.readUtf8StringFromClasspath(PrettierFormatterStep.class, "/com/diffplug/spotless/npm/prettier-package.json"),
-									new TreeMap<>(devDependencies)),
-							NpmResourceHelper.readUtf8StringFromClasspath(PrettierFormatterStep.class,
-									"/com/diffplug/spotless/npm/common-serve.js",
-									"/com/diffplug/spotless/npm/prettier-serve.js"),
-							npmPathResolver.resolveNpmrcContent()),
+									new TreeMap<>(devDependencies),
+									serverOptions),
+							serveScript(serverOptions, "/com/diffplug/spotless/npm/prettier-serve.js"),
+							npmPathResolver.resolveNpmrcContent(),
+							npmPathResolver.resolvePackageLockContent()),
 					new NpmFormatterStepLocations(
 							projectDir,
 							buildDir,
 							cacheDir,
-							npmPathResolver));
+							npmPathResolver),
+					serverOptions);
 			this.prettierConfig = requireNonNull(prettierConfig);
+			if (prettierConfig.isPerDirectoryConfig()) {
+				List<File> configFiles = perDirectoryConfigFiles(projectDir, buildDir);
+				this.perDirectoryConfigPaths = new ArrayList<>();
+				for (File configFile : configFiles) {
+					this.perDirectoryConfigPaths.add(FileSignature.pathNativeToUnix(projectDir.toPath().toAbsolutePath().normalize().relativize(configFile.toPath()).toString()));
+				}
+				this.perDirectoryConfigSignature = FileSignature.signAsList(configFiles);
+			} else {
+				this.perDirectoryConfigPaths = null;
+				this.perDirectoryConfigSignature = null;
+			}
 		}
 
 		@Override
 		@Nonnull
 		public FormatterFunc createFormatterFunc() {
+			LOGGER.info("creating formatter function (starting server)");
+			NpmServerPool<PrettierRestService> servers = toRuntime().npmServerPool(PrettierRestService::new);
 			try {
-				LOGGER.info("creating formatter function (starting server)");
-				ServerProcessInfo prettierRestServer = toRuntime().npmRunServer();
-				PrettierRestService restService = new PrettierRestService(prettierRestServer.getBaseUrl());
-				String prettierConfigOptions = restService.resolveConfig(this.prettierConfig.getPrettierConfigPath(), this.prettierConfig.getOptions());
-				return Closeable.ofDangerous(() -> endServer(restService, prettierRestServer), new PrettierFilePathPassingFormatterFunc(prettierConfigOptions, restService));
-			} catch (IOException e) {
+				String prettierConfigOptions = servers.call(restService -> restService.resolveConfig(this.prettierConfig.getPrettierConfigPath(), this.prettierConfig.getOptions()));
+				return Closeable.ofDangerous(() -> endServers(servers), new PrettierFilePathPassingFormatterFunc(prettierConfigOptions, this.prettierConfig.isPerDirectoryConfig(), servers));
+			} catch (Exception e) {
+				ThrowingEx.run(servers::close);
 				throw ThrowingEx.asRuntime(e);
 			}
 		}
 
-		private void endServer(PrettierRestService restService, ServerProcessInfo restServer) throws Exception {
+		private void endServers(NpmServerPool<PrettierRestService> servers) throws Exception {
 			LOGGER.info("Closing formatting function (ending server).");
-			try {
-				restService.shutdown();
-			} catch (Throwable t) {
-				LOGGER.info("Failed to request shutdown of rest service via api. Trying via process.", t);
-			}
-			restServer.close();
+			servers.close();
 		}
 
 	}
 
-	private static class PrettierFilePathPassingFormatterFunc implements FormatterFunc.NeedsFile {
+	private static class PrettierFilePathPassingFormatterFunc implements FormatterFunc.NeedsFile, FormatterFunc.Batch {
 		private final String prettierConfigOptions;
-		private final PrettierRestService restService;
+		private final boolean perDirectoryConfig;
+		private final NpmServerPool<PrettierRestService> servers;
 
-		public PrettierFilePathPassingFormatterFunc(String prettierConfigOptions, PrettierRestService restService) {
+		public PrettierFilePathPassingFormatterFunc(String prettierConfigOptions, boolean perDirectoryConfig, NpmServerPool<PrettierRestService> servers) {
 			this.prettierConfigOptions = requireNonNull(prettierConfigOptions);
-			this.restService = requireNonNull(restService);
+			this.perDirectoryConfig = perDirectoryConfig;
+			this.servers = requireNonNull(servers);
 		}
 
 		@Override
 		public String applyWithFile(String unix, File file) throws Exception {
 			final String prettierConfigOptionsWithFilepath = assertFilepathInConfigOptions(file);
 			try {
-				return restService.format(unix, prettierConfigOptionsWithFilepath);
+				return servers.call(restService -> restService.format(unix, prettierConfigOptionsWithFilepath, perDirectoryConfig ? file : null));
 			} catch (SimpleRestClient.SimpleRestResponseException e) {
-				if (e.getStatusCode() != 200 && e.getResponseMessage().contains("No parser could be inferred")) {
-					throw new PrettierMissingParserException(file, e);
+				throw mapMissingParser(file, e);
+			}
+		}
+
+		@Override
+		public List<FormatterFunc.BatchResult> applyBatch(List<String> unix, List<File> files) throws Exception {
+			List<String> configOptions = new ArrayList<>(files.size());
+			for (File file : files) {
+				configOptions.add(assertFilepathInConfigOptions(file));
+			}
+			List<FormatterFunc.BatchResult> results = servers.callPartitioned(files.size(),
+					(restService, from, to) -> restService.formatBatch(unix.subList(from, to), configOptions.subList(from, to), perDirectoryConfig ? files.subList(from, to) : null));
+			for (int i = 0; i < results.size(); i++) {
+				try {
+					results.get(i).get();
+				} catch (SimpleRestClient.SimpleRestResponseException e) {
+					results.set(i, FormatterFunc.BatchResult.failed(mapMissingParser(files.get(i), e)));
 				}
-				throw e;
 			}
+			return results;
+		}
+
+		private static Exception mapMissingParser(File file, SimpleRestClient.SimpleRestResponseException e) {
+			if (e.getStatusCode() != 200 && e.getResponseMessage().contains("No parser could be inferred")) {
+				return new PrettierMissingParserException(file, e);
+			}
+			return e;
 		}
 
 		private String assertFilepathInConfigOptions(File file) {
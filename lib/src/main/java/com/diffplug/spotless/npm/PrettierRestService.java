@@ -16,15 +16,25 @@
 package com.diffplug.spotless.npm;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
+import com.diffplug.spotless.FormatterFunc;
+
 public class PrettierRestService extends BaseNpmRestService {
 
 	PrettierRestService(String baseUrl) {
 		super(baseUrl);
 	}
 
+	PrettierRestService(NpmServerClient restClient) {
+		super(restClient);
+	}
+
 	public String resolveConfig(File prettierConfigPath, Map<String, Object> prettierConfigOptions) {
 		Map<String, Object> jsonProperties = new LinkedHashMap<>();
 		if (prettierConfigPath != null) {
@@ -37,12 +47,43 @@ public class PrettierRestService extends BaseNpmRestService {
 	}
 
 	public String format(String fileContent, String configOptionsJsonString) {
+		return format(fileContent, configOptionsJsonString, null);
+	}
+
+	/** Like {@link #format(String, String)}, but below the config options, applies the config prettier resolves for the given file. */
+	public String format(String fileContent, String configOptionsJsonString, @Nullable File resolveConfigFor) {
 		Map<String, Object> jsonProperties = new LinkedHashMap<>();
 		jsonProperties.put("file_content", fileContent);
 		if (configOptionsJsonString != null) {
 			jsonProperties.put("config_options", JsonRawValue.wrap(configOptionsJsonString));
 		}
+		if (resolveConfigFor != null) {
+			jsonProperties.put("resolve_config_for", resolveConfigFor.getAbsolutePath());
+		}
 
 		return restClient.postJson("/prettier/format", jsonProperties);
 	}
+
+	public List<FormatterFunc.BatchResult> formatBatch(List<String> fileContents, List<String> configOptionsJsonStrings) {
+		return formatBatch(fileContents, configOptionsJsonStrings, null);
+	}
+
+	/** Like {@link #formatBatch(List, List)}, but for each file applies the config prettier resolves for it, unless null. */
+	public List<FormatterFunc.BatchResult> formatBatch(List<String> fileContents, List<String> configOptionsJsonStrings, @Nullable List<File> resolveConfigFor) {
+		List<JsonRawValue> files = new ArrayList<>(fileContents.size());
+		for (int i = 0; i < fileContents.size(); i++) {
+			Map<String, Object> file = new LinkedHashMap<>();
+			file.put("file_content", fileContents.get(i));
+			if (configOptionsJsonStrings.get(i) != null) {
+				file.put("config_options", JsonRawValue.wrap(configOptionsJsonStrings.get(i)));
+			}
+			if (resolveConfigFor != null) {
+				file.put("resolve_config_for", resolveConfigFor.get(i).getAbsolutePath());
+			}
+			files.add(JsonWriter.of(file).toJsonRawValue());
+		}
+		Map<String, Object> jsonProperties = new LinkedHashMap<>();
+		jsonProperties.put("files", files);
+		return postBatch("/prettier/format-batch", jsonProperties, fileContents.size());
+	}
 }
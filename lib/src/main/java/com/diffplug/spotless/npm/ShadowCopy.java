@@ -23,6 +23,7 @@ import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileSystemException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
@@ -158,8 +159,8 @@ class ShadowCopy {
 					tryHardLink = false; // remember that hard links are not supported
 				}
 			}
-			// copy file to target
-			Files.copy(file, target.resolve(orig.relativize(file)));
+			// copy file to target, keeping symbolic links such as the ones in node_modules/.bin as links
+			Files.copy(file, target.resolve(orig.relativize(file)), LinkOption.NOFOLLOW_LINKS);
 			return super.visitFile(file, attrs);
 		}
 	}
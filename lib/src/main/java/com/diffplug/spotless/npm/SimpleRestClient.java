@@ -17,79 +17,121 @@ package com.diffplug.spotless.npm;
 
 import static java.util.Objects.requireNonNull;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
-final class SimpleRestClient {
+final class SimpleRestClient implements NpmServerClient {
+	/**
+	 * Shared by all clients: it keeps the connections to the node servers alive between requests and
+	 * allows any number of requests in flight at the same time.
+	 */
+	private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofMinutes(1))
+			.build();
+
+	// who knows how large those files can actually get
+	private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2);
+
+	/** The header which carries the secret of a persistent server, see common-serve.js. */
+	static final String SECRET_HEADER = "X-Spotless-Secret";
+
 	private final String baseUrl;
+	@Nullable private final String secret;
 
-	private SimpleRestClient(String baseUrl) {
+	private SimpleRestClient(String baseUrl, @Nullable String secret) {
 		this.baseUrl = requireNonNull(baseUrl);
+		this.secret = secret;
 	}
 
 	static SimpleRestClient forBaseUrl(String baseUrl) {
-		return new SimpleRestClient(baseUrl);
+		return new SimpleRestClient(baseUrl, null);
 	}
 
-	String postJson(String endpoint, Map<String, Object> jsonParams) throws SimpleRestException {
+	/** A client which sends the given secret with each request, which a persistent server requires. */
+	static SimpleRestClient forBaseUrl(String baseUrl, String secret) {
+		return new SimpleRestClient(baseUrl, requireNonNull(secret));
+	}
+
+	@Override
+	public String postJson(String endpoint, Map<String, Object> jsonParams) throws SimpleRestException {
 		final JsonWriter jsonWriter = JsonWriter.of(jsonParams);
 		final String jsonString = jsonWriter.toJsonString();
 
 		return postJson(endpoint, jsonString);
 	}
 
-	String post(String endpoint) throws SimpleRestException {
-		return postJson(endpoint, (String) null);
+	/** Not repeated if the connection fails, since its endpoints are not idempotent, such as {@code /shutdown}. */
+	@Override
+	public String post(String endpoint) throws SimpleRestException {
+		return post(endpoint, null, false);
 	}
 
-	String postJson(String endpoint, @Nullable String rawJson) throws SimpleRestException {
-		try {
-			URL url = new URL(this.baseUrl + endpoint);
-			HttpURLConnection con = (HttpURLConnection) url.openConnection();
-			con.setConnectTimeout(60 * 1000); // one minute
-			con.setReadTimeout(2 * 60 * 1000); // two minutes - who knows how large those files can actually get
-			con.setRequestMethod("POST");
-			con.setRequestProperty("Content-Type", "application/json");
-			con.setDoOutput(true);
-			if (rawJson != null) {
-				try (OutputStream out = con.getOutputStream()) {
-					NpmResourceHelper.writeUtf8StringToOutputStream(rawJson, out);
-					out.flush();
-				}
-			}
+	/** Formats or resolves config, which has no side effects, so it is repeated if the server never received it. */
+	String postJson(String endpoint, String rawJson) throws SimpleRestException {
+		return post(endpoint, rawJson, true);
+	}
 
-			int status = con.getResponseCode();
+	private String post(String endpoint, @Nullable String rawJson, boolean idempotent) throws SimpleRestException {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(this.baseUrl + endpoint))
+				.timeout(REQUEST_TIMEOUT)
+				.header("Content-Type", "application/json")
+				.POST(rawJson != null ? HttpRequest.BodyPublishers.ofString(rawJson, StandardCharsets.UTF_8) : HttpRequest.BodyPublishers.noBody());
+		if (secret != null) {
+			request.header(SECRET_HEADER, secret);
+		}
+		HttpResponse<String> response = send(request.build(), idempotent);
+		if (response.statusCode() != 200) {
+			throw new SimpleRestResponseException(response.statusCode(), response.body(), "Unexpected response status code at " + endpoint);
+		}
+		return response.body();
+	}
 
-			if (status != 200) {
-				throw new SimpleRestResponseException(status, readError(con), "Unexpected response status code at " + endpoint);
+	private static HttpResponse<String> send(HttpRequest request, boolean idempotent) throws SimpleRestIOException {
+		try {
+			try {
+				return HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				if (!idempotent || !isClosedBeforeResponse(e)) {
+					throw e;
+				}
+				// the server closed a kept-alive connection just as we reused it, so it never handled the request
+				return HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
 			}
-
-			return readResponse(con);
 		} catch (IOException e) {
 			throw new SimpleRestIOException(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SimpleRestIOException(e);
 		}
 	}
 
-	private String readError(HttpURLConnection con) throws IOException {
-		return readInputStream(con.getErrorStream());
-	}
-
-	private String readResponse(HttpURLConnection con) throws IOException {
-		return readInputStream(con.getInputStream());
-	}
-
-	private String readInputStream(InputStream inputStream) throws IOException {
-		try (BufferedInputStream input = new BufferedInputStream(inputStream)) {
-			return NpmResourceHelper.readUtf8StringFromInputStream(input);
+	/**
+	 * True if the connection was reset or closed before the server sent any part of a response, which is what
+	 * happens when the server closes an idle kept-alive connection while the request is on its way. Timeouts
+	 * and failures while reading a response are not, because the server may have handled the request.
+	 */
+	static boolean isClosedBeforeResponse(IOException e) {
+		if (e instanceof HttpTimeoutException) {
+			return false;
+		}
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			String message = cause.getMessage();
+			if (message != null && (message.contains("received no bytes") || message.contains("Connection reset") || message.contains("Broken pipe"))) {
+				return true;
+			}
 		}
+		return false;
 	}
 
 	abstract static class SimpleRestException extends RuntimeException {
@@ -17,6 +17,8 @@ package com.diffplug.spotless.npm;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -28,18 +30,52 @@ public final class StandardNpmProcessFactory implements NpmProcessFactory {
 
 	public static final StandardNpmProcessFactory INSTANCE = new StandardNpmProcessFactory();
 
+	private static final String NODE_COMPILE_CACHE = "NODE_COMPILE_CACHE";
+
+	private static final String COMPILE_CACHE_DIR = ".node-compile-cache";
+
 	private StandardNpmProcessFactory() {
 		// only one instance neeeded
 	}
 
 	@Override
 	public NpmProcess createNpmInstallProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, OnlinePreferrence onlinePreferrence) {
-		return new NpmInstall(nodeServerLayout.nodeModulesDir(), formatterStepLocations, onlinePreferrence);
+		return new NpmInstall(nodeServerLayout.nodeModulesDir(), formatterStepLocations, onlinePreferrence, "install");
+	}
+
+	@Override
+	public NpmProcess createNpmCiProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, OnlinePreferrence onlinePreferrence) {
+		return new NpmInstall(nodeServerLayout.nodeModulesDir(), formatterStepLocations, onlinePreferrence, "ci");
+	}
+
+	@Override
+	public NpmLongRunningProcess createNpmServeProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, UUID nodeServerInstanceId, boolean nodeCompileCache) {
+		return new NpmServe(nodeServerLayout.nodeModulesDir(), formatterStepLocations, nodeServerInstanceId, nodeCompileCache);
+	}
+
+	@Override
+	public NpmLongRunningProcess createNodeStdioServeProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, boolean nodeCompileCache) {
+		return new NodeStdioServe(nodeServerLayout.nodeModulesDir(), nodeServerLayout.serveJsFile(), formatterStepLocations, nodeCompileCache);
 	}
 
 	@Override
-	public NpmLongRunningProcess createNpmServeProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, UUID nodeServerInstanceId) {
-		return new NpmServe(nodeServerLayout.nodeModulesDir(), formatterStepLocations, nodeServerInstanceId);
+	public NpmProcess createNodeDaemonStartProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, String nodeServerInstanceId, Duration idleTimeout, boolean nodeCompileCache) {
+		return new NodeDaemonStart(nodeServerLayout.nodeModulesDir(), nodeServerLayout.serveJsFile(), formatterStepLocations, nodeServerInstanceId, idleTimeout, nodeCompileCache);
+	}
+
+	/**
+	 * Lets node (22.1 and newer, older versions ignore it) keep the compiled code of the modules it loads in the
+	 * layout directory, so that later starts skip compiling the formatter. The layout directory is named after an md5
+	 * of the {@code package.json}, the serve script and the {@code package-lock.json}, so the cache goes away together
+	 * with the modules it was built from.
+	 */
+	static Map<String, String> withNodeCompileCache(Map<String, String> environment, File layoutDir, boolean nodeCompileCache) {
+		if (!nodeCompileCache) {
+			return environment;
+		}
+		Map<String, String> withCache = new HashMap<>(environment);
+		withCache.put(NODE_COMPILE_CACHE, new File(layoutDir, COMPILE_CACHE_DIR).getAbsolutePath());
+		return withCache;
 	}
 
 	private abstract static class AbstractStandardNpmProcess {
@@ -64,14 +100,39 @@ public final class StandardNpmProcessFactory implements NpmProcessFactory {
 					"PATH", formatterStepLocations.nodeExecutable().getParentFile().getAbsolutePath() + File.pathSeparator + System.getenv("PATH"));
 		}
 
+		protected Map<String, String> serverEnvironmentVariables(boolean nodeCompileCache) {
+			return withNodeCompileCache(environmentVariables(), workingDir, nodeCompileCache && System.getenv(NODE_COMPILE_CACHE) == null);
+		}
+
 		protected ProcessRunner.LongRunningProcess doStart() {
+			return doStart(environmentVariables());
+		}
+
+		protected ProcessRunner.LongRunningProcess doStart(Map<String, String> environment) {
 			try {
-				return processRunner.start(workingDir, environmentVariables(), null, true, commandLine());
+				return processRunner.start(workingDir, environment, null, true, commandLine());
 			} catch (IOException e) {
 				throw new NpmProcessException("Failed to launch npm command '" + describe() + "'.", e);
 			}
 		}
 
+		protected ProcessRunner.Result doWaitFor() {
+			return doWaitFor(environmentVariables());
+		}
+
+		protected ProcessRunner.Result doWaitFor(Map<String, String> environment) {
+			try (ProcessRunner.LongRunningProcess npmProcess = doStart(environment)) {
+				if (npmProcess.waitFor() != 0) {
+					throw new NpmProcessException("Running npm command '" + describe() + "' failed with exit code: " + npmProcess.exitValue() + "\n\n" + npmProcess.result(), npmProcess.result());
+				}
+				return npmProcess.result();
+			} catch (InterruptedException e) {
+				throw new NpmProcessException("Running npm command '" + describe() + "' was interrupted.", e);
+			} catch (ExecutionException e) {
+				throw new NpmProcessException("Running npm command '" + describe() + "' failed.", e);
+			}
+		}
+
 		protected abstract String describe();
 
 		public String doDescribe() {
@@ -82,17 +143,19 @@ public final class StandardNpmProcessFactory implements NpmProcessFactory {
 	private static class NpmInstall extends AbstractStandardNpmProcess implements NpmProcess {
 
 		private final OnlinePreferrence onlinePreferrence;
+		private final String command;
 
-		public NpmInstall(File workingDir, NpmFormatterStepLocations formatterStepLocations, OnlinePreferrence onlinePreferrence) {
+		public NpmInstall(File workingDir, NpmFormatterStepLocations formatterStepLocations, OnlinePreferrence onlinePreferrence, String command) {
 			super(workingDir, formatterStepLocations);
 			this.onlinePreferrence = onlinePreferrence;
+			this.command = command;
 		}
 
 		@Override
 		protected List<String> commandLine() {
 			return List.of(
 					npmExecutable(),
-					"install",
+					command,
 					"--no-audit",
 					"--no-fund",
 					onlinePreferrence.option());
@@ -105,26 +168,19 @@ public final class StandardNpmProcessFactory implements NpmProcessFactory {
 
 		@Override
 		public ProcessRunner.Result waitFor() {
-			try (ProcessRunner.LongRunningProcess npmProcess = doStart()) {
-				if (npmProcess.waitFor() != 0) {
-					throw new NpmProcessException("Running npm command '" + describe() + "' failed with exit code: " + npmProcess.exitValue() + "\n\n" + npmProcess.result(), npmProcess.result());
-				}
-				return npmProcess.result();
-			} catch (InterruptedException e) {
-				throw new NpmProcessException("Running npm command '" + describe() + "' was interrupted.", e);
-			} catch (ExecutionException e) {
-				throw new NpmProcessException("Running npm command '" + describe() + "' failed.", e);
-			}
+			return doWaitFor();
 		}
 	}
 
 	private static class NpmServe extends AbstractStandardNpmProcess implements NpmLongRunningProcess {
 
 		private final UUID nodeServerInstanceId;
+		private final boolean nodeCompileCache;
 
-		public NpmServe(File workingDir, NpmFormatterStepLocations formatterStepLocations, UUID nodeServerInstanceId) {
+		public NpmServe(File workingDir, NpmFormatterStepLocations formatterStepLocations, UUID nodeServerInstanceId, boolean nodeCompileCache) {
 			super(workingDir, formatterStepLocations);
 			this.nodeServerInstanceId = nodeServerInstanceId;
+			this.nodeCompileCache = nodeCompileCache;
 		}
 
 		@Override
@@ -144,7 +200,77 @@ public final class StandardNpmProcessFactory implements NpmProcessFactory {
 
 		@Override
 		public ProcessRunner.LongRunningProcess start() {
-			return doStart();
+			return doStart(serverEnvironmentVariables(nodeCompileCache));
+		}
+	}
+
+	private static class NodeStdioServe extends AbstractStandardNpmProcess implements NpmLongRunningProcess {
+
+		private final File serveJsFile;
+		private final boolean nodeCompileCache;
+
+		public NodeStdioServe(File workingDir, File serveJsFile, NpmFormatterStepLocations formatterStepLocations, boolean nodeCompileCache) {
+			super(workingDir, formatterStepLocations);
+			this.serveJsFile = serveJsFile;
+			this.nodeCompileCache = nodeCompileCache;
+		}
+
+		@Override
+		protected List<String> commandLine() {
+			return List.of(
+					formatterStepLocations.nodeExecutable().getAbsolutePath(),
+					serveJsFile.getAbsolutePath());
+		}
+
+		@Override
+		public String describe() {
+			return doDescribe();
+		}
+
+		@Override
+		public ProcessRunner.LongRunningProcess start() {
+			try {
+				return processRunner.startInteractive(workingDir, serverEnvironmentVariables(nodeCompileCache), commandLine());
+			} catch (IOException e) {
+				throw new NpmProcessException("Failed to launch node command '" + describe() + "'.", e);
+			}
+		}
+	}
+
+	private static class NodeDaemonStart extends AbstractStandardNpmProcess implements NpmProcess {
+
+		private final File serveJsFile;
+		private final String nodeServerInstanceId;
+		private final Duration idleTimeout;
+		private final boolean nodeCompileCache;
+
+		public NodeDaemonStart(File workingDir, File serveJsFile, NpmFormatterStepLocations formatterStepLocations, String nodeServerInstanceId, Duration idleTimeout, boolean nodeCompileCache) {
+			super(workingDir, formatterStepLocations);
+			this.serveJsFile = serveJsFile;
+			this.nodeServerInstanceId = nodeServerInstanceId;
+			this.idleTimeout = idleTimeout;
+			this.nodeCompileCache = nodeCompileCache;
+		}
+
+		@Override
+		protected List<String> commandLine() {
+			return List.of(
+					formatterStepLocations.nodeExecutable().getAbsolutePath(),
+					serveJsFile.getAbsolutePath(),
+					"--daemonize",
+					"--node-server-instance-id=" + nodeServerInstanceId,
+					"--idle-timeout=" + idleTimeout.toMillis());
+		}
+
+		@Override
+		public String describe() {
+			return doDescribe();
+		}
+
+		/** Returns as soon as the detached server was launched, not when it is ready. */
+		@Override
+		public ProcessRunner.Result waitFor() {
+			return doWaitFor(serverEnvironmentVariables(nodeCompileCache));
 		}
 	}
 }
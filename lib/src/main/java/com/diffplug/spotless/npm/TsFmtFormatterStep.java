@@ -21,6 +21,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -34,7 +35,7 @@ import com.diffplug.spotless.FormatterFunc;
 import com.diffplug.spotless.FormatterFunc.Closeable;
 import com.diffplug.spotless.FormatterStep;
 import com.diffplug.spotless.Provisioner;
-import com.diffplug.spotless.ThrowingEx;
+import com.diffplug.spotless.npm.NpmFormatterStepStateBase.RoundtripState;
 
 public final class TsFmtFormatterStep {
 
@@ -43,10 +44,16 @@ public final class TsFmtFormatterStep {
 	public static final String NAME = "tsfmt-format";
 
 	public static FormatterStep create(Map<String, String> versions, Provisioner provisioner, File projectDir, File buildDir, File cacheDir, NpmPathResolver npmPathResolver, @Nullable TypedTsFmtConfigFile configFile, @Nullable Map<String, Object> inlineTsFmtSettings) {
+		return create(versions, provisioner, projectDir, buildDir, cacheDir, npmPathResolver, configFile, inlineTsFmtSettings, NpmServerOptions.defaults());
+	}
+
+	/** Like {@link #create(Map, Provisioner, File, File, File, NpmPathResolver, TypedTsFmtConfigFile, Map)}, but with the given options for its node servers. */
+	public static FormatterStep create(Map<String, String> versions, Provisioner provisioner, File projectDir, File buildDir, File cacheDir, NpmPathResolver npmPathResolver, @Nullable TypedTsFmtConfigFile configFile, @Nullable Map<String, Object> inlineTsFmtSettings, NpmServerOptions serverOptions) {
 		requireNonNull(provisioner);
 		requireNonNull(buildDir);
 		return FormatterStep.createLazy(NAME,
-				() -> new State(NAME, versions, projectDir, buildDir, cacheDir, npmPathResolver, configFile, inlineTsFmtSettings),
+				() -> new RoundtripState<>(new State(NAME, versions, projectDir, buildDir, cacheDir, npmPathResolver, configFile, inlineTsFmtSettings, serverOptions)),
+				RoundtripState::equalityState,
 				State::createFormatterFunc);
 	}
 
@@ -73,18 +80,25 @@ public final class TsFmtFormatterStep {
 		@Nullable private final TypedTsFmtConfigFile configFile;
 
 		public State(String stepName, Map<String, String> versions, File projectDir, File buildDir, File cacheDir, NpmPathResolver npmPathResolver, @Nullable TypedTsFmtConfigFile configFile, @Nullable Map<String, Object> inlineTsFmtSettings) throws IOException {
+			this(stepName, versions, projectDir, buildDir, cacheDir, npmPathResolver, configFile, inlineTsFmtSettings, NpmServerOptions.defaults());
+		}
+
+		public State(String stepName, Map<String, String> versions, File projectDir, File buildDir, File cacheDir, NpmPathResolver npmPathResolver, @Nullable TypedTsFmtConfigFile configFile, @Nullable Map<String, Object> inlineTsFmtSettings, NpmServerOptions serverOptions) throws IOException {
 			super(stepName,
 					new NpmConfig(
-							replaceDevDependencies(NpmResourceHelper.readUtf8StringFromClasspath(TsFmtFormatterStep.class, "/com/diffplug/spotless/npm/tsfmt-package.json"), new TreeMap<>(versions)),
-							NpmResourceHelper.readUtf8StringFromClasspath(PrettierFormatterStep.class,
-									"/com/diffplug/spotless/npm/common-serve.js",
-									"/com/diffplug/spotless/npm/tsfmt-serve.js"),
-							npmPathResolver.resolveNpmrcContent()),
+							replaceDevDependencies(
+									NpmResourceHelper.readUtf8StringFromClasspath(TsFmtFormatterStep.class, "/com/diffplug/spotless/npm/tsfmt-package.json"),
+									new TreeMap<>(versions),
+									serverOptions),
+							serveScript(serverOptions, "/com/diffplug/spotless/npm/tsfmt-serve.js"),
+							npmPathResolver.resolveNpmrcContent(),
+							npmPathResolver.resolvePackageLockContent()),
 					new NpmFormatterStepLocations(
 							projectDir,
 							buildDir,
 							cacheDir,
-							npmPathResolver));
+							npmPathResolver),
+					serverOptions);
 			this.buildDir = requireNonNull(buildDir);
 			this.configFile = configFile;
 			this.inlineTsFmtSettings = inlineTsFmtSettings == null ? new TreeMap<>() : new TreeMap<>(inlineTsFmtSettings);
@@ -93,14 +107,9 @@ public final class TsFmtFormatterStep {
 		@Override
 		@Nonnull
 		public FormatterFunc createFormatterFunc() {
-			try {
-				Map<String, Object> tsFmtOptions = unifyOptions();
-				ServerProcessInfo tsfmtRestServer = toRuntime().npmRunServer();
-				TsFmtRestService restService = new TsFmtRestService(tsfmtRestServer.getBaseUrl());
-				return Closeable.ofDangerous(() -> endServer(restService, tsfmtRestServer), input -> restService.format(input, tsFmtOptions));
-			} catch (IOException e) {
-				throw ThrowingEx.asRuntime(e);
-			}
+			Map<String, Object> tsFmtOptions = unifyOptions();
+			NpmServerPool<TsFmtRestService> servers = toRuntime().npmServerPool(TsFmtRestService::new);
+			return Closeable.ofDangerous(servers, new TsFmtFormatterFunc(servers, tsFmtOptions));
 		}
 
 		private Map<String, Object> unifyOptions() {
@@ -116,14 +125,25 @@ public final class TsFmtFormatterStep {
 			}
 			return unified;
 		}
+	}
 
-		private void endServer(TsFmtRestService restService, ServerProcessInfo restServer) throws Exception {
-			try {
-				restService.shutdown();
-			} catch (Throwable t) {
-				LOGGER.info("Failed to request shutdown of rest service via api. Trying via process.", t);
-			}
-			restServer.close();
+	private static class TsFmtFormatterFunc implements FormatterFunc.Batch {
+		private final NpmServerPool<TsFmtRestService> servers;
+		private final Map<String, Object> tsFmtOptions;
+
+		TsFmtFormatterFunc(NpmServerPool<TsFmtRestService> servers, Map<String, Object> tsFmtOptions) {
+			this.servers = requireNonNull(servers);
+			this.tsFmtOptions = requireNonNull(tsFmtOptions);
+		}
+
+		@Override
+		public String apply(String input) throws Exception {
+			return servers.call(restService -> restService.format(input, tsFmtOptions));
+		}
+
+		@Override
+		public List<FormatterFunc.BatchResult> applyBatch(List<String> unix, List<File> files) throws Exception {
+			return servers.callPartitioned(files.size(), (restService, from, to) -> restService.formatBatch(unix.subList(from, to), tsFmtOptions));
 		}
 	}
 
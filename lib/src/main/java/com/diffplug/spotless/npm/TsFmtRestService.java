@@ -15,15 +15,23 @@
  */
 package com.diffplug.spotless.npm;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import com.diffplug.spotless.FormatterFunc;
+
 public class TsFmtRestService extends BaseNpmRestService {
 
 	TsFmtRestService(String baseUrl) {
 		super(baseUrl);
 	}
 
+	TsFmtRestService(NpmServerClient restClient) {
+		super(restClient);
+	}
+
 	public String format(String fileContent, Map<String, Object> configOptions) {
 		Map<String, Object> jsonProperties = new LinkedHashMap<>();
 		jsonProperties.put("file_content", fileContent);
@@ -33,4 +41,17 @@ public class TsFmtRestService extends BaseNpmRestService {
 
 		return restClient.postJson("/tsfmt/format", jsonProperties);
 	}
+
+	public List<FormatterFunc.BatchResult> formatBatch(List<String> fileContents, Map<String, Object> configOptions) {
+		List<JsonRawValue> files = new ArrayList<>(fileContents.size());
+		for (String fileContent : fileContents) {
+			files.add(JsonWriter.of(Map.of("file_content", fileContent)).toJsonRawValue());
+		}
+		Map<String, Object> jsonProperties = new LinkedHashMap<>();
+		if (configOptions != null && !configOptions.isEmpty()) {
+			jsonProperties.put("config_options", JsonWriter.of(configOptions).toJsonRawValue());
+		}
+		jsonProperties.put("files", files);
+		return postBatch("/tsfmt/format-batch", jsonProperties, fileContents.size());
+	}
 }
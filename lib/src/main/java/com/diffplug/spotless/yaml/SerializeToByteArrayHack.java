@@ -23,20 +23,15 @@ import javax.annotation.Nullable;
 import com.diffplug.spotless.FormatterStep;
 
 /**
- * This step is a flag which marks that `ConfigurationCacheHackList` should
- * serialize each item individually into `byte[]` array, rather than using normal
- * serialization.
+ * This step used to be a flag which made `ConfigurationCacheHackList` serialize
+ * each item individually into a `byte[]` array, to work around non-deterministic
+ * serialization when using `toggleOffOn` *and* two kinds of google-java-format.
  *
- * The reason to use this is if you are using `toggleOffOn` *and* two kinds of
- * google-java-format (e.g. one for format and the other for imports), then
- * problems with Java's handling of object graphs will cause your up-to-date checks
- * to always fail. `CombinedJavaFormatStepTest` recreates this situation. By adding
- * this step, it will trigger this workaround which fixes the up-to-dateness bug.
- *
- * But, turning it on will break all `custom` steps that use Groovy closures. So
- * by default you get regular serialization. If you're using `toggleOffOn` and having
- * problems with up-to-dateness, then adding this step can be a workaround.
+ * `ConfigurationCacheHackList` now always fingerprints each step on its own when
+ * it is optimized for equality, so this step has no effect anymore. It is kept so
+ * that builds which add it keep working.
  */
+@Deprecated
 public class SerializeToByteArrayHack implements FormatterStep {
 	@Serial
 	private static final long serialVersionUID = 8071047581828362545L;
@@ -0,0 +1,26 @@
+// this file will be glued between common-serve.js (or common-stdio.js) and the specific xy-serve.js file
+
+// formats the files of a batch request one after another, a problem with a single file doesn't fail the batch
+async function formatBatch(files, formatFile) {
+	const results = [];
+	for (const file of files) {
+		try {
+			results.push({formatted: await formatFile(file)});
+		} catch (err) {
+			results.push({error: "" + err});
+		}
+	}
+	return results;
+}
+
+// answers a batch request with one entry per file: "O" for formatted content or "E" for an error message,
+// followed by the length of the text (in UTF-16 code units, like String.length() in Java), a newline, and
+// the text itself, so that the file contents don't have to be escaped
+function sendBatch(res, results) {
+	const body = results.map(result => {
+		const text = result.error === undefined ? result.formatted : result.error;
+		return (result.error === undefined ? "O" : "E") + text.length + "\n" + text;
+	}).join("");
+	res.set("Content-Type", "text/plain; charset=utf-8");
+	res.send(body);
+}
@@ -1,12 +1,52 @@
 // this file will be glued to the top of the specific xy-serve.js file
 const debug_serve = false; // set to true for debug log output in node process
+const fs = require("fs");
+
+if (process.argv.includes("--daemonize")) {
+	// launch a detached copy of this server, which outlives the build that started it, and return right away
+	const log = fs.openSync(`server-${getInstanceId()}.log`, "a");
+	const daemon = require("child_process").spawn(process.execPath, process.argv.slice(1).filter(arg => arg !== "--daemonize"), {
+		detached: true,
+		stdio: ["ignore", log, log],
+		windowsHide: true,
+	});
+	daemon.unref();
+	process.exit(0);
+}
+
 const shutdownServer = require("http-graceful-shutdown");
 const express = require("express");
 const app = express();
 
-app.use(express.json({limit: "50mb"}));
+// a persistent server exits once it didn't get a request for this long, 0 means it runs until it is shut down
+const idleTimeout = Number(getArgument("--idle-timeout") || 0);
+if (idleTimeout > 0) {
+	// a persistent server outlives the build, so each request must carry the secret which the build wrote for it,
+	// and which only the user who started it can read
+	const secret = Buffer.from(fs.readFileSync(`server-${getInstanceId()}.secret`, "utf8").trim());
+	app.use((req, res, next) => {
+		const given = Buffer.from(req.get("X-Spotless-Secret") || "");
+		if (given.length !== secret.length || !require("crypto").timingSafeEqual(given, secret)) {
+			res.status(403).send("Missing or wrong secret");
+			return;
+		}
+		next();
+	});
+}
+let lastRequest = Date.now();
+let activeRequests = 0;
+if (idleTimeout > 0) {
+	app.use((req, res, next) => {
+		activeRequests++;
+		res.on("close", () => {
+			activeRequests--;
+			lastRequest = Date.now();
+		});
+		next();
+	});
+}
 
-const fs = require("fs");
+app.use(express.json({limit: "50mb"}));
 
 function debugLog() {
 	if (debug_serve) {
@@ -14,17 +54,13 @@ function debugLog() {
 	}
 }
 
-function getInstanceId() {
-	const args = process.argv.slice(2);
-
-	// Look for the --node-server-instance-id option
-	let instanceId;
+function getArgument(name) {
+	const arg = process.argv.slice(2).find(arg => arg.startsWith(name + "="));
+	return arg && arg.substring(name.length + 1);
+}
 
-	args.forEach(arg => {
-		if (arg.startsWith('--node-server-instance-id=')) {
-			instanceId = arg.split('=')[1];
-		}
-	});
+function getInstanceId() {
+	const instanceId = getArgument("--node-server-instance-id");
 
 	// throw if instanceId is not set
 	if (!instanceId) {
@@ -36,11 +72,11 @@ function getInstanceId() {
 var listener = app.listen(0, "127.0.0.1", () => {
 	const instanceId = getInstanceId();
 	debugLog("Server running on port " + listener.address().port + " for instance " + instanceId);
-	fs.writeFile("server.port.tmp", "" + listener.address().port, function (err) {
+	fs.writeFile(`server-${instanceId}.port.tmp`, "" + listener.address().port, function (err) {
 		if (err) {
 			return console.log(err);
 		} else {
-			fs.rename("server.port.tmp", `server-${instanceId}.port`, function (err) {
+			fs.rename(`server-${instanceId}.port.tmp`, `server-${instanceId}.port`, function (err) {
 				if (err) {
 					return console.log(err);
 				}
@@ -48,11 +84,38 @@ var listener = app.listen(0, "127.0.0.1", () => {
 		}
 	});
 });
+// the java side keeps its connections alive between requests, so don't close them after the default of 5 seconds
+listener.keepAliveTimeout = 60 * 1000;
+listener.headersTimeout = 65 * 1000;
 const shutdown = shutdownServer(listener, {
 	forceExit: false, // let the event loop clear
 	finally: () => debugLog("graceful shutdown finished."),
 });
 
+if (idleTimeout > 0) {
+	process.on("exit", () => {
+		// only remove the port file if a newer server didn't take it over
+		const portFile = `server-${getInstanceId()}.port`;
+		try {
+			if (fs.readFileSync(portFile, "utf8").trim() === "" + listener.address().port) {
+				fs.rmSync(portFile);
+			}
+		} catch (err) {
+			debugLog("Could not remove port file", err);
+		}
+	});
+	setInterval(() => {
+		if (activeRequests === 0 && Date.now() - lastRequest > idleTimeout) {
+			debugLog("No request for " + idleTimeout + "ms, shutting down.");
+			process.exit(0);
+		}
+	}, Math.min(idleTimeout, 10 * 1000));
+}
+
+app.post("/ping", (req, res) => {
+	res.status(200).send(getInstanceId());
+});
+
 app.post("/shutdown", (req, res) => {
 	res.status(200).send("Shutting down");
 	setTimeout(async () => {
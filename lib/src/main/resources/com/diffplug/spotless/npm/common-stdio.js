@@ -0,0 +1,113 @@
+// this file will be glued to the top of the specific xy-serve.js file instead of common-serve.js, when the server
+// talks over stdin/stdout instead of http. All ints are big-endian, all strings are UTF-8, a length of -1 means absent.
+//   request:  [int length][endpoint] [int length][json options] [int length][file content]
+//   response: [int status][int length][body]
+// The file content is handed to the endpoints as req.body.file_content.
+const debug_serve = false; // set to true for debug log output in node process
+
+// stdout carries the responses, so everything which is logged has to go to stderr
+console.log = console.error;
+console.info = console.error;
+console.warn = console.error;
+console.debug = console.error;
+
+function debugLog() {
+	if (debug_serve) {
+		console.error.apply(this, arguments)
+	}
+}
+
+// the subset of express which the endpoints use
+const routes = new Map();
+const app = {
+	post: (path, handler) => routes.set(path, handler),
+};
+
+function writeResponse(status, body) {
+	const bodyBytes = Buffer.from(body, "utf8");
+	const header = Buffer.alloc(8);
+	header.writeInt32BE(status, 0);
+	header.writeInt32BE(bodyBytes.length, 4);
+	process.stdout.write(Buffer.concat([header, bodyBytes]));
+}
+
+async function handleRequest(endpoint, json, fileContent) {
+	const handler = routes.get(endpoint);
+	if (!handler) {
+		writeResponse(404, "No endpoint " + endpoint);
+		return;
+	}
+	const req = {body: json === null ? {} : JSON.parse(json)};
+	if (fileContent !== null) {
+		req.body.file_content = fileContent;
+	}
+	let responded = false;
+	const res = {
+		statusCode: 200,
+		set: () => res,
+		status: code => {
+			res.statusCode = code;
+			return res;
+		},
+		send: body => {
+			if (!responded) {
+				responded = true;
+				writeResponse(res.statusCode, typeof body === "string" ? body : JSON.stringify(body));
+			}
+			return res;
+		},
+		json: body => res.send(JSON.stringify(body)),
+	};
+	try {
+		await handler(req, res);
+	} catch (err) {
+		console.error("error", err);
+		res.status(500).send("Error while handling " + endpoint + ": " + err);
+	}
+	if (!responded) {
+		res.status(500).send("No response from " + endpoint);
+	}
+}
+
+app.post("/shutdown", (req, res) => {
+	res.status(200).send("Shutting down");
+	process.stdin.destroy();
+});
+
+let pending = Buffer.alloc(0);
+let queue = Promise.resolve();
+
+// returns the string of the frame at the given offset and the offset after it, or undefined if it is incomplete
+function readFrame(buffer, offset) {
+	if (buffer.length < offset + 4) {
+		return undefined;
+	}
+	const length = buffer.readInt32BE(offset);
+	if (length < 0) {
+		return {value: null, end: offset + 4};
+	}
+	if (buffer.length < offset + 4 + length) {
+		return undefined;
+	}
+	return {value: buffer.toString("utf8", offset + 4, offset + 4 + length), end: offset + 4 + length};
+}
+
+process.stdin.on("data", chunk => {
+	pending = pending.length === 0 ? chunk : Buffer.concat([pending, chunk]);
+	while (true) {
+		const endpoint = readFrame(pending, 0);
+		const json = endpoint && readFrame(pending, endpoint.end);
+		const fileContent = json && readFrame(pending, json.end);
+		if (!fileContent) {
+			return;
+		}
+		pending = pending.subarray(fileContent.end);
+		// one request after another, in the order they arrived
+		queue = queue.then(() => handleRequest(endpoint.value, json.value, fileContent.value));
+	}
+});
+
+// the client closes stdin to end the server
+process.stdin.on("end", () => queue.then(() => process.exit(0)));
+process.stdin.on("close", () => queue.then(() => process.exit(0)));
+process.stdout.on("error", () => process.exit(0)); // the client is gone
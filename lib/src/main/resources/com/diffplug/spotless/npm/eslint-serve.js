@@ -1,74 +1,142 @@
 const {ESLint} = require("eslint");
 
-app.post("/eslint/format", async (req, res) => {
-	try {
-		const format_data = req.body;
+// a problem with the request or the result, which is reported with the given http status
+class EslintFormatError extends Error {
+	constructor(status, message) {
+		super(message);
+		this.status = status;
+	}
 
-		const ESLintOverrideConfig = format_data.eslint_override_config;
+	toString() {
+		return this.message;
+	}
+}
 
-		const ESLintOverrideConfigFile = format_data.eslint_override_config_file;
+// creating an ESLint instance resolves the config, loads the plugins and (for type-aware rules) sets up the
+// typescript program, so instances are kept per config, evicting the least recently used one
+const ESLINT_INSTANCE_CACHE_SIZE = 8;
+const eslintInstances = new Map();
 
-		if (!ESLintOverrideConfig && !ESLintOverrideConfigFile) {
-			res.status(400).send("Error while formatting: No config provided");
-			return;
-		}
+// the status telling the client to send the full config again, because there is no instance for its key (anymore)
+const UNKNOWN_CONFIG_KEY_STATUS = 409;
 
-		const filePath = format_data.file_path;
+const eslintInstance = function(format_data) {
+	const ESLintOverrideConfig = format_data.eslint_override_config;
 
-		if (!filePath) {
-			res.status(400).send("Error while formatting: No file path provided");
-			return;
+	const ESLintOverrideConfigFile = format_data.eslint_override_config_file;
+
+	const configKey = format_data.eslint_config_key
+		|| JSON.stringify([ESLintOverrideConfig, ESLintOverrideConfigFile, format_data.ts_config_root_dir]);
+
+	const cached = eslintInstances.get(configKey);
+	if (cached) {
+		// re-insert to mark it as most recently used
+		eslintInstances.delete(configKey);
+		eslintInstances.set(configKey, cached);
+		return cached;
+	}
+
+	if (!ESLintOverrideConfig && !ESLintOverrideConfigFile) {
+		if (format_data.eslint_config_key) {
+			throw new EslintFormatError(UNKNOWN_CONFIG_KEY_STATUS, "Error while formatting: Unknown config key " + format_data.eslint_config_key);
 		}
+		throw new EslintFormatError(400, "Error while formatting: No config provided");
+	}
+
+	const ESLintOptions = {
+		fix: true,
+		useEslintrc: false, // would result in (gradle) cache issues
+	};
 
-		const ESLintOptions = {
-			fix: true,
-			useEslintrc: false, // would result in (gradle) cache issues
+	if (format_data.ts_config_root_dir) {
+		ESLintOptions.baseConfig = {
+			parserOptions: {
+				tsconfigRootDir: format_data.ts_config_root_dir
+			}
 		};
+	}
 
-		if (format_data.ts_config_root_dir) {
-			ESLintOptions.baseConfig = {
-				parserOptions: {
-					tsconfigRootDir: format_data.ts_config_root_dir
-				}
-			};
-		}
 
+	if (ESLintOverrideConfigFile) {
+		ESLintOptions.overrideConfigFile = ESLintOverrideConfigFile;
+	}
+	if (ESLintOverrideConfig) {
+		eval("ESLintOptions.overrideConfig = " + ESLintOverrideConfig);
+	}
+
+	debugLog("using options: " + JSON.stringify(ESLintOptions));
 
-		if (ESLintOverrideConfigFile) {
-			ESLintOptions.overrideConfigFile = ESLintOverrideConfigFile;
-		}
-		if (ESLintOverrideConfig) {
-			eval("ESLintOptions.overrideConfig = " + ESLintOverrideConfig);
-		}
+	const eslint = new ESLint(ESLintOptions);
+	eslintInstances.set(configKey, eslint);
+	if (eslintInstances.size > ESLINT_INSTANCE_CACHE_SIZE) {
+		eslintInstances.delete(eslintInstances.keys().next().value);
+	}
+	return eslint;
+};
 
-		debugLog("using options: " + JSON.stringify(ESLintOptions));
-		debugLog("format input: ", format_data.file_content);
+const eslintFormat = async function(format_data) {
+	const filePath = format_data.file_path;
 
-		const eslint = new ESLint(ESLintOptions);
+	if (!filePath) {
+		throw new EslintFormatError(400, "Error while formatting: No file path provided");
+	}
 
+	const eslint = eslintInstance(format_data);
 
-		const lintTextOptions = {
-			filePath: filePath,
-		}
-		debugLog("lintTextOptions", lintTextOptions);
+	debugLog("format input: ", format_data.file_content);
 
-		// LintResult[] // https://eslint.org/docs/latest/developer-guide/nodejs-api#-lintresult-type
-		const results = await eslint.lintText(format_data.file_content, lintTextOptions);
-		if (results.length !== 1) {
-			res.status(500).send("Error while formatting: Unexpected number of results: " + JSON.stringify(results));
-			return;
-		}
-		const result = results[0];
-		debugLog("result: " + JSON.stringify(result));
-		if (result.fatalErrorCount && result.fatalErrorCount > 0) {
-			res.status(500).send("Fatal error while formatting: " + JSON.stringify(result.messages));
-			return;
-		}
-		const formatted = result.output || result.source || format_data.file_content;
+	const lintTextOptions = {
+		filePath: filePath,
+	}
+	debugLog("lintTextOptions", lintTextOptions);
+
+	// LintResult[] // https://eslint.org/docs/latest/developer-guide/nodejs-api#-lintresult-type
+	const results = await eslint.lintText(format_data.file_content, lintTextOptions);
+	if (results.length !== 1) {
+		throw new EslintFormatError(500, "Error while formatting: Unexpected number of results: " + JSON.stringify(results));
+	}
+	const result = results[0];
+	debugLog("result: " + JSON.stringify(result));
+	if (result.fatalErrorCount && result.fatalErrorCount > 0) {
+		throw new EslintFormatError(500, "Fatal error while formatting: " + JSON.stringify(result.messages));
+	}
+	return result.output || result.source || format_data.file_content;
+};
+
+app.post("/eslint/format", async (req, res) => {
+	try {
+		const formatted = await eslintFormat(req.body);
 		res.set("Content-Type", "text/plain");
 		res.send(formatted);
 	} catch (err) {
+		if (err instanceof EslintFormatError) {
+			res.status(err.status).send(err.message);
+			return;
+		}
 		console.log("error", err);
 		res.status(500).send("Error while formatting: " + err);
 	}
 });
+
+app.post("/eslint/format-batch", async (req, res) => {
+	const {files, ...shared_options} = req.body;
+	try {
+		// a missing config concerns every file, so it is reported for the whole request
+		eslintInstance(shared_options);
+	} catch (err) {
+		res.status(err instanceof EslintFormatError ? err.status : 500).send("" + err);
+		return;
+	}
+	const results = await formatBatch(files, async file => {
+		try {
+			return await eslintFormat({...shared_options, ...file});
+		} catch (err) {
+			if (err instanceof EslintFormatError) {
+				throw err;
+			}
+			console.log("error", err);
+			throw "Error while formatting: " + err;
+		}
+	});
+	sendBatch(res, results);
+});
@@ -1,4 +1,6 @@
 const prettier = require("prettier");
+const path = require("path");
+const watch = require("fs").watch;
 
 app.post("/prettier/config-options", (req, res) => {
 	const config_data = req.body;
@@ -25,7 +27,8 @@ app.post("/prettier/format", async (req, res) => {
 
 	let formatted_file_content = "";
 	try {
-		formatted_file_content = await prettierFormat(format_data.file_content, format_data.config_options);
+		const config_options = await configOptionsFor(format_data.config_options, format_data.resolve_config_for);
+		formatted_file_content = await prettierFormat(format_data.file_content, config_options);
 	} catch(err) {
 		res.status(500).send("Error while formatting: " + err);
 		return;
@@ -34,6 +37,18 @@ app.post("/prettier/format", async (req, res) => {
 	res.send(formatted_file_content);
 });
 
+app.post("/prettier/format-batch", async (req, res) => {
+	const results = await formatBatch(req.body.files, async file => {
+		try {
+			const config_options = await configOptionsFor(file.config_options, file.resolve_config_for);
+			return await prettierFormat(file.file_content, config_options);
+		} catch (err) {
+			throw "Error while formatting: " + err;
+		}
+	});
+	sendBatch(res, results);
+});
+
 const prettierFormat = async function(file_content, config_options) {
 	const result = prettier.format(file_content, config_options);
 
@@ -47,6 +62,60 @@ const prettierFormat = async function(file_content, config_options) {
 }
 
 
+// directory -> promise of the path of the config file which applies to the files in it, or null
+const configFileOfDirectory = new Map();
+const watchedDirectories = new Set();
+const CONFIG_FILE_NAME = /^(\.prettierrc.*|prettier\.config\..*|package\.json|package\.yaml)$/;
+
+/** The config options of the step, on top of the config which prettier resolves for the file, if asked to. */
+const configOptionsFor = async function(config_options, resolve_config_for) {
+	if (!resolve_config_for) {
+		return config_options;
+	}
+	const directory = path.dirname(resolve_config_for);
+	let configFile = configFileOfDirectory.get(directory);
+	if (configFile === undefined) {
+		// searching the config file walks up the directories, which is what would be paid for every file
+		configFile = Promise.resolve(prettier.resolveConfigFile(resolve_config_for));
+		configFileOfDirectory.set(directory, configFile);
+		watchConfigFilesAbove(directory);
+	}
+	const config_path = await configFile;
+	if (!config_path) {
+		return config_options;
+	}
+	// resolving with a known config file only applies its overrides, prettier caches loading it
+	const resolved_config_options = await prettier.resolveConfig(resolve_config_for, { config: config_path });
+	return mergeConfigOptions(resolved_config_options || undefined, config_options);
+};
+
+/** Forgets the resolved config files once a config file in the directory or one of its parents changes. */
+const watchConfigFilesAbove = function(directory) {
+	for (let dir = directory; !watchedDirectories.has(dir); dir = path.dirname(dir)) {
+		watchedDirectories.add(dir);
+		try {
+			watch(dir, { persistent: false }, (event, filename) => {
+				if (!filename || CONFIG_FILE_NAME.test(filename)) {
+					forgetResolvedConfigs();
+				}
+			}).on("error", forgetResolvedConfigs);
+		} catch (err) {
+			debugLog("Unable to watch " + dir + " for config changes", err);
+		}
+		if (path.dirname(dir) === dir) {
+			break;
+		}
+	}
+};
+
+const forgetResolvedConfigs = function() {
+	debugLog("Prettier config changed, resolving config files again");
+	configFileOfDirectory.clear();
+	if (typeof prettier.clearConfigCache === "function") {
+		prettier.clearConfigCache();
+	}
+};
+
 const mergeConfigOptions = function(resolved_config_options, config_options) {
 	if (resolved_config_options !== undefined && config_options !== undefined) {
 		return extend(resolved_config_options, config_options);
@@ -1,5 +1,17 @@
 const tsfmt = require("typescript-formatter");
 
+app.post("/tsfmt/format-batch", async (req, res) => {
+	const config_options = req.body.config_options;
+	const results = await formatBatch(req.body.files, async file => {
+		const resultMap = await tsfmt.processString("spotless-format-string.ts", file.file_content, config_options);
+		if (resultMap.error !== undefined && resultMap.error) {
+			throw resultMap.message;
+		}
+		return resultMap.dest;
+	});
+	sendBatch(res, results);
+});
+
 app.post("/tsfmt/format", (req, res) => {
 	var format_data = req.body;
 	tsfmt.processString("spotless-format-string.ts", format_data.file_content, format_data.config_options).then(resultMap => {
@@ -82,6 +82,12 @@ public abstract class BiomeStepConfig<Self extends BiomeStepConfig<Self>> {
 	 */
 	@Nullable private String version;
 
+	/**
+	 * Whether to format via a long-running Biome daemon instead of spawning a new
+	 * Biome process for every file.
+	 */
+	private boolean daemon;
+
 	protected BiomeStepConfig(Project project, Consumer<FormatterStep> replaceStep, String version) {
 		this.project = requireNonNull(project);
 		this.replaceStep = requireNonNull(replaceStep);
@@ -136,6 +142,30 @@ public abstract class BiomeStepConfig<Self extends BiomeStepConfig<Self>> {
 		return getThis();
 	}
 
+	/**
+	 * Formats via a long-running Biome daemon ({@code biome start}) that keeps its
+	 * configuration and parsers loaded, instead of spawning a new Biome process for
+	 * every file. Falls back to the per-file invocation when the daemon cannot be
+	 * used.
+	 *
+	 * @return This step for further configuration.
+	 */
+	public Self daemon() {
+		return daemon(true);
+	}
+
+	/**
+	 * Sets whether to format via a long-running Biome daemon.
+	 *
+	 * @param daemon Whether to use the Biome daemon.
+	 * @return This step for further configuration.
+	 */
+	public Self daemon(boolean daemon) {
+		this.daemon = daemon;
+		replaceStep();
+		return getThis();
+	}
+
 	/**
 	 * Creates a new formatter step that formats code by calling the Biome
 	 * executable, using the current configuration.
@@ -149,6 +179,7 @@ public abstract class BiomeStepConfig<Self extends BiomeStepConfig<Self>> {
 			builder.withConfigPath(resolvedConfigPath.toString());
 		}
 		builder.withLanguage(getLanguage());
+		builder.withDaemon(daemon);
 		return builder.create();
 	}
 
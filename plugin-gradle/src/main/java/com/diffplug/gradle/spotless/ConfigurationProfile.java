@@ -0,0 +1,78 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.spotless;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time Spotless spent configuring each format of each project, collected by {@link SpotlessTaskService} when the
+ * build runs with {@code -PspotlessConfigurationProfile}, and reported once the build is done.
+ */
+final class ConfigurationProfile {
+	static final String PROPERTY = "spotlessConfigurationProfile";
+
+	/** Only the slowest formats are listed, the total covers all of them. */
+	static final int MAX_LINES = 50;
+
+	private static final class Entry {
+		final String projectPath;
+		final String format;
+		final long nanos;
+
+		Entry(String projectPath, String format, long nanos) {
+			this.projectPath = projectPath;
+			this.format = format;
+			this.nanos = nanos;
+		}
+	}
+
+	private final List<Entry> entries = new ArrayList<>();
+
+	synchronized void record(String projectPath, String format, long nanos) {
+		entries.add(new Entry(projectPath, format, nanos));
+	}
+
+	synchronized boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	synchronized String report() {
+		List<Entry> sorted = new ArrayList<>(entries);
+		sorted.sort(Comparator.comparingLong((Entry entry) -> entry.nanos).reversed());
+		long total = 0;
+		Set<String> projects = new TreeSet<>();
+		for (Entry entry : sorted) {
+			total += entry.nanos;
+			projects.add(entry.projectPath);
+		}
+		StringBuilder report = new StringBuilder();
+		report.append(String.format(Locale.ROOT, "Spotless configuration took %d ms for %d formats in %d projects%n",
+				TimeUnit.NANOSECONDS.toMillis(total), sorted.size(), projects.size()));
+		for (Entry entry : sorted.subList(0, Math.min(MAX_LINES, sorted.size()))) {
+			report.append(String.format(Locale.ROOT, "%8d ms  %s %s%n", TimeUnit.NANOSECONDS.toMillis(entry.nanos), entry.projectPath, entry.format));
+		}
+		if (sorted.size() > MAX_LINES) {
+			report.append("    ... and ").append(sorted.size() - MAX_LINES).append(" faster formats");
+		}
+		return report.toString().trim();
+	}
+}
@@ -27,6 +27,7 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -76,6 +77,7 @@ import com.diffplug.spotless.generic.ReplaceRegexStep;
 import com.diffplug.spotless.generic.ReplaceStep;
 import com.diffplug.spotless.generic.TrimTrailingWhitespaceStep;
 import com.diffplug.spotless.npm.NpmPathResolver;
+import com.diffplug.spotless.npm.NpmServerOptions;
 import com.diffplug.spotless.npm.PrettierFormatterStep;
 
 import groovy.lang.Closure;
@@ -279,6 +281,25 @@ public class FormatExtension {
 		this.targetExcludeContentPattern = regex;
 	}
 
+	@Nullable private Duration stepTimeout;
+	private boolean restartAfterTimeout;
+
+	/**
+	 * Fails a file if a single step takes longer than {@code timeout} on it, and kills the tool behind that step,
+	 * e.g. a hung native process or node server. The tool is started again for the remaining files.
+	 * <p>
+	 * The budget of the first file for each step also includes starting the tool, so leave some headroom.
+	 */
+	public void stepTimeout(Duration timeout) {
+		stepTimeout(timeout, true);
+	}
+
+	/** Same as {@link #stepTimeout(Duration)}, but if {@code restartAfterTimeout} is false, a step which timed out fails all remaining files immediately. */
+	public void stepTimeout(Duration timeout, boolean restartAfterTimeout) {
+		this.stepTimeout = requireNonNull(timeout);
+		this.restartAfterTimeout = restartAfterTimeout;
+	}
+
 	private FileCollection parseTargetsIsExclude(Object[] targets, boolean isExclude) {
 		requireElementsNonNull(targets);
 		if (targets.length == 0) {
@@ -475,7 +496,8 @@ public class FormatExtension {
 					+ " or newer, this is "
 					+ GradleVersion.current().getVersion());
 		}
-		addStep(FormatterStep.createLazy(name, () -> globalState, SerializedFunction.alwaysReturns(formatter)));
+		// the function isn't part of the step's equality, so the step must not be reused for another build
+		addStep(FormatterStep.createLazy(name, () -> globalState, SerializedFunction.alwaysReturns(formatter)).notReusable());
 	}
 
 	/** Highly efficient find-replace char sequence. */
@@ -556,6 +578,24 @@ public class FormatExtension {
 		addStep(NativeCmdStep.create(name, new File(pathToExe), arguments));
 	}
 
+	/**
+	 * Ensures formatting of files via a native binary which stays alive for the whole build and
+	 * speaks the length-prefixed protocol described in {@link NativeCmdStep#createStreaming}.
+	 */
+	public void nativeCmdStreaming(String name, String pathToExe, List<String> arguments) {
+		nativeCmdStreaming(name, pathToExe, arguments, Duration.ofMinutes(1));
+	}
+
+	/** Same as {@link #nativeCmdStreaming(String, String, List)}, but the binary is killed and restarted if it doesn't answer within {@code timeout}. */
+	public void nativeCmdStreaming(String name, String pathToExe, List<String> arguments, Duration timeout) {
+		nativeCmdStreaming(name, pathToExe, arguments, timeout, 1);
+	}
+
+	/** Same as {@link #nativeCmdStreaming(String, String, List, Duration)}, but up to {@code instances} copies of the binary format the files of a batch at once. */
+	public void nativeCmdStreaming(String name, String pathToExe, List<String> arguments, Duration timeout, int instances) {
+		addStep(NativeCmdStep.createStreaming(name, new File(pathToExe), arguments, timeout, instances));
+	}
+
 	/**
 	 * Created by {@link FormatExtension#licenseHeader(String, String)} or
 	 * {@link FormatExtension#licenseHeaderFile(Object, String)}. For most
@@ -680,6 +720,16 @@ public class FormatExtension {
 
 		@Nullable protected Object npmrcFile;
 
+		@Nullable protected Object packageLockFile;
+
+		protected int serverPoolSize = 1;
+
+		protected boolean stdioTransport;
+
+		protected Duration persistentServerIdleTimeout = Duration.ZERO;
+
+		protected boolean nodeCompileCache = true;
+
 		protected Project project;
 
 		private Consumer<FormatterStep> replaceStep;
@@ -709,19 +759,83 @@ public class FormatExtension {
 			return (T) this;
 		}
 
+		/**
+		 * Installs the node modules with {@code npm ci} from the given package-lock.json. If it doesn't exist yet, a
+		 * warning points to the one which {@code npm install} wrote into the build directory, to be copied there.
+		 */
+		@SuppressWarnings("unchecked")
+		public T packageLock(final Object packageLockFile) {
+			this.packageLockFile = packageLockFile;
+			replaceStep();
+			return (T) this;
+		}
+
 		public T npmInstallCache(final Object npmInstallCache) {
 			this.npmInstallCache = npmInstallCache;
 			replaceStep();
 			return (T) this;
 		}
 
+		/** Caches in the build directory of the root project, so that all projects of the build share the installed node modules. */
 		public T npmInstallCache() {
-			this.npmInstallCache = new File(project.getLayout().getBuildDirectory().getAsFile().get(),
+			this.npmInstallCache = new File(project.getRootProject().getLayout().getBuildDirectory().getAsFile().get(),
 					SPOTLESS_NPM_INSTALL_CACHE_DEFAULT_NAME);
 			replaceStep();
 			return (T) this;
 		}
 
+		/** Runs up to the given number of node servers, which format the files of a batch concurrently. Defaults to 1. */
+		@SuppressWarnings("unchecked")
+		public T serverPoolSize(int serverPoolSize) {
+			if (serverPoolSize < 1) {
+				throw new IllegalArgumentException("serverPoolSize must be at least 1, was " + serverPoolSize);
+			}
+			this.serverPoolSize = serverPoolSize;
+			replaceStep();
+			return (T) this;
+		}
+
+		/** Talks to the node servers over their stdin and stdout instead of http. */
+		public T stdioTransport() {
+			return stdioTransport(true);
+		}
+
+		@SuppressWarnings("unchecked")
+		public T stdioTransport(boolean stdioTransport) {
+			this.stdioTransport = stdioTransport;
+			replaceStep();
+			return (T) this;
+		}
+
+		/** Keeps the node servers running after the build, for later builds to reuse, until they idle for 30 minutes. */
+		public T persistentServer() {
+			return persistentServer(NpmServerOptions.DEFAULT_PERSISTENT_SERVER_IDLE_TIMEOUT);
+		}
+
+		/** Keeps the node servers running after the build, for later builds to reuse, until they idle for the given time. */
+		@SuppressWarnings("unchecked")
+		public T persistentServer(Duration idleTimeout) {
+			this.persistentServerIdleTimeout = requireNonNull(idleTimeout);
+			replaceStep();
+			return (T) this;
+		}
+
+		/** Whether node keeps the compiled code of the node servers in their node modules folder. Defaults to true. */
+		@SuppressWarnings("unchecked")
+		public T nodeCompileCache(boolean nodeCompileCache) {
+			this.nodeCompileCache = nodeCompileCache;
+			replaceStep();
+			return (T) this;
+		}
+
+		NpmServerOptions serverOptions() {
+			return NpmServerOptions.defaults()
+					.withServerPoolSize(serverPoolSize)
+					.withStdioTransport(stdioTransport)
+					.withPersistentServerIdleTimeout(persistentServerIdleTimeout)
+					.withNodeCompileCache(nodeCompileCache);
+		}
+
 		File npmFileOrNull() {
 			return fileOrNull(npmFile);
 		}
@@ -734,6 +848,10 @@ public class FormatExtension {
 			return fileOrNull(npmrcFile);
 		}
 
+		File packageLockFileOrNull() {
+			return fileOrNull(packageLockFile);
+		}
+
 		File npmModulesCacheOrNull() {
 			return fileOrNull(npmInstallCache);
 		}
@@ -756,6 +874,8 @@ public class FormatExtension {
 
 		@Nullable Map<String, Object> prettierConfig;
 
+		boolean perDirectoryConfig;
+
 		final Map<String, String> devDependencies;
 
 		PrettierConfig(Map<String, String> devDependencies) {
@@ -775,16 +895,25 @@ public class FormatExtension {
 			return this;
 		}
 
+		/** Applies the config prettier finds for each file, such as the closest {@code .prettierrc}, below {@link #configFile} and {@link #config}. */
+		public PrettierConfig perDirectoryConfig() {
+			this.perDirectoryConfig = true;
+			replaceStep();
+			return this;
+		}
+
 		@Override
 		protected FormatterStep createStep() {
 			final Project project = getProject();
 			return PrettierFormatterStep.create(devDependencies, provisioner(), project.getProjectDir(),
 					project.getLayout().getBuildDirectory().getAsFile().get(), npmModulesCacheOrNull(),
 					new NpmPathResolver(npmFileOrNull(), nodeFileOrNull(), npmrcFileOrNull(),
-							Arrays.asList(project.getProjectDir(), project.getRootDir())),
+							Arrays.asList(project.getProjectDir(), project.getRootDir()), packageLockFileOrNull()),
 					new com.diffplug.spotless.npm.PrettierConfig(
 							this.prettierConfigFile != null ? project.file(this.prettierConfigFile) : null,
-							this.prettierConfig));
+							this.prettierConfig,
+							this.perDirectoryConfig),
+					serverOptions());
 		}
 	}
 
@@ -909,6 +1038,16 @@ public class FormatExtension {
 			return this;
 		}
 
+		/**
+		 * Reads clang-format's {@code --output-replacements-xml} instead of the whole formatted file, which is cheaper for
+		 * clean files, and formats many files per invocation if the {@link #style(String)} is set and is not {@code file}.
+		 */
+		public ClangFormatConfig replacementsXml(boolean replacementsXml) {
+			stepCfg = stepCfg.withReplacementsXml(replacementsXml);
+			replaceStep(createStep());
+			return this;
+		}
+
 		private FormatterStep createStep() {
 			return stepCfg.create();
 		}
@@ -1088,6 +1227,10 @@ public class FormatExtension {
 			steps.replaceAll(
 					formatterStep -> formatterStep.filterByContent(OnMatch.EXCLUDE, targetExcludeContentPattern));
 		}
+		if (stepTimeout != null) {
+			Duration timeout = stepTimeout;
+			steps.replaceAll(formatterStep -> formatterStep.withTimeout(timeout, restartAfterTimeout));
+		}
 		task.setSteps(steps);
 		Directory projectDir = getProject().getLayout().getProjectDirectory();
 		LineEnding lineEndings = getLineEndings();
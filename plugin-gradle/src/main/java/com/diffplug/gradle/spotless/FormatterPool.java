@@ -0,0 +1,171 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.spotless;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.diffplug.spotless.Formatter;
+
+/**
+ * Keeps the formatters of finished tasks warm for the lifetime of the Gradle daemon, so that the next build with an
+ * equal formatter reuses its initialized steps (loaded formatter classes, running node servers, ...) instead of
+ * setting them up again. Formatters aren't thread-safe, so each one is lent to a single task at a time, and a
+ * formatter which wasn't borrowed for {@link #DEFAULT_IDLE_TIMEOUT} is closed.
+ */
+final class FormatterPool {
+	private static final Logger LOGGER = LoggerFactory.getLogger(FormatterPool.class);
+
+	static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+	static final FormatterPool INSTANCE = new FormatterPool(DEFAULT_IDLE_TIMEOUT);
+
+	private static final class Idle {
+		final Formatter formatter;
+		final long since;
+
+		Idle(Formatter formatter, long since) {
+			this.formatter = formatter;
+			this.since = since;
+		}
+	}
+
+	private final long idleTimeoutNanos;
+	private final Map<Formatter, Deque<Idle>> idle = new HashMap<>();
+	private final ScheduledThreadPoolExecutor evictor;
+	private boolean evictionScheduled;
+
+	FormatterPool(Duration idleTimeout) {
+		this.idleTimeoutNanos = idleTimeout.toNanos();
+		this.evictor = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "spotless-formatter-pool");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// the thread ends while nothing is pooled, so it doesn't keep an outdated plugin classloader alive
+		evictor.setKeepAliveTime(1, TimeUnit.SECONDS);
+		evictor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Lends an idle formatter which is equal to the given one, or the given one itself if there is none. The given
+	 * formatter is closed if it isn't needed.
+	 */
+	Lease borrow(Formatter formatter) {
+		Formatter pooled = null;
+		synchronized (this) {
+			Deque<Idle> equal = idle.get(formatter);
+			if (equal != null) {
+				pooled = equal.pop().formatter;
+				if (equal.isEmpty()) {
+					idle.remove(formatter);
+				}
+			}
+		}
+		if (pooled == null) {
+			return new Lease(formatter);
+		}
+		LOGGER.debug("Reusing a warm formatter");
+		formatter.close();
+		return new Lease(pooled);
+	}
+
+	private void giveBack(Formatter formatter) {
+		synchronized (this) {
+			idle.computeIfAbsent(formatter, unused -> new ArrayDeque<>()).push(new Idle(formatter, System.nanoTime()));
+			if (!evictionScheduled) {
+				evictionScheduled = true;
+				evictor.schedule(this::evictIdle, idleTimeoutNanos, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+
+	private void evictIdle() {
+		List<Formatter> evicted = new ArrayList<>();
+		synchronized (this) {
+			long now = System.nanoTime();
+			long nextDeadline = Long.MAX_VALUE;
+			for (Iterator<Deque<Idle>> equal = idle.values().iterator(); equal.hasNext();) {
+				Deque<Idle> formatters = equal.next();
+				// the most recently returned formatters are at the head, the longest idle ones at the tail
+				while (!formatters.isEmpty() && now - formatters.peekLast().since >= idleTimeoutNanos) {
+					evicted.add(formatters.removeLast().formatter);
+				}
+				if (formatters.isEmpty()) {
+					equal.remove();
+				} else {
+					nextDeadline = Math.min(nextDeadline, formatters.peekLast().since + idleTimeoutNanos);
+				}
+			}
+			evictionScheduled = nextDeadline != Long.MAX_VALUE;
+			if (evictionScheduled) {
+				evictor.schedule(this::evictIdle, Math.max(0, nextDeadline - now), TimeUnit.NANOSECONDS);
+			}
+		}
+		for (Formatter formatter : evicted) {
+			try {
+				formatter.close();
+			} catch (RuntimeException e) {
+				LOGGER.warn("Failed to close an idle formatter", e);
+			}
+		}
+		LOGGER.debug("Closed {} idle formatters", evicted.size());
+	}
+
+	/** A formatter borrowed from the pool, which goes back to the pool only if {@link #keep()} was called. */
+	final class Lease implements AutoCloseable {
+		private final Formatter formatter;
+		private boolean keep;
+
+		private Lease(Formatter formatter) {
+			this.formatter = formatter;
+		}
+
+		Formatter formatter() {
+			return formatter;
+		}
+
+		/**
+		 * Marks the formatter as fine to reuse, which it might not be after an unexpected failure. It still isn't pooled
+		 * if it {@link Formatter#isReusable() isn't reusable}, e.g. because a step gave up after a timeout.
+		 */
+		void keep() {
+			keep = true;
+		}
+
+		@Override
+		public void close() {
+			// the prefetched results belong to the files of this borrower, not to the next one
+			formatter.clearPrefetch();
+			if (keep && formatter.isReusable()) {
+				giveBack(formatter);
+			} else {
+				formatter.close();
+			}
+		}
+	}
+}
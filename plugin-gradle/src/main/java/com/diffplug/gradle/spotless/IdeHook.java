@@ -63,10 +63,12 @@ final class IdeHook {
 		}
 		if (spotlessTask.getTarget().contains(file)) {
 			GitRatchetGradle ratchet = spotlessTask.getRatchet();
-			try (Formatter formatter = spotlessTask.buildFormatter()) {
+			try (FormatterPool.Lease lease = FormatterPool.INSTANCE.borrow(spotlessTask.buildFormatter())) {
+				Formatter formatter = lease.formatter();
 				if (ratchet != null) {
 					if (ratchet.isClean(spotlessTask.getProjectDir().get().getAsFile(), spotlessTask.getRootTreeSha(), file)) {
 						dumpIsClean();
+						lease.keep();
 						return;
 					}
 				}
@@ -90,6 +92,7 @@ final class IdeHook {
 						dirty.writeCanonicalTo(file);
 					}
 				}
+				lease.keep();
 			} catch (IOException e) {
 				e.printStackTrace(System.err);
 				throw Errors.asRuntime(e);
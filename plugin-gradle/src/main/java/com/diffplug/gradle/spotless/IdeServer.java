@@ -0,0 +1,241 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.spotless;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import com.diffplug.spotless.DirtyState;
+import com.diffplug.spotless.Formatter;
+
+/**
+ * Formats single files for an IDE over a loopback socket, with formatters which stay configured between requests.
+ * Each connection starts with the {@link #token()} of the server on a line of its own, which other users of the machine
+ * can't read, and then sends any number of requests, with one response per request:
+ * <ul>
+ * <li>request: {@code <absolute path>\n<byte count>\n<bytes>}, where a byte count of {@code -1} reads the file from disk</li>
+ * <li>response: {@code IS CLEAN\n}, {@code DID NOT CONVERGE\n}, {@code OUT OF BOUNDS\n}, {@code ERROR <message>\n}
+ * or {@code IS DIRTY\n<byte count>\n<formatted bytes>}</li>
+ * </ul>
+ * These are the same answers {@link IdeHook} prints, but without a Gradle invocation per file.
+ */
+final class IdeServer implements AutoCloseable {
+	/** A format whose files the server can answer for. */
+	interface Format {
+		boolean contains(File file);
+
+		Formatter formatter();
+
+		/** True if the file is clean because it did not change since the ratchet. */
+		boolean isRatchetClean(File file) throws IOException;
+	}
+
+	private static final Duration ACCEPT_POLL = Duration.ofSeconds(1);
+	/** How long a new connection may take to send the token. */
+	private static final Duration AUTHENTICATION_TIMEOUT = Duration.ofSeconds(10);
+	/** The token is 64 hex characters, and paths and byte counts are short, so a longer line is garbage. */
+	private static final int MAX_LINE_LENGTH = 8192;
+
+	private final List<Format> formats;
+	private final ServerSocket serverSocket;
+	private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "spotless-ide-server");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final AtomicLong lastRequest = new AtomicLong(System.nanoTime());
+	private final String token;
+	private final Duration authenticationTimeout;
+	private volatile Duration idleTimeout = Duration.ZERO;
+
+	IdeServer(List<Format> formats) throws IOException {
+		this(formats, AUTHENTICATION_TIMEOUT);
+	}
+
+	IdeServer(List<Format> formats, Duration authenticationTimeout) throws IOException {
+		this.formats = List.copyOf(formats);
+		this.authenticationTimeout = authenticationTimeout;
+		this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		this.serverSocket.setSoTimeout((int) ACCEPT_POLL.toMillis());
+		byte[] random = new byte[32];
+		new SecureRandom().nextBytes(random);
+		this.token = HexFormat.of().formatHex(random);
+	}
+
+	int port() {
+		return serverSocket.getLocalPort();
+	}
+
+	/** The random token which each connection has to send first, since any local process can connect to the port. */
+	String token() {
+		return token;
+	}
+
+	/** Writes the token into a file which only the current user can read, before the port is published. */
+	void writeToken(File tokenFile) throws IOException {
+		Path path = tokenFile.toPath();
+		Files.createDirectories(path.getParent());
+		Files.deleteIfExists(path);
+		if (path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+			Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		} else {
+			Files.createFile(path);
+			if (!(tokenFile.setReadable(false, false) && tokenFile.setReadable(true, true) && tokenFile.setWritable(false, false) && tokenFile.setWritable(true, true))) {
+				throw new IOException("Failed to restrict access to " + tokenFile);
+			}
+		}
+		Files.write(path, token.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/** Serves connections until no request came in for the idle timeout, or the calling thread is interrupted. */
+	void serve(Duration idleTimeout) throws IOException {
+		this.idleTimeout = idleTimeout;
+		while (!Thread.currentThread().isInterrupted()
+				&& System.nanoTime() - lastRequest.get() < idleTimeout.toNanos()) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (SocketTimeoutException e) {
+				continue;
+			}
+			connections.execute(() -> handle(socket));
+		}
+	}
+
+	private void handle(Socket socket) {
+		try (socket;
+				InputStream in = new BufferedInputStream(socket.getInputStream());
+				OutputStream out = new BufferedOutputStream(socket.getOutputStream())) {
+			// an unauthenticated connection must neither pin a thread nor fill the memory
+			socket.setSoTimeout(timeoutMillis(authenticationTimeout));
+			String sentToken = readLine(in, token.length());
+			if (sentToken == null || !MessageDigest.isEqual(sentToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+				writeLine(out, "ERROR unauthorized");
+				return;
+			}
+			socket.setSoTimeout(timeoutMillis(idleTimeout));
+			String path;
+			while ((path = readLine(in, MAX_LINE_LENGTH)) != null) {
+				lastRequest.set(System.nanoTime());
+				int length = Integer.parseInt(readLine(in, MAX_LINE_LENGTH));
+				byte[] content = length < 0 ? null : in.readNBytes(length);
+				if (content != null && content.length < length) {
+					throw new EOFException("Expected " + length + " bytes for " + path);
+				}
+				respond(new File(path), content, out);
+				out.flush();
+				lastRequest.set(System.nanoTime());
+			}
+		} catch (IOException | RuntimeException e) {
+			// the IDE went away or sent garbage, which only ends its own connection
+		}
+	}
+
+	private void respond(File file, @Nullable byte[] content, OutputStream out) throws IOException {
+		if (!file.isAbsolute()) {
+			writeLine(out, "ERROR path must be absolute");
+			return;
+		}
+		Format format = formats.stream().filter(f -> f.contains(file)).findFirst().orElse(null);
+		if (format == null) {
+			writeLine(out, "OUT OF BOUNDS");
+			return;
+		}
+		DirtyState dirty;
+		try {
+			// formatters are not guaranteed to be thread-safe, so requests for the same format take turns
+			synchronized (format) {
+				if (format.isRatchetClean(file)) {
+					dirty = DirtyState.clean();
+				} else {
+					byte[] bytes = content != null ? content : Files.readAllBytes(file.toPath());
+					dirty = DirtyState.of(format.formatter(), file, bytes);
+				}
+			}
+		} catch (Exception e) {
+			writeLine(out, "ERROR " + String.valueOf(e.getMessage()).replace('\n', ' '));
+			return;
+		}
+		if (dirty.isClean()) {
+			writeLine(out, "IS CLEAN");
+		} else if (dirty.didNotConverge()) {
+			writeLine(out, "DID NOT CONVERGE");
+		} else {
+			ByteArrayOutputStream formatted = new ByteArrayOutputStream();
+			dirty.writeCanonicalTo(formatted);
+			writeLine(out, "IS DIRTY");
+			writeLine(out, Integer.toString(formatted.size()));
+			formatted.writeTo(out);
+		}
+	}
+
+	/** Reads a line of at most the given length, not counting a trailing {@code \r}. */
+	private static @Nullable String readLine(InputStream in, int maxLength) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != '\n') {
+			if (b == -1) {
+				if (line.size() == 0) {
+					return null;
+				}
+				throw new EOFException("Unterminated line");
+			}
+			if (line.size() > maxLength) {
+				throw new IOException("Line longer than " + maxLength + " bytes");
+			}
+			line.write(b);
+		}
+		return line.toString(StandardCharsets.UTF_8).trim();
+	}
+
+	private static int timeoutMillis(Duration timeout) {
+		return (int) Math.min(Integer.MAX_VALUE, timeout.toMillis());
+	}
+
+	private static void writeLine(OutputStream out, String line) throws IOException {
+		out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void close() throws IOException {
+		connections.shutdownNow();
+		serverSocket.close();
+	}
+}
@@ -106,8 +106,9 @@ public class JavascriptExtension extends FormatExtension {
 			return EslintFormatterStep.create(devDependencies, provisioner(), project.getProjectDir(),
 					project.getLayout().getBuildDirectory().getAsFile().get(), npmModulesCacheOrNull(),
 					new NpmPathResolver(npmFileOrNull(), nodeFileOrNull(), npmrcFileOrNull(),
-							Arrays.asList(project.getProjectDir(), project.getRootDir())),
-					eslintConfig());
+							Arrays.asList(project.getProjectDir(), project.getRootDir()), packageLockFileOrNull()),
+					eslintConfig(),
+					serverOptions());
 		}
 
 		protected EslintConfig eslintConfig() {
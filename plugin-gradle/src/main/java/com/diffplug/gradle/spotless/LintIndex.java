@@ -0,0 +1,175 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.spotless;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+
+import com.diffplug.spotless.Lint;
+
+/**
+ * The lints of all files of a task, in a single file instead of one serialized map per file. The format is versioned
+ * and sorted by path, so that it can be read as a stream:
+ * <ul>
+ * <li>{@code [magic][int version][int file count][int lint count]}</li>
+ * <li>per file: {@code [path][int step count]}, per step: {@code [step name][int lint count]}</li>
+ * <li>per lint: {@code [int line start][int line end][short code][detail]}</li>
+ * </ul>
+ * All strings are {@code [int length][UTF-8 bytes]}.
+ */
+final class LintIndex {
+	static final String FILE_NAME = "lints.bin";
+
+	private static final int MAGIC = 0x53504C4E; // SPLN
+	private static final int VERSION = 1;
+
+	/** Receives the lints of one file after the other, in the order of their paths. */
+	@FunctionalInterface
+	interface Visitor {
+		void visit(String path, LinkedHashMap<String, List<Lint>> lintsByStep);
+	}
+
+	private final TreeMap<String, LinkedHashMap<String, List<Lint>>> lintsByPath = new TreeMap<>();
+
+	/** The index in the given lints directory, or an empty one if there is none. */
+	static LintIndex readOrEmpty(File lintsDirectory) throws IOException {
+		LintIndex index = new LintIndex();
+		read(lintsDirectory, (path, lintsByStep) -> index.lintsByPath.put(path, lintsByStep));
+		return index;
+	}
+
+	/** Returns the total number of lints in the given lints directory, after passing them to the visitor. */
+	static int read(File lintsDirectory, Visitor visitor) throws IOException {
+		File file = new File(lintsDirectory, FILE_NAME);
+		if (!file.isFile()) {
+			return 0;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a lint index: " + file);
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported lint index version " + version + ", run a clean build: " + file);
+			}
+			int files = in.readInt();
+			int total = in.readInt();
+			for (int i = 0; i < files; i++) {
+				String path = readString(in);
+				int steps = in.readInt();
+				LinkedHashMap<String, List<Lint>> lintsByStep = new LinkedHashMap<>();
+				for (int j = 0; j < steps; j++) {
+					String stepName = readString(in);
+					int count = in.readInt();
+					List<Lint> lints = new ArrayList<>(count);
+					for (int k = 0; k < count; k++) {
+						int lineStart = in.readInt();
+						int lineEnd = in.readInt();
+						String shortCode = readString(in);
+						String detail = readString(in);
+						lints.add(lineStart == Lint.LINE_UNDEFINED ? Lint.atUndefinedLine(shortCode, detail) : Lint.atLineRange(lineStart, lineEnd, shortCode, detail));
+					}
+					lintsByStep.put(stepName, lints);
+				}
+				visitor.visit(path, lintsByStep);
+			}
+			return total;
+		}
+	}
+
+	/** Sets the lints of the given file, or removes them if there are none. */
+	synchronized void put(String path, @Nullable LinkedHashMap<String, List<Lint>> lintsByStep) {
+		if (lintsByStep == null || lintsByStep.isEmpty()) {
+			lintsByPath.remove(path);
+		} else {
+			lintsByPath.put(path, lintsByStep);
+		}
+	}
+
+	synchronized void remove(String path) {
+		lintsByPath.remove(path);
+	}
+
+	/** Replaces the lints of the given paths with those of the given index, which was built for exactly these paths. */
+	synchronized void replace(Collection<String> paths, LintIndex partition) {
+		for (String path : paths) {
+			lintsByPath.remove(path);
+		}
+		lintsByPath.putAll(partition.lintsByPath);
+	}
+
+	/** Writes the index into the given lints directory, or deletes it there if there are no lints. */
+	synchronized void writeTo(File lintsDirectory) throws IOException {
+		File file = new File(lintsDirectory, FILE_NAME);
+		if (lintsByPath.isEmpty()) {
+			Files.deleteIfExists(file.toPath());
+			return;
+		}
+		Files.createDirectories(lintsDirectory.toPath());
+		int total = 0;
+		for (Map<String, List<Lint>> lintsByStep : lintsByPath.values()) {
+			for (List<Lint> lints : lintsByStep.values()) {
+				total += lints.size();
+			}
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(lintsByPath.size());
+			out.writeInt(total);
+			for (Map.Entry<String, LinkedHashMap<String, List<Lint>>> lintsOfFile : lintsByPath.entrySet()) {
+				writeString(out, lintsOfFile.getKey());
+				out.writeInt(lintsOfFile.getValue().size());
+				for (Map.Entry<String, List<Lint>> step : lintsOfFile.getValue().entrySet()) {
+					writeString(out, step.getKey());
+					out.writeInt(step.getValue().size());
+					for (Lint lint : step.getValue()) {
+						out.writeInt(lint.getLineStart());
+						out.writeInt(lint.getLineEnd());
+						writeString(out, lint.getShortCode());
+						writeString(out, lint.getDetail());
+					}
+				}
+			}
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
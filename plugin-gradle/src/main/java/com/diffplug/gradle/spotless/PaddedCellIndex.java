@@ -0,0 +1,129 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.spotless;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Which sources went through padded cell when {@link SpotlessTaskImpl} last formatted them, since those which did not
+ * converge or already are the canonical form of a cycle have no clean file either, so that {@link SpotlessDiagnoseTask}
+ * can skip every source which is known to be well-behaved. Uses the same kind of versioned format as {@link LintIndex}:
+ * <ul>
+ * <li>{@code [magic][int version][generation][int path count]}</li>
+ * <li>per path, sorted: {@code [path]}</li>
+ * </ul>
+ * All strings are {@code [int length][UTF-8 bytes]}.
+ */
+final class PaddedCellIndex {
+	private static final int MAGIC = 0x53505043; // SPPC
+	private static final int VERSION = 1;
+
+	/** A new index starts a new generation, e.g. when the formatter changed and the task ran from scratch. */
+	private final String generation;
+	private final TreeSet<String> paddedCell = new TreeSet<>();
+
+	PaddedCellIndex() {
+		this(UUID.randomUUID().toString());
+	}
+
+	private PaddedCellIndex(String generation) {
+		this.generation = generation;
+	}
+
+	/** The index in the given file, or an empty one if it is missing or unreadable. */
+	static PaddedCellIndex readOrEmpty(File file) {
+		if (file.isFile()) {
+			try {
+				return read(file);
+			} catch (IOException | RuntimeException e) {
+				// written by another plugin version, a new generation starts
+			}
+		}
+		return new PaddedCellIndex();
+	}
+
+	private static PaddedCellIndex read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a padded cell index: " + file);
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported padded cell index version " + version + ": " + file);
+			}
+			PaddedCellIndex index = new PaddedCellIndex(readString(in));
+			int paths = in.readInt();
+			for (int i = 0; i < paths; i++) {
+				index.paddedCell.add(readString(in));
+			}
+			return index;
+		}
+	}
+
+	void writeTo(File file) throws IOException {
+		Files.createDirectories(file.toPath().getParent());
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, generation);
+			out.writeInt(paddedCell.size());
+			for (String path : paddedCell) {
+				writeString(out, path);
+			}
+		}
+	}
+
+	void remove(String relativePath) {
+		paddedCell.remove(relativePath);
+	}
+
+	void setPaddedCell(String relativePath, boolean value) {
+		if (value) {
+			paddedCell.add(relativePath);
+		} else {
+			paddedCell.remove(relativePath);
+		}
+	}
+
+	boolean wentThroughPaddedCell(String relativePath) {
+		return paddedCell.contains(relativePath);
+	}
+
+	String generation() {
+		return generation;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
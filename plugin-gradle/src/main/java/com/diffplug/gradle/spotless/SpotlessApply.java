@@ -17,7 +17,10 @@ package com.diffplug.gradle.spotless;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 
 import org.gradle.api.GradleException;
@@ -27,6 +30,8 @@ import org.gradle.api.file.FileVisitor;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.work.DisableCachingByDefault;
 
+import com.diffplug.common.annotations.VisibleForTesting;
+
 @DisableCachingByDefault(because = "not worth caching")
 public abstract class SpotlessApply extends SpotlessTaskService.ClientTask {
 	@TaskAction
@@ -48,8 +53,8 @@ public abstract class SpotlessApply extends SpotlessTaskService.ClientTask {
 					String path = fileVisitDetails.getPath();
 					File originalSource = new File(getProjectDir().get().getAsFile(), path);
 					try {
-						getLogger().debug("Copying " + fileVisitDetails.getFile() + " to " + originalSource);
-						Files.copy(fileVisitDetails.getFile().toPath(), originalSource.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+						getLogger().debug("Replacing " + originalSource + " with " + fileVisitDetails.getFile());
+						replaceAtomically(fileVisitDetails.getFile().toPath(), originalSource.toPath());
 					} catch (IOException e) {
 						throw new RuntimeException(e);
 					}
@@ -57,8 +62,39 @@ public abstract class SpotlessApply extends SpotlessTaskService.ClientTask {
 			});
 			if (!lintsFiles.isEmpty()) {
 				boolean detailed = false;
-				throw new GradleException(super.allLintsErrorMsgDetailed(lintsFiles, detailed));
+				throw new GradleException(super.allLintsErrorMsgDetailed(getSpotlessLintsDirectory().get(), detailed));
+			}
+		}
+	}
+
+	/**
+	 * Replaces the source with the clean file, so that a reader of the source sees either the old or the new content.
+	 * The content is copied into a temporary sibling of the source, which is then moved over it. A symbolic link keeps
+	 * pointing to its target, which is replaced instead. Where no sibling can be created, e.g. because the directory
+	 * is read-only, the content is written straight into the source.
+	 */
+	@VisibleForTesting
+	static void replaceAtomically(Path cleanFile, Path source) throws IOException {
+		Path target = Files.isSymbolicLink(source) ? source.toRealPath() : source;
+		Path temp;
+		try {
+			temp = Files.createTempFile(target.toAbsolutePath().getParent(), "." + target.getFileName(), ".spotless-apply");
+		} catch (IOException e) {
+			// replacing the source would need a writable directory as well, so its content is overwritten in place
+			try (OutputStream out = Files.newOutputStream(target)) {
+				Files.copy(cleanFile, out);
+			}
+			return;
+		}
+		try {
+			Files.copy(cleanFile, temp, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+			try {
+				Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
 			}
+		} finally {
+			Files.deleteIfExists(temp);
 		}
 	}
 }
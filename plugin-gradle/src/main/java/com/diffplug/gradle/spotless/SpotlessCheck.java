@@ -15,12 +15,10 @@
  */
 package com.diffplug.gradle.spotless;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -82,7 +80,7 @@ public abstract class SpotlessCheck extends SpotlessTaskService.ClientTask {
 				// This is because lint line numbers are relative to the
 				// formatted content, and formatting often fixes lints.
 				boolean detailed = false;
-				throw new GradleException(super.allLintsErrorMsgDetailed(lintsFiles, detailed));
+				throw new GradleException(super.allLintsErrorMsgDetailed(getSpotlessLintsDirectory().get(), detailed));
 			}
 		}
 	}
@@ -100,23 +98,20 @@ public abstract class SpotlessCheck extends SpotlessTaskService.ClientTask {
 				String path = fileVisitDetails.getPath();
 				File originalSource = new File(getProjectDir().get().getAsFile(), path);
 				try {
-					// read the file on disk
-					byte[] userFile = Files.readAllBytes(originalSource.toPath());
-					// and the formatted version from spotlessOutDirectory
-					byte[] formatted;
-					{
-						ByteArrayOutputStream clean = new ByteArrayOutputStream();
-						fileVisitDetails.copyTo(clean);
-						formatted = clean.toByteArray();
+					// a source which differs from its clean file in size is unclean without reading either of them
+					if (originalSource.length() != fileVisitDetails.getFile().length()) {
+						uncleanFiles.add(originalSource);
+						return;
 					}
-					// If these two are equal, it means that SpotlessTask left a file
+					// If the file on disk and the formatted version from spotlessOutDirectory
+					// are equal, it means that SpotlessTask left a file
 					// in its output directory which ought to have been removed. As
 					// best I can tell, this is a filesytem race which is very hard
 					// to trigger.  GitRatchetGradleTest can *sometimes* reproduce it
 					// but it's very erratic, and that test writes both to Gradle cache
 					// and git cache very quickly.  Either of Gradle or jgit might be
 					// caching something wrong because of the fast repeated writes.
-					if (!Arrays.equals(userFile, formatted)) {
+					if (Files.mismatch(originalSource.toPath(), fileVisitDetails.getFile().toPath()) != -1) {
 						// If the on-disk content is equal to the formatted content,
 						// just don't add it as a problem file. Easy!
 						uncleanFiles.add(originalSource);
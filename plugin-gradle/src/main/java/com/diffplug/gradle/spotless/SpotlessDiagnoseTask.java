@@ -17,23 +17,57 @@ package com.diffplug.gradle.spotless;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
 
 import org.gradle.api.DefaultTask;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.TaskProvider;
 import org.gradle.api.tasks.UntrackedTask;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
 
 import com.diffplug.spotless.Formatter;
+import com.diffplug.spotless.LintSuppression;
 import com.diffplug.spotless.PaddedCell;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
+/**
+ * Runs the padded cell check on the files which the spotless task found dirty or which went through padded cell, since
+ * any other clean file is well-behaved by definition. Files which were well-behaved are remembered by a hash of their
+ * content, since size and modification time can match after an edit, and skipped until either their content changes or
+ * the spotless task starts over, e.g. because the formatter changed.
+ */
 @UntrackedTask(because = "undeclared inputs/outputs")
-public class SpotlessDiagnoseTask extends DefaultTask {
+public abstract class SpotlessDiagnoseTask extends DefaultTask {
+	/** Fewer files than this per worker aren't worth a copy of the formatter. */
+	private static final int MIN_FILES_PER_WORKER = 64;
+
 	TaskProvider<? extends SpotlessTask> source;
 
 	@Internal
@@ -41,38 +75,224 @@ public class SpotlessDiagnoseTask extends DefaultTask {
 		return source;
 	}
 
+	@Internal
+	abstract Property<Integer> getMaxWorkers();
+
+	@Inject
+	protected abstract WorkerExecutor getWorkerExecutor();
+
+	void init(TaskProvider<? extends SpotlessTask> source) {
+		this.source = source;
+		getMaxWorkers().set(getProject().getGradle().getStartParameter().getMaxWorkerCount());
+	}
+
 	@TaskAction
 	@SuppressFBWarnings("NP_NULL_ON_SOME_PATH_FROM_RETURN_VALUE")
 	public void performAction() throws IOException {
-		Path srcRoot = getProject().getProjectDir().toPath();
-		Path diagnoseRoot = getProject().getLayout().getBuildDirectory().getAsFile().get()
-				.toPath().resolve("spotless-diagnose-" + source.get().formatName());
+		SpotlessTask task = source.get();
+		File projectDir = getProject().getProjectDir();
+		File buildDir = getProject().getLayout().getBuildDirectory().getAsFile().get();
+		Path diagnoseRoot = buildDir.toPath().resolve("spotless-diagnose-" + task.formatName());
+		File cacheFile = new File(buildDir, "spotless-diagnose-cache/" + task.formatName());
 		getProject().delete(diagnoseRoot.toFile());
-		try (Formatter formatter = source.get().buildFormatter()) {
-			for (File file : source.get().target) {
-				getLogger().debug("Running padded cell check on " + file);
-				PaddedCell padded = PaddedCell.check(formatter, file);
-				if (!padded.misbehaved()) {
-					getLogger().debug("    well-behaved.");
-				} else {
-					// the file is misbehaved, so we'll write all its steps to DIAGNOSE_DIR
-					Path relative = srcRoot.relativize(file.toPath());
-					Path diagnoseFile = diagnoseRoot.resolve(relative);
-					for (int i = 0; i < padded.steps().size(); i++) {
-						Path path = Path.of(diagnoseFile + "." + padded.type().name().toLowerCase(Locale.ROOT) + i);
-						Files.createDirectories(path.getParent());
-						String version = padded.steps().get(i);
-						Files.write(path, version.getBytes(formatter.getEncoding()));
-					}
-					// dump the type of the misbehavior to console
-					getLogger().lifecycle("    " + relative + " " + padded.userMessage());
+
+		// without a padded cell index the spotless task did not run yet, and every file has to be checked
+		PaddedCellIndex paddedCellIndex = task.getPaddedCellIndexFile().isFile() ? PaddedCellIndex.readOrEmpty(task.getPaddedCellIndexFile()) : null;
+		WellBehaved wellBehaved = WellBehaved.readOrEmpty(cacheFile, paddedCellIndex);
+		List<String> toDiagnose = new ArrayList<>();
+		int targetCount = 0;
+		for (File file : task.target) {
+			targetCount++;
+			String relativePath = LintSuppression.relativizeAsUnix(projectDir, file);
+			if (relativePath == null) {
+				continue;
+			}
+			boolean maybeMisbehaving = paddedCellIndex == null
+					|| new File(task.getCleanDirectory(), relativePath).isFile()
+					|| paddedCellIndex.wentThroughPaddedCell(relativePath);
+			if (maybeMisbehaving && !wellBehaved.isUnchanged(relativePath, file)) {
+				toDiagnose.add(relativePath);
+			}
+		}
+		getLogger().info("Running padded cell check on {} of {} files", toDiagnose.size(), targetCount);
+
+		Map<String, String> misbehavior = new LinkedHashMap<>();
+		try (Formatter formatter = task.buildFormatter()) {
+			int workers = workerCount(formatter, toDiagnose.size());
+			if (workers <= 1) {
+				misbehavior.putAll(diagnoseFiles(getLogger(), formatter, projectDir, toDiagnose, diagnoseRoot.toFile()));
+			} else {
+				WorkQueue queue = getWorkerExecutor().noIsolation();
+				List<File> results = new ArrayList<>(workers);
+				for (int i = 0; i < workers; i++) {
+					List<String> partition = new ArrayList<>(toDiagnose.subList(toDiagnose.size() * i / workers, toDiagnose.size() * (i + 1) / workers));
+					File result = new File(getTemporaryDir(), "misbehavior-" + i);
+					results.add(result);
+					queue.submit(DiagnoseFilesAction.class, parameters -> {
+						parameters.getFormatter().set(formatter);
+						parameters.getProjectDir().set(projectDir);
+						parameters.getRelativePaths().set(partition);
+						parameters.getDiagnoseRoot().set(diagnoseRoot.toFile());
+						parameters.getResultFile().set(result);
+					});
+				}
+				queue.await();
+				for (File result : results) {
+					@SuppressWarnings("unchecked")
+					Map<String, String> partitionMisbehavior = SerializableMisc.fromFile(LinkedHashMap.class, result);
+					misbehavior.putAll(partitionMisbehavior);
 				}
 			}
 		}
+
+		for (String relativePath : toDiagnose) {
+			String userMessage = misbehavior.get(relativePath);
+			if (userMessage == null) {
+				wellBehaved.update(relativePath, new File(projectDir, relativePath));
+			} else {
+				wellBehaved.remove(relativePath);
+				// dump the type of the misbehavior to console
+				getLogger().lifecycle("    " + relativePath + " " + userMessage);
+			}
+		}
+		wellBehaved.writeTo(cacheFile);
 		if (Files.exists(diagnoseRoot)) {
 			getLogger().lifecycle("Some formatters are misbehaving, you can see details at " + diagnoseRoot);
 		} else {
 			getLogger().lifecycle("All formatters are well behaved for all files.");
 		}
 	}
+
+	private int workerCount(Formatter formatter, int files) {
+		if (formatter.supportsBatch()) {
+			return 1;
+		}
+		int maxWorkers = getMaxWorkers().getOrElse(1);
+		return Math.max(1, Math.min(maxWorkers, (files + MIN_FILES_PER_WORKER - 1) / MIN_FILES_PER_WORKER));
+	}
+
+	/** Returns the message of each misbehaving file, after writing all its steps below the diagnose root. */
+	static LinkedHashMap<String, String> diagnoseFiles(Logger logger, Formatter formatter, File projectDir, List<String> relativePaths, File diagnoseRoot) throws IOException {
+		LinkedHashMap<String, String> misbehavior = new LinkedHashMap<>();
+		for (String relativePath : relativePaths) {
+			File file = new File(projectDir, relativePath);
+			logger.debug("Running padded cell check on " + file);
+			PaddedCell padded = PaddedCell.check(formatter, file);
+			if (!padded.misbehaved()) {
+				logger.debug("    well-behaved.");
+			} else {
+				// the file is misbehaved, so we'll write all its steps to DIAGNOSE_DIR
+				Path diagnoseFile = diagnoseRoot.toPath().resolve(relativePath);
+				for (int i = 0; i < padded.steps().size(); i++) {
+					Path path = Path.of(diagnoseFile + "." + padded.type().name().toLowerCase(Locale.ROOT) + i);
+					Files.createDirectories(path.getParent());
+					String version = padded.steps().get(i);
+					Files.write(path, version.getBytes(formatter.getEncoding()));
+				}
+				misbehavior.put(relativePath, padded.userMessage());
+			}
+		}
+		return misbehavior;
+	}
+
+	/** Diagnoses a partition of the files of a task, with its own copy of the formatter. */
+	public abstract static class DiagnoseFilesAction implements WorkAction<DiagnoseFilesAction.Parameters> {
+		public interface Parameters extends WorkParameters {
+			Property<Formatter> getFormatter();
+
+			Property<File> getProjectDir();
+
+			ListProperty<String> getRelativePaths();
+
+			Property<File> getDiagnoseRoot();
+
+			Property<File> getResultFile();
+		}
+
+		@Override
+		public void execute() {
+			Parameters parameters = getParameters();
+			try (FormatterPool.Lease lease = FormatterPool.INSTANCE.borrow(parameters.getFormatter().get())) {
+				LinkedHashMap<String, String> misbehavior = diagnoseFiles(Logging.getLogger(SpotlessDiagnoseTask.class), lease.formatter(),
+						parameters.getProjectDir().get(), parameters.getRelativePaths().get(), parameters.getDiagnoseRoot().get());
+				SerializableMisc.toFile(misbehavior, parameters.getResultFile().get());
+				lease.keep();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/** The content hash of the files which were well-behaved, for one generation of the padded cell index. */
+	static final class WellBehaved implements Serializable {
+		@Serial
+		private static final long serialVersionUID = 2L;
+
+		private final @Nullable String generation;
+		private final HashMap<String, byte[]> hashes = new HashMap<>();
+
+		private WellBehaved(@Nullable String generation) {
+			this.generation = generation;
+		}
+
+		static WellBehaved readOrEmpty(File file, @Nullable PaddedCellIndex paddedCellIndex) {
+			String generation = paddedCellIndex == null ? null : paddedCellIndex.generation();
+			if (generation != null && file.isFile()) {
+				try {
+					WellBehaved read = SerializableMisc.fromFile(WellBehaved.class, file);
+					if (generation.equals(read.generation)) {
+						return read;
+					}
+				} catch (RuntimeException e) {
+					// written by another plugin version, every file is checked again
+				}
+			}
+			return new WellBehaved(generation);
+		}
+
+		void writeTo(File file) throws IOException {
+			if (generation == null) {
+				Files.deleteIfExists(file.toPath());
+			} else {
+				SerializableMisc.toFile(this, file);
+			}
+		}
+
+		boolean isUnchanged(String relativePath, File file) throws IOException {
+			byte[] recorded = hashes.get(relativePath);
+			return recorded != null && Arrays.equals(recorded, hashOf(file));
+		}
+
+		void update(String relativePath, File file) throws IOException {
+			byte[] hash = hashOf(file);
+			if (hash == null) {
+				hashes.remove(relativePath);
+			} else {
+				hashes.put(relativePath, hash);
+			}
+		}
+
+		void remove(String relativePath) {
+			hashes.remove(relativePath);
+		}
+
+		private static @Nullable byte[] hashOf(File file) throws IOException {
+			MessageDigest digest;
+			try {
+				digest = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+			try (InputStream input = Files.newInputStream(file.toPath())) {
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = input.read(buffer)) != -1) {
+					digest.update(buffer, 0, read);
+				}
+			} catch (NoSuchFileException e) {
+				return null;
+			}
+			return digest.digest();
+		}
+	}
 }
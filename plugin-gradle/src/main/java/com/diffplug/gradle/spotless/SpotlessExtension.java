@@ -42,12 +42,14 @@ public abstract class SpotlessExtension {
 	protected static final String CHECK_DESCRIPTION = "Checks that sourcecode satisfies formatting steps.";
 	protected static final String APPLY_DESCRIPTION = "Applies code formatting steps to sourcecode in-place.";
 	protected static final String INSTALL_GIT_PRE_PUSH_HOOK_DESCRIPTION = "Installs Spotless Git pre-push hook.";
+	protected static final String IDE_SERVER_DESCRIPTION = "Serves format requests from an IDE over a local socket until it is idle.";
 
 	static final String EXTENSION = "spotless"; // todo rename flawless
 	static final String EXTENSION_PREDECLARE = EXTENSION + "Predeclare";
 	static final String CHECK = "Check";
 	static final String APPLY = "Apply";
 	static final String DIAGNOSE = "Diagnose";
+	static final String IDE_SERVER = "IdeServer";
 	static final String INSTALL_GIT_PRE_PUSH_HOOK = "InstallGitPrePushHook";
 
 	protected SpotlessExtension(Project project) {
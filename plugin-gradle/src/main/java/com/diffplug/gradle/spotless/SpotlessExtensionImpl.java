@@ -27,9 +27,14 @@ public class SpotlessExtensionImpl extends SpotlessExtension {
 	final TaskProvider<?> rootApplyTask;
 	final TaskProvider<?> rootDiagnoseTask;
 	final TaskProvider<?> rootInstallPreHook;
+	final TaskProvider<SpotlessIdeSourcesTask> ideSources;
+	private final IdeHook.State ideHook;
+	private final boolean profileConfiguration;
 
 	public SpotlessExtensionImpl(Project project) {
 		super(project);
+		ideHook = new IdeHook.State(project);
+		profileConfiguration = GradleCompat.isPropertyPresent(project, ConfigurationProfile.PROPERTY);
 		rootCheckTask = project.getTasks().register(EXTENSION + CHECK, task -> {
 			task.setGroup(TASK_GROUP);
 			task.setDescription(CHECK_DESCRIPTION);
@@ -45,6 +50,18 @@ public class SpotlessExtensionImpl extends SpotlessExtension {
 			task.getRootDir().set(project.getRootDir());
 			task.getIsRootExecution().set(project.equals(project.getRootProject()));
 		});
+		ideSources = project.getTasks().register(SpotlessIdeSourcesTask.NAME, SpotlessIdeSourcesTask.class,
+				task -> task.init(getRegisterDependenciesTask().getTaskService()));
+		getRegisterDependenciesTask().getTaskService().get().registerIdeSourcesTask(project.absoluteProjectPath(SpotlessIdeSourcesTask.NAME));
+		if (project.equals(project.getRootProject())) {
+			project.getTasks().register(EXTENSION + IDE_SERVER, SpotlessIdeServerTask.class, task -> {
+				task.setGroup(TASK_GROUP);
+				task.setDescription(IDE_SERVER_DESCRIPTION);
+				task.init(getRegisterDependenciesTask().getTaskService());
+				task.getPortFile().set(project.getLayout().getBuildDirectory().file("spotless-ide-server/port"));
+				task.getTokenFile().set(project.getLayout().getBuildDirectory().file("spotless-ide-server/token"));
+			});
+		}
 
 		project.afterEvaluate(unused -> {
 			if (enforceCheck) {
@@ -55,7 +72,6 @@ public class SpotlessExtensionImpl extends SpotlessExtension {
 
 	@Override
 	protected void createFormatTasks(String name, FormatExtension formatExtension) {
-		IdeHook.State ideHook = new IdeHook.State(getProject());
 		TaskContainer tasks = getProject().getTasks();
 
 		// create the SpotlessTask
@@ -68,12 +84,16 @@ public class SpotlessExtensionImpl extends SpotlessExtension {
 			task.mustRunAfter(BasePlugin.CLEAN_TASK_NAME);
 		});
 		getProject().afterEvaluate(unused -> spotlessTask.configure(task -> {
+			long start = System.nanoTime();
 			// now that the task is being configured, we execute our actions
 			for (Action<FormatExtension> lazyAction : formatExtension.lazyActions) {
 				lazyAction.execute(formatExtension);
 			}
 			// and now we'll setup the task
 			formatExtension.setupTask(task);
+			if (profileConfiguration) {
+				getRegisterDependenciesTask().getTaskService().get().configurationProfile.record(getProject().getPath(), name, System.nanoTime() - start);
+			}
 		}));
 
 		// create the check and apply control tasks
@@ -98,10 +118,13 @@ public class SpotlessExtensionImpl extends SpotlessExtension {
 
 		// create the diagnose task
 		TaskProvider<SpotlessDiagnoseTask> diagnoseTask = tasks.register(taskName + DIAGNOSE, SpotlessDiagnoseTask.class, task -> {
-			task.source = spotlessTask;
+			task.init(spotlessTask);
 			task.setGroup(TASK_GROUP);
+			// only the files which the spotless task found dirty or which went through padded cell need a closer look
+			task.dependsOn(spotlessTask);
 			task.mustRunAfter(BasePlugin.CLEAN_TASK_NAME);
 		});
 		rootDiagnoseTask.configure(task -> task.dependsOn(diagnoseTask));
+		ideSources.configure(task -> task.addSource(spotlessTask));
 	}
 }
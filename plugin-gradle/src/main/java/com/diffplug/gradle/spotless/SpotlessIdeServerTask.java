@@ -0,0 +1,162 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.spotless;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.UntrackedTask;
+
+import com.diffplug.spotless.ConfigurationCacheHackList;
+import com.diffplug.spotless.Formatter;
+import com.diffplug.spotless.LineEnding;
+
+/**
+ * Keeps the formatters of every format of every project configured, and serves format requests from an IDE through
+ * {@link IdeServer} until it was idle for {@link #getIdleTimeout()}. There is a single one in the root project, and the
+ * {@link SpotlessIdeSourcesTask} of each project hands over its formats, which the server depends on. The
+ * token which each connection has to send first is written to {@code build/spotless-ide-server/token}, and then the
+ * port to {@code build/spotless-ide-server/port} once the server accepts connections.
+ */
+@UntrackedTask(because = "runs until it is idle")
+public abstract class SpotlessIdeServerTask extends DefaultTask {
+	static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(30);
+
+	/** What the server needs of a format, taken from its spotless task once it is configured. */
+	static final class Source {
+		final File projectDir;
+		final FileCollection target;
+		final ConfigurationCacheHackList steps;
+		final Provider<LineEnding.Policy> lineEndingsPolicy;
+		final String encoding;
+		final @Nullable String ratchetFrom;
+
+		Source(SpotlessTaskImpl task) {
+			this.projectDir = task.getProjectDir().get().getAsFile();
+			this.target = task.getTarget();
+			this.steps = task.getStepsInternalRoundtrip();
+			this.lineEndingsPolicy = task.getLineEndingsPolicy();
+			this.encoding = task.getEncoding();
+			this.ratchetFrom = task.ratchetFrom;
+		}
+	}
+
+	void init(Provider<SpotlessTaskService> service) {
+		SpotlessTaskService.usesServiceTolerateTestFailure(this, service);
+		getTaskService().set(service);
+		// the sources tasks of all projects, which are only known once every project was configured
+		dependsOn(service.map(SpotlessTaskService::ideSourcesTaskPaths));
+	}
+
+	@Internal
+	public abstract Property<Duration> getIdleTimeout();
+
+	@Internal
+	abstract RegularFileProperty getPortFile();
+
+	@Internal
+	abstract RegularFileProperty getTokenFile();
+
+	@Internal
+	abstract Property<SpotlessTaskService> getTaskService();
+
+	@TaskAction
+	public void performAction() throws IOException {
+		File portFile = getPortFile().get().getAsFile();
+		File tokenFile = getTokenFile().get().getAsFile();
+		List<FormatterPool.Lease> leases = new ArrayList<>();
+		try {
+			List<IdeServer.Format> formats = new ArrayList<>();
+			for (Source source : getTaskService().get().ideSources()) {
+				Formatter formatter = Formatter.builder()
+						.lineEndingsPolicy(source.lineEndingsPolicy.get())
+						.encoding(Charset.forName(source.encoding))
+						.steps(source.steps.getSteps())
+						.build();
+				FormatterPool.Lease lease = FormatterPool.INSTANCE.borrow(formatter);
+				leases.add(lease);
+				formats.add(new SourceFormat(source, lease.formatter(), source.ratchetFrom == null || source.ratchetFrom.isEmpty() ? null : getTaskService().get().getRatchet()));
+			}
+			try (IdeServer server = new IdeServer(formats)) {
+				server.writeToken(tokenFile);
+				Files.createDirectories(portFile.getParentFile().toPath());
+				Files.write(portFile.toPath(), Integer.toString(server.port()).getBytes(StandardCharsets.UTF_8));
+				getLogger().lifecycle("Spotless IDE server listening on 127.0.0.1:" + server.port() + " (port written to " + portFile + ")");
+				server.serve(getIdleTimeout().getOrElse(DEFAULT_IDLE_TIMEOUT));
+			}
+			getLogger().lifecycle("Spotless IDE server stopped after being idle");
+			for (FormatterPool.Lease lease : leases) {
+				lease.keep();
+			}
+		} finally {
+			Files.deleteIfExists(portFile.toPath());
+			Files.deleteIfExists(tokenFile.toPath());
+			for (FormatterPool.Lease lease : leases) {
+				lease.close();
+			}
+		}
+	}
+
+	private static final class SourceFormat implements IdeServer.Format {
+		private final Source source;
+		private final Formatter formatter;
+		private final @Nullable GitRatchetGradle ratchet;
+		private @Nullable ObjectId rootTreeSha;
+
+		SourceFormat(Source source, Formatter formatter, @Nullable GitRatchetGradle ratchet) {
+			this.source = source;
+			this.formatter = formatter;
+			this.ratchet = ratchet;
+		}
+
+		@Override
+		public boolean contains(File file) {
+			return source.target.contains(file);
+		}
+
+		@Override
+		public Formatter formatter() {
+			return formatter;
+		}
+
+		@Override
+		public boolean isRatchetClean(File file) throws IOException {
+			if (ratchet == null) {
+				return false;
+			}
+			if (rootTreeSha == null) {
+				rootTreeSha = ratchet.rootTreeShaOf(source.projectDir, source.ratchetFrom);
+			}
+			return ratchet.isClean(source.projectDir, rootTreeSha, file);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.spotless;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.api.tasks.UntrackedTask;
+
+/**
+ * NOT AN END-USER TASK, DO NOT USE FOR ANYTHING!
+ * <p>
+ * Hands the formats of its own project to the {@link SpotlessIdeServerTask} of the root project through the
+ * {@link SpotlessTaskService}, so that the server never configures the tasks of another project. Each project registers
+ * the path of this task with the service while it is configured, and the server depends on all of them.
+ */
+@UntrackedTask(because = "only hands over the formats of its project")
+public abstract class SpotlessIdeSourcesTask extends DefaultTask {
+	static final String NAME = SpotlessExtension.EXTENSION + "IdeSources";
+
+	@Internal
+	abstract ListProperty<SpotlessIdeServerTask.Source> getSources();
+
+	@Internal
+	abstract Property<SpotlessTaskService> getTaskService();
+
+	void init(Provider<SpotlessTaskService> service) {
+		SpotlessTaskService.usesServiceTolerateTestFailure(this, service);
+		getTaskService().set(service);
+	}
+
+	/** The spotless task is only read once the sources are needed, and never while the server runs. */
+	void addSource(TaskProvider<SpotlessTaskImpl> spotlessTask) {
+		getSources().add(spotlessTask.map(SpotlessIdeServerTask.Source::new));
+	}
+
+	@TaskAction
+	public void performAction() {
+		getTaskService().get().addIdeSources(getSources().get());
+	}
+}
@@ -32,6 +32,7 @@ import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFiles;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.PathSensitive;
 import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.work.DisableCachingByDefault;
@@ -93,7 +94,13 @@ public abstract class SpotlessTask extends DefaultTask {
 
 	public void setupRatchet(String ratchetFrom) {
 		this.ratchetFrom = ratchetFrom;
-		if (!ratchetFrom.isEmpty()) {
+		// walking the git trees is left until a sha is needed, so that configuring the task stays cheap
+		rootTreeSha = null;
+		subtreeSha = ratchetFrom.isEmpty() ? ObjectId.zeroId() : null;
+	}
+
+	private void resolveRatchet() {
+		if (ratchetFrom != null && !ratchetFrom.isEmpty()) {
 			GitRatchet ratchet = getTaskService().get().getRatchet();
 			File projectDir = getProjectDir().get().getAsFile();
 			rootTreeSha = ratchet.rootTreeShaOf(projectDir, ratchetFrom);
@@ -113,13 +120,16 @@ public abstract class SpotlessTask extends DefaultTask {
 
 	@Internal
 	ObjectId getRootTreeSha() {
+		if (rootTreeSha == null) {
+			resolveRatchet();
+		}
 		return rootTreeSha;
 	}
 
 	@Input
 	public ObjectId getRatchetSha() {
 		if (subtreeSha == null) {
-			setupRatchet(ratchetFrom);
+			resolveRatchet();
 		}
 		return subtreeSha;
 	}
@@ -168,6 +178,14 @@ public abstract class SpotlessTask extends DefaultTask {
 		return lintsDirectory;
 	}
 
+	protected File paddedCellIndexFile = new File(getProject().getLayout().getBuildDirectory().getAsFile().get(),
+			"spotless-padded-cell/" + getName());
+
+	@OutputFile
+	public File getPaddedCellIndexFile() {
+		return paddedCellIndexFile;
+	}
+
 	private final ConfigurationCacheHackList stepsInternalRoundtrip = ConfigurationCacheHackList.forRoundtrip();
 	private final ConfigurationCacheHackList stepsInternalEquality = ConfigurationCacheHackList.forEquality();
 
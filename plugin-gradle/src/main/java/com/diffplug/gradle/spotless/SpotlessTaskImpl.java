@@ -17,18 +17,25 @@ package com.diffplug.gradle.spotless;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.LinkedHashMap;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
-import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.gradle.api.GradleException;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.CacheableTask;
@@ -39,11 +46,13 @@ import org.gradle.api.tasks.TaskAction;
 import org.gradle.work.ChangeType;
 import org.gradle.work.FileChange;
 import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
 
-import com.diffplug.common.annotations.VisibleForTesting;
 import com.diffplug.common.base.StringPrinter;
 import com.diffplug.spotless.Formatter;
-import com.diffplug.spotless.Lint;
 import com.diffplug.spotless.LintState;
 import com.diffplug.spotless.LintSuppression;
 import com.diffplug.spotless.extra.GitRatchet;
@@ -63,6 +72,7 @@ public abstract class SpotlessTaskImpl extends SpotlessTask {
 		SpotlessTaskService.usesServiceTolerateTestFailure(this, service);
 		getTaskService().set(service);
 		getProjectDir().set(getProject().getProjectDir());
+		getMaxWorkers().set(getProject().getGradle().getStartParameter().getMaxWorkerCount());
 	}
 
 	// this field is stupid, but we need it, see https://github.com/diffplug/spotless/issues/1260
@@ -73,9 +83,15 @@ public abstract class SpotlessTaskImpl extends SpotlessTask {
 		return taskServiceProvider;
 	}
 
+	@Internal
+	abstract Property<Integer> getMaxWorkers();
+
 	@Inject
 	protected abstract FileSystemOperations getFs();
 
+	@Inject
+	protected abstract WorkerExecutor getWorkerExecutor();
+
 	@TaskAction
 	public void performAction(InputChanges inputs) throws Exception {
 		IdeHook.State ideHook = getIdeHookState().getOrNull();
@@ -94,15 +110,22 @@ public abstract class SpotlessTaskImpl extends SpotlessTask {
 			getLogger().info("Not incremental: removing prior outputs");
 			getFs().delete(d -> d.delete(cleanDirectory));
 			getFs().delete(d -> d.delete(lintsDirectory));
+			Files.deleteIfExists(paddedCellIndexFile.toPath());
 			Files.createDirectories(cleanDirectory.toPath());
 			Files.createDirectories(lintsDirectory.toPath());
 		}
 
-		try (Formatter formatter = buildFormatter()) {
+		try (FormatterPool.Lease lease = FormatterPool.INSTANCE.borrow(buildFormatter())) {
+			Formatter formatter = lease.formatter();
 			GitRatchetGradle ratchet = getRatchet();
+			File projectDir = getProjectDir().get().getAsFile();
+			PaddedCellIndex paddedCellIndex = PaddedCellIndex.readOrEmpty(paddedCellIndexFile);
+			LintIndex lints = LintIndex.readOrEmpty(lintsDirectory);
+			List<String> changed = new ArrayList<>();
+			List<String> toFormat = new ArrayList<>();
+			Set<String> paddedCell = new HashSet<>();
 			for (FileChange fileChange : inputs.getFileChanges(target)) {
 				File input = fileChange.getFile();
-				File projectDir = getProjectDir().get().getAsFile();
 				String relativePath = LintSuppression.relativizeAsUnix(projectDir, input);
 				if (relativePath == null) {
 					throw new IllegalArgumentException(StringPrinter.buildString(printer -> {
@@ -113,53 +136,174 @@ public abstract class SpotlessTaskImpl extends SpotlessTask {
 				}
 				if (fileChange.getChangeType() == ChangeType.REMOVED) {
 					deletePreviousResults(cleanDirectory, relativePath);
-					deletePreviousResults(lintsDirectory, relativePath);
-				} else {
-					if (input.isFile()) {
-						processInputFile(ratchet, formatter, input, relativePath);
+					lints.remove(relativePath);
+					paddedCellIndex.remove(relativePath);
+				} else if (input.isFile()) {
+					changed.add(relativePath);
+					if (ratchet != null && ratchet.isClean(projectDir, getRootTreeSha(), input)) {
+						storeResults(getLogger(), formatter, input, relativePath, LintState.clean(), cleanDirectory, lints, paddedCell);
+					} else {
+						toFormat.add(relativePath);
 					}
 				}
 			}
+			int workers = workerCount(formatter, toFormat.size());
+			if (workers <= 1) {
+				formatFiles(getLogger(), formatter, projectDir, toFormat, cleanDirectory, lints, paddedCell, getLintSuppressions());
+			} else {
+				getLogger().info("Formatting {} files with {} workers", toFormat.size(), workers);
+				WorkQueue queue = getWorkerExecutor().noIsolation();
+				List<List<String>> partitions = new ArrayList<>(workers);
+				List<File> partitionLints = new ArrayList<>(workers);
+				List<File> partitionPaddedCell = new ArrayList<>(workers);
+				for (int i = 0; i < workers; i++) {
+					List<String> partition = new ArrayList<>(toFormat.subList(toFormat.size() * i / workers, toFormat.size() * (i + 1) / workers));
+					File partitionLintsDirectory = new File(getTemporaryDir(), "lints-" + i);
+					File partitionPaddedCellFile = new File(getTemporaryDir(), "padded-cell-" + i);
+					partitions.add(partition);
+					partitionLints.add(partitionLintsDirectory);
+					partitionPaddedCell.add(partitionPaddedCellFile);
+					queue.submit(FormatFilesAction.class, parameters -> {
+						parameters.getFormatter().set(formatter);
+						parameters.getProjectDir().set(projectDir);
+						parameters.getRelativePaths().set(partition);
+						parameters.getCleanDirectory().set(cleanDirectory);
+						parameters.getLintsDirectory().set(partitionLintsDirectory);
+						parameters.getPaddedCellFile().set(partitionPaddedCellFile);
+						parameters.getLintSuppressions().set(getLintSuppressions());
+					});
+				}
+				queue.await();
+				for (int i = 0; i < workers; i++) {
+					mergePartition(partitions.get(i), partitionLints.get(i), partitionPaddedCell.get(i), lints, paddedCell);
+				}
+			}
+			lints.writeTo(lintsDirectory);
+			for (String relativePath : changed) {
+				paddedCellIndex.setPaddedCell(relativePath, paddedCell.contains(relativePath));
+			}
+			paddedCellIndex.writeTo(paddedCellIndexFile);
+			lease.keep();
 		}
 	}
 
-	@VisibleForTesting
-	void processInputFile(@Nullable GitRatchet ratchet, Formatter formatter, File input, String relativePath) throws IOException {
-		File cleanFile = new File(cleanDirectory, relativePath);
-		File lintFile = new File(lintsDirectory, relativePath);
-		getLogger().debug("Applying format to {} and writing to {}", input, cleanFile);
-		LintState lintState;
-		if (ratchet != null && ratchet.isClean(getProjectDir().get().getAsFile(), getRootTreeSha(), input)) {
-			lintState = LintState.clean();
-		} else {
-			try {
-				lintState = LintState.of(formatter, input).withRemovedSuppressions(formatter, relativePath, getLintSuppressions());
-			} catch (Throwable e) {
-				throw new IllegalArgumentException("Issue processing file: " + input, e);
+	/** How many files are handed to {@link Formatter#prefetch(List)} at once. */
+	private static final int PREFETCH_CHUNK_SIZE = 256;
+
+	/** Fewer files than this per worker aren't worth a copy of the formatter. */
+	private static final int MIN_FILES_PER_WORKER = 64;
+
+	/**
+	 * Each worker formats its files with its own copy of the formatter, since steps aren't required to be
+	 * thread-safe. Steps which support batches talk to their own server pool, so they are not split up.
+	 */
+	private int workerCount(Formatter formatter, int files) {
+		if (formatter.supportsBatch()) {
+			return 1;
+		}
+		int maxWorkers = getMaxWorkers().getOrElse(1);
+		return Math.max(1, Math.min(maxWorkers, (files + MIN_FILES_PER_WORKER - 1) / MIN_FILES_PER_WORKER));
+	}
+
+	/** Formats the given files, which are relative to the project dir, and stores the results. */
+	static void formatFiles(Logger logger, Formatter formatter, File projectDir, List<String> relativePaths, File cleanDirectory, LintIndex lints, Set<String> paddedCell, List<LintSuppression> lintSuppressions) throws IOException {
+		for (int start = 0; start < relativePaths.size(); start += PREFETCH_CHUNK_SIZE) {
+			List<String> chunk = relativePaths.subList(start, Math.min(start + PREFETCH_CHUNK_SIZE, relativePaths.size()));
+			if (formatter.supportsBatch()) {
+				formatter.prefetch(chunk.stream().map(relativePath -> new File(projectDir, relativePath)).toList());
+			}
+			for (String relativePath : chunk) {
+				File input = new File(projectDir, relativePath);
+				storeResults(logger, formatter, input, relativePath, lintStateOf(formatter, input, relativePath, lintSuppressions), cleanDirectory, lints, paddedCell);
 			}
 		}
+	}
+
+	/**
+	 * Formats a partition of the files like {@link #formatFiles}, and writes its lints and the files which did not
+	 * converge into files of its own, which {@link #mergePartition} merges into the results of the task.
+	 */
+	static void formatPartition(Logger logger, Formatter formatter, File projectDir, List<String> relativePaths, File cleanDirectory, File partitionLintsDirectory, File partitionPaddedCellFile, List<LintSuppression> lintSuppressions) throws IOException {
+		LintIndex lints = new LintIndex();
+		Set<String> paddedCell = new HashSet<>();
+		formatFiles(logger, formatter, projectDir, relativePaths, cleanDirectory, lints, paddedCell, lintSuppressions);
+		lints.writeTo(partitionLintsDirectory);
+		Files.write(partitionPaddedCellFile.toPath(), paddedCell, StandardCharsets.UTF_8);
+	}
+
+	/** Merges the results which {@link #formatPartition} wrote for the given partition into those of the task. */
+	static void mergePartition(List<String> partition, File partitionLintsDirectory, File partitionPaddedCellFile, LintIndex lints, Set<String> paddedCell) throws IOException {
+		lints.replace(partition, LintIndex.readOrEmpty(partitionLintsDirectory));
+		paddedCell.addAll(Files.readAllLines(partitionPaddedCellFile.toPath(), StandardCharsets.UTF_8));
+	}
+
+	private static LintState lintStateOf(Formatter formatter, File input, String relativePath, List<LintSuppression> lintSuppressions) {
+		try {
+			return LintState.of(formatter, input).withRemovedSuppressions(formatter, relativePath, lintSuppressions);
+		} catch (Throwable e) {
+			throw new IllegalArgumentException("Issue processing file: " + input, e);
+		}
+	}
+
+	private static void storeResults(Logger logger, Formatter formatter, File input, String relativePath, LintState lintState, File cleanDirectory, LintIndex lints, Set<String> paddedCell) throws IOException {
+		File cleanFile = new File(cleanDirectory, relativePath);
+		logger.debug("Applying format to {} and writing to {}", input, cleanFile);
+		if (lintState.getDirtyState().isPaddedCell()) {
+			// even a clean file may only be the canonical form of a cycle, which spotlessDiagnose has to see
+			paddedCell.add(relativePath);
+		}
 		if (lintState.getDirtyState().isClean()) {
 			// Remove previous output if it exists
 			Files.deleteIfExists(cleanFile.toPath());
 		} else if (lintState.getDirtyState().didNotConverge()) {
-			getLogger().warn("Skipping '{}' because it does not converge.  Run {@code spotlessDiagnose} to understand why", relativePath);
+			logger.warn("Skipping '{}' because it does not converge.  Run {@code spotlessDiagnose} to understand why", relativePath);
 		} else {
 			Path parentDir = cleanFile.toPath().getParent();
 			if (parentDir == null) {
 				throw new IllegalStateException("Every file has a parent folder. But not: " + cleanFile);
 			}
 			Files.createDirectories(parentDir);
-			// Need to copy the original file to the tmp location just to remember the file attributes
-			Files.copy(input.toPath(), cleanFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+			logger.info("Writing clean file: %s".formatted(cleanFile));
+			if (Files.getFileAttributeView(input.toPath(), PosixFileAttributeView.class) != null) {
+				lintState.getDirtyState().writeCanonicalTo(cleanFile);
+				Files.setPosixFilePermissions(cleanFile.toPath(), Files.getPosixFilePermissions(input.toPath()));
+			} else {
+				// Need to copy the original file to the tmp location just to remember the file attributes
+				Files.copy(input.toPath(), cleanFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+				lintState.getDirtyState().writeCanonicalTo(cleanFile);
+			}
+		}
+		lints.put(relativePath, lintState.isHasLints() ? lintState.getLintsByStep(formatter) : null);
+	}
 
-			getLogger().info("Writing clean file: %s".formatted(cleanFile));
-			lintState.getDirtyState().writeCanonicalTo(cleanFile);
+	/** Formats a partition of the files of a task, with its own copy of the formatter or an equal warm one. */
+	public abstract static class FormatFilesAction implements WorkAction<FormatFilesAction.Parameters> {
+		public interface Parameters extends WorkParameters {
+			Property<Formatter> getFormatter();
+
+			Property<File> getProjectDir();
+
+			ListProperty<String> getRelativePaths();
+
+			Property<File> getCleanDirectory();
+
+			Property<File> getLintsDirectory();
+
+			Property<File> getPaddedCellFile();
+
+			ListProperty<LintSuppression> getLintSuppressions();
 		}
-		if (!lintState.isHasLints()) {
-			Files.deleteIfExists(lintFile.toPath());
-		} else {
-			LinkedHashMap<String, List<Lint>> lints = lintState.getLintsByStep(formatter);
-			SerializableMisc.toFile(lints, lintFile);
+
+		@Override
+		public void execute() {
+			Parameters parameters = getParameters();
+			try (FormatterPool.Lease lease = FormatterPool.INSTANCE.borrow(parameters.getFormatter().get())) {
+				formatPartition(Logging.getLogger(SpotlessTaskImpl.class), lease.formatter(), parameters.getProjectDir().get(), parameters.getRelativePaths().get(),
+						parameters.getCleanDirectory().get(), parameters.getLintsDirectory().get(), parameters.getPaddedCellFile().get(), parameters.getLintSuppressions().get());
+				lease.keep();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
 		}
 	}
 
@@ -16,22 +16,21 @@
 package com.diffplug.gradle.spotless;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Set;
+import java.util.TreeSet;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.gradle.api.DefaultTask;
-import org.gradle.api.file.ConfigurableFileTree;
 import org.gradle.api.file.DirectoryProperty;
-import org.gradle.api.file.FileVisitDetails;
-import org.gradle.api.file.FileVisitor;
+import org.gradle.api.logging.Logging;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
@@ -95,9 +94,40 @@ public abstract class SpotlessTaskService implements BuildService<BuildServicePa
 	@Override
 	public void close() throws Exception {
 		ratchet.close();
+		if (!configurationProfile.isEmpty()) {
+			Logging.getLogger(SpotlessTaskService.class).lifecycle(configurationProfile.report());
+		}
 	}
 	// </GitRatchet>
 
+	final ConfigurationProfile configurationProfile = new ConfigurationProfile();
+
+	// <IdeServer>
+	private final Set<String> ideSourcesTaskPaths = Collections.synchronizedSet(new TreeSet<>());
+	private final List<SpotlessIdeServerTask.Source> ideSources = Collections.synchronizedList(new ArrayList<>());
+
+	/** Called while a project is configured, so that the IDE server can depend on its sources task. */
+	void registerIdeSourcesTask(String path) {
+		ideSourcesTaskPaths.add(path);
+	}
+
+	List<String> ideSourcesTaskPaths() {
+		synchronized (ideSourcesTaskPaths) {
+			return new ArrayList<>(ideSourcesTaskPaths);
+		}
+	}
+
+	void addIdeSources(List<SpotlessIdeServerTask.Source> sources) {
+		ideSources.addAll(sources);
+	}
+
+	List<SpotlessIdeServerTask.Source> ideSources() {
+		synchronized (ideSources) {
+			return new ArrayList<>(ideSources);
+		}
+	}
+	// </IdeServer>
+
 	static String INDEPENDENT_HELPER = "Helper";
 
 	static void usesServiceTolerateTestFailure(DefaultTask task, Provider<SpotlessTaskService> serviceProvider) {
@@ -167,38 +197,24 @@ public abstract class SpotlessTaskService implements BuildService<BuildServicePa
 			return service().apply.containsKey(sourceTaskPath());
 		}
 
-		protected String allLintsErrorMsgDetailed(ConfigurableFileTree lintsFiles, boolean detailed) {
-			AtomicInteger total = new AtomicInteger(0);
-			TreeMap<String, LinkedHashMap<String, List<Lint>>> allLints = new TreeMap<>();
-			lintsFiles.visit(new FileVisitor() {
-				@Override
-				public void visitDir(FileVisitDetails fileVisitDetails) {
-
-				}
-
-				@Override
-				public void visitFile(FileVisitDetails fileVisitDetails) {
-					String path = fileVisitDetails.getPath();
-					getLogger().debug("Reading lints for " + path);
-					LinkedHashMap<String, List<Lint>> lints = SerializableMisc.fromFile(LinkedHashMap.class, fileVisitDetails.getFile());
-					allLints.put(path, lints);
-					lints.values().forEach(list -> total.addAndGet(list.size()));
-				}
-			});
-			StringBuilder builder = new StringBuilder();
-			builder.append("There were ").append(total.get()).append(" lint error(s), they must be fixed or suppressed.\n");
-			for (Map.Entry<String, LinkedHashMap<String, List<Lint>>> lintsPerFile : allLints.entrySet()) {
-				for (Map.Entry<String, List<Lint>> stepLints : lintsPerFile.getValue().entrySet()) {
+		protected String allLintsErrorMsgDetailed(File lintsDirectory, boolean detailed) throws IOException {
+			StringBuilder lines = new StringBuilder();
+			// the index is sorted by path, so it can be turned into the message as it is read
+			int total = LintIndex.read(lintsDirectory, (path, lintsByStep) -> {
+				for (Map.Entry<String, List<Lint>> stepLints : lintsByStep.entrySet()) {
 					String stepName = stepLints.getKey();
 					for (Lint lint : stepLints.getValue()) {
-						builder.append(lintsPerFile.getKey());
-						builder.append(":");
+						lines.append(path);
+						lines.append(":");
 						boolean oneLine = !detailed;
-						lint.addWarningMessageTo(builder, stepName, oneLine);
-						builder.append("\n");
+						lint.addWarningMessageTo(lines, stepName, oneLine);
+						lines.append("\n");
 					}
 				}
-			}
+			});
+			StringBuilder builder = new StringBuilder();
+			builder.append("There were ").append(total).append(" lint error(s), they must be fixed or suppressed.\n");
+			builder.append(lines);
 			builder.append("Resolve these lints or suppress with `suppressLintsFor`");
 			return builder.toString();
 		}
@@ -120,8 +120,8 @@ public class TypescriptExtension extends FormatExtension {
 					.create(devDependencies, provisioner(), project.getProjectDir(),
 							project.getLayout().getBuildDirectory().getAsFile().get(), npmModulesCacheOrNull(),
 							new NpmPathResolver(npmFileOrNull(), nodeFileOrNull(), npmrcFileOrNull(),
-									Arrays.asList(project.getProjectDir(), project.getRootDir())),
-							typedConfigFile(), config);
+									Arrays.asList(project.getProjectDir(), project.getRootDir()), packageLockFileOrNull()),
+							typedConfigFile(), config, serverOptions());
 		}
 
 		private TypedTsFmtConfigFile typedConfigFile() {
@@ -215,8 +215,9 @@ public class TypescriptExtension extends FormatExtension {
 			return EslintFormatterStep.create(devDependencies, provisioner(), project.getProjectDir(),
 					project.getLayout().getBuildDirectory().getAsFile().get(), npmModulesCacheOrNull(),
 					new NpmPathResolver(npmFileOrNull(), nodeFileOrNull(), npmrcFileOrNull(),
-							Arrays.asList(project.getProjectDir(), project.getRootDir())),
-					eslintConfig());
+							Arrays.asList(project.getProjectDir(), project.getRootDir()), packageLockFileOrNull()),
+					eslintConfig(),
+					serverOptions());
 		}
 
 		protected EslintConfig eslintConfig() {
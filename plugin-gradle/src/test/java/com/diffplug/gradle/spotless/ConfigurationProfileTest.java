@@ -0,0 +1,49 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.spotless;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class ConfigurationProfileTest {
+	@Test
+	void reportListsTheSlowestFormatsFirst() {
+		ConfigurationProfile profile = new ConfigurationProfile();
+		assertThat(profile.isEmpty()).isTrue();
+		profile.record(":app", "java", TimeUnit.MILLISECONDS.toNanos(5));
+		profile.record(":lib", "kotlin", TimeUnit.MILLISECONDS.toNanos(20));
+		profile.record(":app", "misc", TimeUnit.MILLISECONDS.toNanos(1));
+		assertThat(profile.report().lines()).containsExactly(
+				"Spotless configuration took 26 ms for 3 formats in 2 projects",
+				"      20 ms  :lib kotlin",
+				"       5 ms  :app java",
+				"       1 ms  :app misc");
+	}
+
+	@Test
+	void reportIsLimitedToTheSlowestFormats() {
+		ConfigurationProfile profile = new ConfigurationProfile();
+		for (int i = 0; i < ConfigurationProfile.MAX_LINES + 3; i++) {
+			profile.record(":p" + i, "java", TimeUnit.MILLISECONDS.toNanos(i));
+		}
+		assertThat(profile.report().lines())
+				.hasSize(ConfigurationProfile.MAX_LINES + 2)
+				.endsWith("    ... and 3 faster formats");
+	}
+}
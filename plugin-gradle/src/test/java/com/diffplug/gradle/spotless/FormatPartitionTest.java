@@ -0,0 +1,158 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.spotless;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.diffplug.spotless.Formatter;
+import com.diffplug.spotless.LineEnding;
+import com.diffplug.spotless.NeverUpToDateStep;
+
+class FormatPartitionTest {
+	private static final int FILES = 300;
+	private static final int WORKERS = 4;
+
+	@TempDir
+	File projectDir;
+
+	@TempDir
+	File serialDir;
+
+	@TempDir
+	File parallelDir;
+
+	@Test
+	void partitionedWorkersMatchASerialRun() throws Exception {
+		List<String> relativePaths = new ArrayList<>();
+		for (int i = 0; i < FILES; i++) {
+			String relativePath = "src/dir" + (i % 7) + "/file" + i + ".txt";
+			Path file = projectDir.toPath().resolve(relativePath);
+			Files.createDirectories(file.getParent());
+			Files.writeString(file, contentOf(i), StandardCharsets.UTF_8);
+			relativePaths.add(relativePath);
+		}
+
+		File serialClean = new File(serialDir, "clean");
+		LintIndex serialLints = new LintIndex();
+		Set<String> serialPaddedCell = new HashSet<>();
+		try (Formatter formatter = formatter()) {
+			SpotlessTaskImpl.formatFiles(Logging.getLogger(FormatPartitionTest.class), formatter, projectDir, relativePaths, serialClean, serialLints, serialPaddedCell, List.of());
+		}
+		serialLints.writeTo(new File(serialDir, "lints"));
+
+		File parallelClean = new File(parallelDir, "clean");
+		LintIndex parallelLints = new LintIndex();
+		Set<String> parallelPaddedCell = new HashSet<>();
+		ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < WORKERS; i++) {
+				List<String> partition = relativePaths.subList(FILES * i / WORKERS, FILES * (i + 1) / WORKERS);
+				File partitionLints = new File(parallelDir, "lints-" + i);
+				File partitionPaddedCell = new File(parallelDir, "padded-cell-" + i);
+				futures.add(executor.submit(() -> {
+					try (Formatter formatter = formatter()) {
+						SpotlessTaskImpl.formatPartition(Logging.getLogger(FormatPartitionTest.class), formatter, projectDir, partition, parallelClean, partitionLints, partitionPaddedCell, List.of());
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		for (int i = 0; i < WORKERS; i++) {
+			SpotlessTaskImpl.mergePartition(relativePaths.subList(FILES * i / WORKERS, FILES * (i + 1) / WORKERS),
+					new File(parallelDir, "lints-" + i), new File(parallelDir, "padded-cell-" + i), parallelLints, parallelPaddedCell);
+		}
+		parallelLints.writeTo(new File(parallelDir, "lints"));
+
+		assertThat(contentsOf(parallelClean)).isEqualTo(contentsOf(serialClean));
+		assertThat(contentsOf(serialClean)).isNotEmpty();
+		assertThat(Files.readAllBytes(new File(parallelDir, "lints/" + LintIndex.FILE_NAME).toPath()))
+				.isEqualTo(Files.readAllBytes(new File(serialDir, "lints/" + LintIndex.FILE_NAME).toPath()));
+		assertThat(LintIndex.read(new File(serialDir, "lints"), (path, lintsByStep) -> {})).isEqualTo(FILES / 5);
+		assertThat(parallelPaddedCell).isEqualTo(serialPaddedCell);
+		assertThat(serialPaddedCell).hasSize(FILES / 5);
+	}
+
+	/** The files are clean, dirty, have a lint, do not converge, or are dirty on their second line. */
+	private static String contentOf(int i) {
+		switch (i % 5) {
+		case 0:
+			return "clean " + i;
+		case 1:
+			return "DIRTY " + i;
+		case 2:
+			return "lint " + i;
+		case 3:
+			return "diverge " + i;
+		default:
+			return "ok " + i + "\nDIRTY";
+		}
+	}
+
+	private static Formatter formatter() {
+		return Formatter.builder()
+				.lineEndingsPolicy(LineEnding.UNIX.createPolicy())
+				.encoding(StandardCharsets.UTF_8)
+				.steps(List.of(NeverUpToDateStep.create("partition", raw -> {
+					if (raw.startsWith("lint")) {
+						throw new IllegalArgumentException("1: no lint allowed");
+					} else if (raw.startsWith("diverge")) {
+						return raw + " ";
+					} else {
+						return raw.toLowerCase(Locale.ROOT);
+					}
+				})))
+				.build();
+	}
+
+	private static TreeMap<String, String> contentsOf(File directory) throws IOException {
+		TreeMap<String, String> contents = new TreeMap<>();
+		if (!directory.isDirectory()) {
+			return contents;
+		}
+		try (Stream<Path> files = Files.walk(directory.toPath())) {
+			for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+				contents.put(directory.toPath().relativize(file).toString(), Files.readString(file, StandardCharsets.UTF_8));
+			}
+		}
+		return contents;
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.spotless;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.Serial;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.diffplug.spotless.Formatter;
+import com.diffplug.spotless.FormatterFunc;
+import com.diffplug.spotless.FormatterStep;
+import com.diffplug.spotless.LineEnding;
+
+class FormatterPoolTest {
+	private final FormatterPool pool = new FormatterPool(Duration.ofMillis(200));
+
+	@Test
+	void reusesAnEqualFormatterWhichWasKept() {
+		ClosingStep step = new ClosingStep("a");
+		Formatter first = formatter(step);
+		try (FormatterPool.Lease lease = pool.borrow(first)) {
+			assertThat(lease.formatter()).isSameAs(first);
+			lease.keep();
+		}
+		try (FormatterPool.Lease lease = pool.borrow(formatter(new ClosingStep("a")))) {
+			assertThat(lease.formatter()).isSameAs(first);
+		}
+		assertThat(step.closed).hasValue(1);
+	}
+
+	@Test
+	void doesNotReuseDifferentOrBorrowedFormatters() {
+		Formatter first = formatter(new ClosingStep("a"));
+		try (FormatterPool.Lease lease = pool.borrow(first)) {
+			lease.keep();
+		}
+		try (FormatterPool.Lease lease = pool.borrow(formatter(new ClosingStep("b")))) {
+			assertThat(lease.formatter()).isNotSameAs(first);
+		}
+		try (FormatterPool.Lease a = pool.borrow(formatter(new ClosingStep("a")));
+				FormatterPool.Lease b = pool.borrow(formatter(new ClosingStep("a")))) {
+			assertThat(a.formatter()).isSameAs(first);
+			assertThat(b.formatter()).isNotSameAs(first);
+		}
+	}
+
+	@Test
+	void closesFormattersOnceTheyWereIdleForTheTimeout() throws InterruptedException {
+		ClosingStep step = new ClosingStep("a");
+		Formatter first = formatter(step);
+		try (FormatterPool.Lease lease = pool.borrow(first)) {
+			lease.keep();
+		}
+		for (int i = 0; i < 100 && step.closed.get() == 0; i++) {
+			Thread.sleep(50);
+		}
+		assertThat(step.closed).hasValue(1);
+		try (FormatterPool.Lease lease = pool.borrow(formatter(new ClosingStep("a")))) {
+			assertThat(lease.formatter()).isNotSameAs(first);
+		}
+	}
+
+	@Test
+	void doesNotKeepFormattersWhichAreNotReusable() {
+		ClosingStep step = new ClosingStep("a");
+		Formatter first = formatter(step.notReusable());
+		try (FormatterPool.Lease lease = pool.borrow(first)) {
+			lease.keep();
+		}
+		assertThat(step.closed).hasValue(1);
+		try (FormatterPool.Lease lease = pool.borrow(formatter(new ClosingStep("a").notReusable()))) {
+			assertThat(lease.formatter()).isNotSameAs(first);
+		}
+	}
+
+	@Test
+	void doesNotKeepFormattersWhichGaveUpAfterATimeout() throws Exception {
+		Formatter first = formatter(new ClosingStep("hang").withTimeout(Duration.ofMillis(200), false));
+		try (FormatterPool.Lease lease = pool.borrow(first)) {
+			assertThatThrownBy(() -> lease.formatter().getSteps().get(0).format("hang", new File("hung.txt"))).isInstanceOf(TimeoutException.class);
+			lease.keep();
+		}
+		try (FormatterPool.Lease lease = pool.borrow(formatter(new ClosingStep("hang").withTimeout(Duration.ofMillis(200), false)))) {
+			assertThat(lease.formatter()).isNotSameAs(first);
+			assertThat(lease.formatter().isReusable()).isTrue();
+		}
+	}
+
+	@Test
+	void dropsThePrefetchedResultsOfTheLastBorrower(@TempDir File dir) throws Exception {
+		File file = new File(dir, "a.txt");
+		Files.write(file.toPath(), "a".getBytes(StandardCharsets.UTF_8));
+		Formatter first = formatter(new BatchStep());
+		try (FormatterPool.Lease lease = pool.borrow(first)) {
+			lease.formatter().prefetch(List.of(file));
+			assertThat(lease.formatter().compute("a", file)).isEqualTo("batch");
+			lease.keep();
+		}
+		try (FormatterPool.Lease lease = pool.borrow(formatter(new BatchStep()))) {
+			assertThat(lease.formatter()).isSameAs(first);
+			assertThat(lease.formatter().compute("a", file)).isEqualTo("single");
+		}
+	}
+
+	private static Formatter formatter(FormatterStep step) {
+		return Formatter.builder()
+				.lineEndingsPolicy(LineEnding.UNIX.createPolicy())
+				.encoding(StandardCharsets.UTF_8)
+				.steps(List.of(step))
+				.build();
+	}
+
+	/** Tells apart whether a file was formatted in a batch or on its own. */
+	private static final class BatchStep implements FormatterStep {
+		@Serial
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String getName() {
+			return "batch";
+		}
+
+		@Override
+		public String format(String rawUnix, File file) {
+			return "single";
+		}
+
+		@Override
+		public List<FormatterFunc.BatchResult> formatBatch(List<String> rawUnix, List<File> files) {
+			return rawUnix.stream().map(unused -> FormatterFunc.BatchResult.of("batch")).toList();
+		}
+
+		@Override
+		public boolean supportsBatch() {
+			return true;
+		}
+
+		@Override
+		public void close() {}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof BatchStep;
+		}
+
+		@Override
+		public int hashCode() {
+			return BatchStep.class.hashCode();
+		}
+	}
+
+	/** Leaves its input unchanged, but hangs on content which is equal to its name. */
+	private static final class ClosingStep implements FormatterStep {
+		@Serial
+		private static final long serialVersionUID = 1L;
+
+		private final String name;
+		private final transient AtomicInteger closed = new AtomicInteger();
+
+		ClosingStep(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public String format(String rawUnix, File file) throws InterruptedException {
+			if (rawUnix.equals(name)) {
+				Thread.sleep(Long.MAX_VALUE);
+			}
+			return rawUnix;
+		}
+
+		@Override
+		public void close() {
+			closed.incrementAndGet();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof ClosingStep && ((ClosingStep) o).name.equals(name);
+		}
+
+		@Override
+		public int hashCode() {
+			return name.hashCode();
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.spotless;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.condition.OS.WINDOWS;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serial;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.diffplug.spotless.Formatter;
+import com.diffplug.spotless.FormatterStep;
+import com.diffplug.spotless.LineEnding;
+
+class IdeServerTest {
+	@TempDir
+	File rootFolder;
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private IdeServer server;
+
+	@BeforeEach
+	void start() throws IOException {
+		server = start(Duration.ofSeconds(10));
+	}
+
+	private IdeServer start(Duration authenticationTimeout) throws IOException {
+		Formatter formatter = Formatter.builder()
+				.lineEndingsPolicy(LineEnding.UNIX.createPolicy())
+				.encoding(StandardCharsets.UTF_8)
+				.steps(List.of(new LowercaseStep()))
+				.build();
+		IdeServer started = new IdeServer(List.of(new IdeServer.Format() {
+			@Override
+			public boolean contains(File file) {
+				return file.getName().endsWith(".md");
+			}
+
+			@Override
+			public Formatter formatter() {
+				return formatter;
+			}
+
+			@Override
+			public boolean isRatchetClean(File file) {
+				return false;
+			}
+		}), authenticationTimeout);
+		executor.submit(() -> {
+			started.serve(Duration.ofMinutes(1));
+			return null;
+		});
+		return started;
+	}
+
+	@AfterEach
+	void stop() throws IOException {
+		executor.shutdownNow();
+		server.close();
+	}
+
+	@Test
+	void answersSeveralRequestsOnOneConnection() throws IOException {
+		File onDisk = new File(rootFolder, "CLEAN.md");
+		Files.writeString(onDisk.toPath(), "abc");
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+			OutputStream out = socket.getOutputStream();
+			InputStream in = socket.getInputStream();
+			out.write((server.token() + "\n").getBytes(StandardCharsets.UTF_8));
+
+			request(out, new File(rootFolder, "DIRTY.md").getAbsolutePath(), "ABC");
+			assertThat(readLine(in)).isEqualTo("IS DIRTY");
+			int length = Integer.parseInt(readLine(in));
+			assertThat(new String(in.readNBytes(length), StandardCharsets.UTF_8)).isEqualTo("abc");
+
+			request(out, onDisk.getAbsolutePath(), null);
+			assertThat(readLine(in)).isEqualTo("IS CLEAN");
+
+			request(out, new File(rootFolder, "OUTOFBOUNDS.txt").getAbsolutePath(), "ABC");
+			assertThat(readLine(in)).isEqualTo("OUT OF BOUNDS");
+
+			request(out, "DIRTY.md", "ABC");
+			assertThat(readLine(in)).isEqualTo("ERROR path must be absolute");
+		}
+	}
+
+	@Test
+	void connectionWithoutTheTokenIsRefused() throws IOException {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+			OutputStream out = socket.getOutputStream();
+			InputStream in = socket.getInputStream();
+			out.write("not the token\n".getBytes(StandardCharsets.UTF_8));
+			request(out, new File(rootFolder, "DIRTY.md").getAbsolutePath(), "ABC");
+			assertThat(readLine(in)).isEqualTo("ERROR unauthorized");
+			assertThat(in.read()).isEqualTo(-1);
+		}
+	}
+
+	@Test
+	void endlessLineEndsTheConnection() throws IOException {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+			socket.setSoTimeout(10_000);
+			OutputStream out = socket.getOutputStream();
+			out.write("a".repeat(1024).getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			assertThat(isClosedByServer(socket.getInputStream())).isTrue();
+		}
+	}
+
+	@Test
+	void silentConnectionIsDropped() throws IOException {
+		try (IdeServer impatient = start(Duration.ofMillis(200));
+				Socket socket = new Socket(InetAddress.getLoopbackAddress(), impatient.port())) {
+			socket.setSoTimeout(10_000);
+			assertThat(isClosedByServer(socket.getInputStream())).isTrue();
+		}
+	}
+
+	@Test
+	@DisabledOnOs(WINDOWS)
+	void tokenIsOnlyReadableByTheOwner() throws IOException {
+		File tokenFile = new File(rootFolder, "build/spotless-ide-server/token");
+		server.writeToken(tokenFile);
+		assertThat(Files.readString(tokenFile.toPath())).isEqualTo(server.token());
+		assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile.toPath()))).isEqualTo("rw-------");
+		assertThat(server.token()).hasSize(64);
+	}
+
+	private static void request(OutputStream out, String path, String content) throws IOException {
+		byte[] bytes = content == null ? new byte[0] : content.getBytes(StandardCharsets.UTF_8);
+		out.write((path + "\n" + (content == null ? -1 : bytes.length) + "\n").getBytes(StandardCharsets.UTF_8));
+		out.write(bytes);
+		out.flush();
+	}
+
+	/** True if the server closed the connection, either cleanly or with unread input left. */
+	private static boolean isClosedByServer(InputStream in) throws IOException {
+		try {
+			return in.read() == -1;
+		} catch (SocketException e) {
+			return true;
+		}
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int b;
+		while ((b = in.read()) != '\n' && b != -1) {
+			line.append((char) b);
+		}
+		return line.toString();
+	}
+
+	private static final class LowercaseStep implements FormatterStep {
+		@Serial
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String getName() {
+			return "lowercase";
+		}
+
+		@Override
+		public String format(String rawUnix, File file) {
+			return rawUnix.toLowerCase(Locale.ROOT);
+		}
+
+		@Override
+		public void close() {}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof LowercaseStep;
+		}
+
+		@Override
+		public int hashCode() {
+			return 1;
+		}
+	}
+}
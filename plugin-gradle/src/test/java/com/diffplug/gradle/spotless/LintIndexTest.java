@@ -0,0 +1,73 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.spotless;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.diffplug.spotless.Lint;
+
+class LintIndexTest {
+	@TempDir
+	File lintsDirectory;
+
+	@Test
+	void lintsAreReadBackSortedByPath() throws IOException {
+		LintIndex index = new LintIndex();
+		index.put("src/B.java", lints("step", Lint.atLineRange(3, 5, "code", "detail")));
+		index.put("src/A.java", lints("step", Lint.atUndefinedLine("other", "with ünïcode")));
+		index.put("src/C.java", null);
+		index.writeTo(lintsDirectory);
+
+		List<String> visited = new ArrayList<>();
+		int total = LintIndex.read(lintsDirectory, (path, lintsByStep) -> {
+			Lint lint = lintsByStep.get("step").get(0);
+			visited.add(path + ":" + lint.getLineStart() + "-" + lint.getLineEnd() + " " + lint.getShortCode() + " " + lint.getDetail());
+		});
+		assertThat(total).isEqualTo(2);
+		assertThat(visited).containsExactly(
+				"src/A.java:" + Lint.LINE_UNDEFINED + "-" + Lint.LINE_UNDEFINED + " other with ünïcode",
+				"src/B.java:3-5 code detail");
+	}
+
+	@Test
+	void indexWithoutLintsIsDeleted() throws IOException {
+		LintIndex index = new LintIndex();
+		index.put("src/A.java", lints("step", Lint.atUndefinedLine("code", "detail")));
+		index.writeTo(lintsDirectory);
+		assertThat(new File(lintsDirectory, LintIndex.FILE_NAME)).isFile();
+
+		LintIndex read = LintIndex.readOrEmpty(lintsDirectory);
+		read.replace(List.of("src/A.java"), new LintIndex());
+		read.writeTo(lintsDirectory);
+		assertThat(lintsDirectory.list()).isEmpty();
+		assertThat(LintIndex.read(lintsDirectory, (path, lintsByStep) -> {})).isZero();
+	}
+
+	private static LinkedHashMap<String, List<Lint>> lints(String stepName, Lint lint) {
+		LinkedHashMap<String, List<Lint>> lintsByStep = new LinkedHashMap<>();
+		lintsByStep.put(stepName, List.of(lint));
+		return lintsByStep;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.spotless;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PaddedCellIndexTest {
+	@TempDir
+	File tempDir;
+
+	@Test
+	void paddedCellIsReadBackWithItsGeneration() throws IOException {
+		PaddedCellIndex index = new PaddedCellIndex();
+		index.setPaddedCell("src/A.java", true);
+		index.setPaddedCell("src/B.java", true);
+		index.setPaddedCell("src/B.java", false);
+		index.setPaddedCell("src/ü.java", true);
+
+		File indexFile = new File(tempDir, "padded-cell/spotlessJava");
+		index.writeTo(indexFile);
+		PaddedCellIndex read = PaddedCellIndex.readOrEmpty(indexFile);
+		assertThat(read.generation()).isEqualTo(index.generation());
+		assertThat(read.wentThroughPaddedCell("src/A.java")).isTrue();
+		assertThat(read.wentThroughPaddedCell("src/B.java")).isFalse();
+		assertThat(read.wentThroughPaddedCell("src/ü.java")).isTrue();
+
+		read.remove("src/A.java");
+		assertThat(read.wentThroughPaddedCell("src/A.java")).isFalse();
+	}
+
+	@Test
+	void unreadableIndexStartsANewGeneration() throws IOException {
+		File indexFile = new File(tempDir, "padded-cell");
+		Files.writeString(indexFile.toPath(), "not an index");
+		PaddedCellIndex read = PaddedCellIndex.readOrEmpty(indexFile);
+		assertThat(read.generation()).isNotEqualTo(new PaddedCellIndex().generation());
+		assertThat(read.wentThroughPaddedCell("src/A.java")).isFalse();
+	}
+
+	@Test
+	void truncatedIndexStartsANewGeneration() throws IOException {
+		PaddedCellIndex index = new PaddedCellIndex();
+		index.setPaddedCell("src/A.java", true);
+		File indexFile = new File(tempDir, "padded-cell");
+		index.writeTo(indexFile);
+		byte[] written = Files.readAllBytes(indexFile.toPath());
+		Files.write(indexFile.toPath(), Arrays.copyOf(written, written.length - 3));
+
+		PaddedCellIndex read = PaddedCellIndex.readOrEmpty(indexFile);
+		assertThat(read.generation()).isNotEqualTo(index.generation());
+		assertThat(read.wentThroughPaddedCell("src/A.java")).isFalse();
+	}
+}
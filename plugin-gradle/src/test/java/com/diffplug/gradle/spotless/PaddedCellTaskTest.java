@@ -92,8 +92,7 @@ class PaddedCellTaskTest extends ResourceHarness {
 		}
 
 		void diagnose() throws IOException {
-			TaskProvider<SpotlessDiagnoseTask> diagnose = project.getTasks().register("spotless" + SpotlessPlugin.capitalize(name) + "Diagnose", SpotlessDiagnoseTask.class);
-			diagnose.get().source = source;
+			TaskProvider<SpotlessDiagnoseTask> diagnose = project.getTasks().register("spotless" + SpotlessPlugin.capitalize(name) + "Diagnose", SpotlessDiagnoseTask.class, task -> task.init(source));
 			diagnose.get().performAction();
 		}
 
@@ -201,6 +200,41 @@ class PaddedCellTaskTest extends ResourceHarness {
 				"test.diverge.diverge9");
 	}
 
+	@Test
+	void diagnoseAfterFormatRemembersWellBehavedFiles() throws Exception {
+		Bundle wellbehaved = wellbehaved();
+		Bundle cycle = cycle();
+		Bundle diverge = diverge();
+		// already the canonical form of its cycle, so it is clean
+		setFile("src/test.cycle").toContent("A");
+		wellbehaved.format();
+		cycle.format();
+		diverge.format();
+		wellbehaved.diagnose();
+		cycle.diagnose();
+		diverge.diagnose();
+
+		// neither the cycling nor the diverging file has a clean file, but the padded cell index knows they went through padded cell
+		assertThat(cycle.outputFile.get()).doesNotExist();
+		assertThat(PaddedCellIndex.readOrEmpty(cycle.source.get().getPaddedCellIndexFile()).wentThroughPaddedCell("src/test.cycle")).isTrue();
+		assertFolderContents("build/spotless-diagnose-cycle/src",
+				"test.cycle.cycle0",
+				"test.cycle.cycle1");
+		assertThat(new File(rootFolder(), "build/spotless-diagnose-diverge/src")).isDirectory();
+		assertThat(new File(rootFolder(), "build/spotless-diagnose-wellbehaved")).doesNotExist();
+
+		PaddedCellIndex paddedCellIndex = PaddedCellIndex.readOrEmpty(wellbehaved.source.get().getPaddedCellIndexFile());
+		assertThat(paddedCellIndex.wentThroughPaddedCell("src/test.wellbehaved")).isFalse();
+		SpotlessDiagnoseTask.WellBehaved cached = SpotlessDiagnoseTask.WellBehaved.readOrEmpty(new File(rootFolder(), "build/spotless-diagnose-cache/wellbehaved"), paddedCellIndex);
+		assertThat(cached.isUnchanged("src/test.wellbehaved", wellbehaved.file)).isTrue();
+
+		// an edit which keeps the size and the modification time is noticed
+		long lastModified = wellbehaved.file.lastModified();
+		setFile("src/test.wellbehaved").toContent("DDD");
+		assertThat(wellbehaved.file.setLastModified(lastModified)).isTrue();
+		assertThat(cached.isUnchanged("src/test.wellbehaved", wellbehaved.file)).isFalse();
+	}
+
 	private void assertFolderContents(String subfolderName, String... files) throws IOException {
 		File subfolder = new File(rootFolder(), subfolderName);
 		Assertions.assertTrue(subfolder.isDirectory());
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.gradle.spotless;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assumptions.assumeThat;
+import static org.junit.jupiter.api.condition.OS.WINDOWS;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReplaceAtomicallyTest {
+	@TempDir
+	File rootFolder;
+
+	@Test
+	void movesACopyOfTheCleanFileOverTheSource() throws IOException {
+		Path clean = write("build/clean/src/A.java", "clean");
+		Path source = write("src/A.java", "dirty");
+
+		SpotlessApply.replaceAtomically(clean, source);
+
+		assertThat(Files.readString(source)).isEqualTo("clean");
+		assertThat(Files.isSameFile(clean, source)).isFalse();
+		// the temporary sibling is gone
+		assertThat(source.getParent().toFile().list()).containsExactly("A.java");
+		// a later clean file doesn't change the applied source
+		Files.writeString(clean, "next");
+		assertThat(Files.readString(source)).isEqualTo("clean");
+	}
+
+	@Test
+	@DisabledOnOs(WINDOWS)
+	void symbolicLinkKeepsPointingToItsTarget() throws IOException {
+		Path clean = write("build/clean/src/A.java", "clean");
+		Path target = write("shared/A.java", "dirty");
+		Path source = new File(rootFolder, "src/A.java").toPath();
+		Files.createDirectories(source.getParent());
+		Files.createSymbolicLink(source, target);
+
+		SpotlessApply.replaceAtomically(clean, source);
+
+		assertThat(Files.isSymbolicLink(source)).isTrue();
+		assertThat(Files.readString(target)).isEqualTo("clean");
+		assertThat(source.getParent().toFile().list()).containsExactly("A.java");
+		assertThat(target.getParent().toFile().list()).containsExactly("A.java");
+	}
+
+	@Test
+	@DisabledOnOs(WINDOWS)
+	void writesIntoTheSourceWhereNoSiblingCanBeCreated() throws IOException {
+		Path clean = write("build/clean/src/A.java", "clean");
+		Path source = write("src/A.java", "dirty");
+		Path directory = source.getParent();
+		Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("r-xr-xr-x"));
+		try {
+			// a superuser can write into the directory anyway
+			assumeThat(Files.isWritable(directory)).isFalse();
+
+			SpotlessApply.replaceAtomically(clean, source);
+
+			assertThat(Files.readString(source)).isEqualTo("clean");
+			assertThat(directory.toFile().list()).containsExactly("A.java");
+		} finally {
+			Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwxr-xr-x"));
+		}
+	}
+
+	private Path write(String path, String content) throws IOException {
+		Path file = new File(rootFolder, path).toPath();
+		Files.createDirectories(file.getParent());
+		return Files.writeString(file, content, StandardCharsets.UTF_8);
+	}
+}
@@ -17,9 +17,10 @@ package com.diffplug.gradle.spotless;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
 
 import org.assertj.core.api.Assertions;
-import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.logging.Logger;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -29,18 +30,12 @@ import com.diffplug.spotless.Formatter;
 public class SpotlessTaskImplTest {
 	@Test
 	public void testThrowsMessageContainsFilename() throws Exception {
-		SpotlessTaskImpl task = Mockito.mock(Mockito.CALLS_REAL_METHODS);
-		Mockito.when(task.getLogger()).thenReturn(Mockito.mock(Logger.class));
-
 		File projectDir = Path.of("unitTests", "projectDir").toFile();
-		DirectoryProperty projectDirProperty = Mockito.mock(Mockito.RETURNS_DEEP_STUBS);
-		Mockito.when(projectDirProperty.get().getAsFile()).thenReturn(projectDir);
-
-		Mockito.when(task.getProjectDir()).thenReturn(projectDirProperty);
-
+		File cleanDirectory = Path.of("unitTests", "clean").toFile();
 		File input = Path.of("unitTests", "projectDir", "someInput").toFile();
 		Formatter formatter = Mockito.mock();
 
-		Assertions.assertThatThrownBy(() -> task.processInputFile(null, formatter, input, "someInput")).hasMessageContaining(input.toString());
+		Assertions.assertThatThrownBy(() -> SpotlessTaskImpl.formatFiles(Mockito.mock(Logger.class), formatter, projectDir, List.of("someInput"), cleanDirectory, new LintIndex(), new HashSet<>(), List.of()))
+				.hasMessageContaining(input.toString());
 	}
 }
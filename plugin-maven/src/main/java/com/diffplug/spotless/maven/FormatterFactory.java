@@ -20,6 +20,7 @@ import static java.util.Collections.emptySet;
 
 import java.io.File;
 import java.nio.charset.Charset;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -69,6 +70,14 @@ public abstract class FormatterFactory {
 	@Parameter
 	private String[] excludes;
 
+	/** If set, a step which takes longer than this on a single file fails that file and its tool is killed. */
+	@Parameter
+	private Integer stepTimeoutSeconds;
+
+	/** Whether a step which timed out is started again for the remaining files. */
+	@Parameter
+	private boolean restartAfterTimeout = true;
+
 	private final List<FormatterStepFactory> stepFactories = new ArrayList<>();
 
 	private ToggleOffOn toggle;
@@ -101,6 +110,12 @@ public abstract class FormatterFactory {
 			List<FormatterStep> formatterStepsBeforeToggle = formatterSteps;
 			formatterSteps = List.of(toggle.createFence().preserveWithin(formatterStepsBeforeToggle));
 		}
+		if (stepTimeoutSeconds != null) {
+			Duration timeout = Duration.ofSeconds(stepTimeoutSeconds);
+			formatterSteps = formatterSteps.stream()
+					.map(step -> step.withTimeout(timeout, restartAfterTimeout))
+					.collect(Collectors.toList());
+		}
 
 		return Formatter.builder()
 				.encoding(formatterEncoding)
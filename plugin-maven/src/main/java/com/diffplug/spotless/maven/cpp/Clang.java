@@ -32,6 +32,9 @@ public class Clang implements FormatterStepFactory {
 	@Parameter
 	private String style;
 
+	@Parameter
+	private boolean replacementsXml;
+
 	@Override
 	public FormatterStep newFormatterStep(FormatterStepConfig config) {
 		ClangFormatStep clang = ClangFormatStep.withVersion(version == null ? ClangFormatStep.defaultVersion() : version);
@@ -44,6 +47,10 @@ public class Clang implements FormatterStepFactory {
 			clang = clang.withStyle(style);
 		}
 
+		if (replacementsXml) {
+			clang = clang.withReplacementsXml(true);
+		}
+
 		return clang.create();
 	}
 
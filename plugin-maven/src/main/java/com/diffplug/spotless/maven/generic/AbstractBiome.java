@@ -86,6 +86,15 @@ public abstract class AbstractBiome implements FormatterStepFactory {
 	@Parameter
 	private String version;
 
+	/**
+	 * Whether to format via a long-running Biome daemon ({@code biome start}) that
+	 * keeps its configuration and parsers loaded, instead of spawning a new Biome
+	 * process for every file. Falls back to the per-file invocation when the daemon
+	 * cannot be used. Defaults to <code>false</code>.
+	 */
+	@Parameter
+	private boolean daemon;
+
 	@Override
 	public FormatterStep newFormatterStep(FormatterStepConfig config) {
 		var builder = newBuilder(config);
@@ -96,6 +105,7 @@ public abstract class AbstractBiome implements FormatterStepFactory {
 		if (getLanguage() != null) {
 			builder.withLanguage(getLanguage());
 		}
+		builder.withDaemon(daemon);
 		return builder.create();
 	}
 
@@ -16,6 +16,7 @@
 package com.diffplug.spotless.maven.generic;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.List;
 
 import org.apache.maven.plugins.annotations.Parameter;
@@ -36,12 +37,24 @@ public class NativeCmd implements FormatterStepFactory {
 	@Parameter
 	private List<String> arguments;
 
+	@Parameter
+	private boolean streaming;
+
+	@Parameter
+	private int streamingTimeoutSeconds = 60;
+
+	@Parameter
+	private int streamingInstances = 1;
+
 	@Override
 	public FormatterStep newFormatterStep(FormatterStepConfig config) {
 		if (name == null || pathToExe == null) {
 			throw new IllegalArgumentException("Must specify 'name' and 'pathToExe'.");
 		}
 
+		if (streaming) {
+			return NativeCmdStep.createStreaming(name, pathToExe, arguments, Duration.ofSeconds(streamingTimeoutSeconds), streamingInstances);
+		}
 		return NativeCmdStep.create(name, pathToExe, arguments);
 	}
 }
@@ -52,6 +52,9 @@ public class Prettier extends AbstractNpmFormatterStepFactory {
 	@Parameter
 	private String configFile;
 
+	@Parameter
+	private boolean perDirectoryConfig;
+
 	@Override
 	public FormatterStep newFormatterStep(FormatterStepConfig stepConfig) {
 
@@ -106,9 +109,9 @@ public class Prettier extends AbstractNpmFormatterStepFactory {
 		File baseDir = baseDir(stepConfig);
 		File buildDir = buildDir(stepConfig);
 		File cacheDir = cacheDir(stepConfig);
-		PrettierConfig prettierConfig = new PrettierConfig(configFileHandler, configInline);
+		PrettierConfig prettierConfig = new PrettierConfig(configFileHandler, configInline, perDirectoryConfig);
 		NpmPathResolver npmPathResolver = npmPathResolver(stepConfig);
-		return PrettierFormatterStep.create(devDependencies, stepConfig.getProvisioner(), baseDir, buildDir, cacheDir, npmPathResolver, prettierConfig);
+		return PrettierFormatterStep.create(devDependencies, stepConfig.getProvisioner(), baseDir, buildDir, cacheDir, npmPathResolver, prettierConfig, serverOptions());
 	}
 
 	private static IllegalArgumentException onlyOneConfig() {
@@ -69,7 +69,7 @@ public abstract class AbstractEslint extends AbstractNpmFormatterStepFactory {
 		File baseDir = baseDir(stepConfig);
 		File cacheDir = cacheDir(stepConfig);
 		NpmPathResolver npmPathResolver = npmPathResolver(stepConfig);
-		return EslintFormatterStep.create(devDependencies, stepConfig.getProvisioner(), baseDir, buildDir, cacheDir, npmPathResolver, eslintConfig(stepConfig));
+		return EslintFormatterStep.create(devDependencies, stepConfig.getProvisioner(), baseDir, buildDir, cacheDir, npmPathResolver, eslintConfig(stepConfig), serverOptions());
 	}
 
 	private static IllegalArgumentException onlyOneConfig() {
@@ -17,6 +17,7 @@ package com.diffplug.spotless.maven.npm;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.AbstractMap;
 import java.util.Arrays;
 import java.util.List;
@@ -31,6 +32,7 @@ import org.apache.maven.plugins.annotations.Parameter;
 import com.diffplug.spotless.maven.FormatterStepConfig;
 import com.diffplug.spotless.maven.FormatterStepFactory;
 import com.diffplug.spotless.npm.NpmPathResolver;
+import com.diffplug.spotless.npm.NpmServerOptions;
 
 public abstract class AbstractNpmFormatterStepFactory implements FormatterStepFactory {
 
@@ -48,6 +50,24 @@ public abstract class AbstractNpmFormatterStepFactory implements FormatterStepFa
 	@Parameter
 	private String npmInstallCache;
 
+	@Parameter
+	private String packageLock;
+
+	@Parameter
+	private int serverPoolSize = 1;
+
+	@Parameter
+	private boolean stdioTransport;
+
+	@Parameter
+	private boolean persistentServer;
+
+	@Parameter
+	private int persistentServerIdleMinutes = (int) NpmServerOptions.DEFAULT_PERSISTENT_SERVER_IDLE_TIMEOUT.toMinutes();
+
+	@Parameter
+	private boolean nodeCompileCache = true;
+
 	protected File npm(FormatterStepConfig stepConfig) {
 		return npmExecutable != null ? stepConfig.getFileLocator().locateFile(npmExecutable) : null;
 	}
@@ -60,6 +80,19 @@ public abstract class AbstractNpmFormatterStepFactory implements FormatterStepFa
 		return this.npmrc != null ? stepConfig.getFileLocator().locateFile(this.npmrc) : null;
 	}
 
+	protected File packageLock(FormatterStepConfig stepConfig) {
+		// may not exist yet, then a warning points to the one which npm install wrote into the build directory
+		return this.packageLock != null ? baseDir(stepConfig).toPath().resolve(this.packageLock).toFile() : null;
+	}
+
+	protected NpmServerOptions serverOptions() {
+		return NpmServerOptions.defaults()
+				.withServerPoolSize(serverPoolSize)
+				.withStdioTransport(stdioTransport)
+				.withPersistentServerIdleTimeout(persistentServer ? Duration.ofMinutes(persistentServerIdleMinutes) : Duration.ZERO)
+				.withNodeCompileCache(nodeCompileCache);
+	}
+
 	protected File buildDir(FormatterStepConfig stepConfig) {
 		return stepConfig.getFileLocator().getBuildDir();
 	}
@@ -79,7 +112,7 @@ public abstract class AbstractNpmFormatterStepFactory implements FormatterStepFa
 	}
 
 	protected NpmPathResolver npmPathResolver(FormatterStepConfig stepConfig) {
-		return new NpmPathResolver(npm(stepConfig), node(stepConfig), npmrc(stepConfig), List.of(baseDir(stepConfig)));
+		return new NpmPathResolver(npm(stepConfig), node(stepConfig), npmrc(stepConfig), List.of(baseDir(stepConfig)), packageLock(stepConfig));
 	}
 
 	protected boolean moreThanOneNonNull(Object... objects) {
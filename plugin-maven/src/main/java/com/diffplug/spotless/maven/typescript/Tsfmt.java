@@ -113,7 +113,7 @@ public class Tsfmt extends AbstractNpmFormatterStepFactory {
 		File baseDir = baseDir(stepConfig);
 		File cacheDir = cacheDir(stepConfig);
 		NpmPathResolver npmPathResolver = npmPathResolver(stepConfig);
-		return TsFmtFormatterStep.create(devDependencies, stepConfig.getProvisioner(), baseDir, buildDir, cacheDir, npmPathResolver, configFile, configInline);
+		return TsFmtFormatterStep.create(devDependencies, stepConfig.getProvisioner(), baseDir, buildDir, cacheDir, npmPathResolver, configFile, configInline, serverOptions());
 	}
 
 	private static IllegalArgumentException onlyOneConfig() {
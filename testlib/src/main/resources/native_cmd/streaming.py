@@ -0,0 +1,38 @@
+# Replaces "placeholder" with "replaced", speaking NativeCmdStep's streaming protocol.
+# Files whose path ends with ".fail" are answered with a non-zero status,
+# and the content "pid" is answered with the process id, after a short while.
+import os
+import struct
+import sys
+import time
+
+stdin = sys.stdin.buffer
+stdout = sys.stdout.buffer
+
+
+def read_exactly(length):
+    data = stdin.read(length)
+    if len(data) != length:
+        sys.exit(0)
+    return data
+
+
+def read_frame():
+    (length,) = struct.unpack(">i", read_exactly(4))
+    return read_exactly(length)
+
+
+while True:
+    path = read_frame().decode("utf-8")
+    content = read_frame().decode("utf-8")
+    if path.endswith(".fail"):
+        status, body = 1, "cannot format " + path
+    elif content == "pid":
+        time.sleep(0.05)
+        status, body = 0, str(os.getpid())
+    else:
+        status, body = 0, content.replace("placeholder", "replaced")
+    body = body.encode("utf-8")
+    stdout.write(struct.pack(">ii", status, len(body)))
+    stdout.write(body)
+    stdout.flush()
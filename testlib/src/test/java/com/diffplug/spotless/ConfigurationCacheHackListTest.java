@@ -0,0 +1,79 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class ConfigurationCacheHackListTest {
+	private static final AtomicInteger initialized = new AtomicInteger();
+
+	private static FormatterStep step(String suffix) {
+		return FormatterStep.createLazy("suffix",
+				() -> {
+					initialized.incrementAndGet();
+					return suffix;
+				},
+				state -> state.toUpperCase(Locale.ROOT),
+				state -> (FormatterFunc) raw -> raw + state);
+	}
+
+	@Test
+	void equalityListIsSerializedAsAStableFingerprint() {
+		ConfigurationCacheHackList list = ConfigurationCacheHackList.forEquality();
+		list.addAll(List.of(step("a"), step("b")));
+		int before = initialized.get();
+		byte[] first = LazyForwardingEquality.toBytes(list);
+		byte[] second = LazyForwardingEquality.toBytes(list);
+		assertThat(second).isEqualTo(first);
+		// the state is computed for the first fingerprint, and the fingerprint is reused afterwards
+		assertThat(initialized.get() - before).isEqualTo(2);
+
+		ConfigurationCacheHackList same = ConfigurationCacheHackList.forEquality();
+		same.addAll(List.of(step("A"), step("b")));
+		assertThat(LazyForwardingEquality.toBytes(same)).isEqualTo(first);
+
+		ConfigurationCacheHackList different = ConfigurationCacheHackList.forEquality();
+		different.addAll(List.of(step("b"), step("a")));
+		assertThat(LazyForwardingEquality.toBytes(different)).isNotEqualTo(first);
+	}
+
+	@Test
+	void equalityListHoldsOnlyFingerprintsOnceDeserialized() {
+		ConfigurationCacheHackList list = ConfigurationCacheHackList.forEquality();
+		list.addAll(List.of(step("a")));
+		ConfigurationCacheHackList deserialized = (ConfigurationCacheHackList) LazyForwardingEquality.fromBytes(LazyForwardingEquality.toBytes(list));
+		ConfigurationCacheHackList again = (ConfigurationCacheHackList) LazyForwardingEquality.fromBytes(LazyForwardingEquality.toBytes(list));
+		assertThat(deserialized).isEqualTo(again);
+		assertThatThrownBy(deserialized::getSteps).isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	void roundtripListStillFormats() throws Exception {
+		ConfigurationCacheHackList list = ConfigurationCacheHackList.forRoundtrip();
+		list.addAll(List.of(step("a")));
+		ConfigurationCacheHackList deserialized = (ConfigurationCacheHackList) LazyForwardingEquality.fromBytes(LazyForwardingEquality.toBytes(list));
+		FormatterStep step = deserialized.getSteps().get(0);
+		assertThat(step.format("x", new File("x"))).isEqualTo("xA");
+	}
+}
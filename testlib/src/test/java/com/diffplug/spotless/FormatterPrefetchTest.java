@@ -0,0 +1,202 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.diffplug.spotless.generic.EndWithNewlineStep;
+
+class FormatterPrefetchTest extends ResourceHarness {
+	private static int batchCalls;
+	private static int singleCalls;
+	private static int nonBatchCalls;
+
+	/** Uppercases its input, one file at a time or in batches, and fails on content which says so. */
+	private static class UpperCaseFunc implements FormatterFunc.Batch {
+		private final boolean failBatch;
+
+		UpperCaseFunc(boolean failBatch) {
+			this.failBatch = failBatch;
+		}
+
+		@Override
+		public String apply(String input) {
+			++singleCalls;
+			return upperCase(input);
+		}
+
+		@Override
+		public List<FormatterFunc.BatchResult> applyBatch(List<String> unix, List<File> files) {
+			++batchCalls;
+			if (failBatch) {
+				throw new IllegalStateException("the whole batch failed");
+			}
+			List<FormatterFunc.BatchResult> results = new ArrayList<>();
+			for (String content : unix) {
+				try {
+					results.add(FormatterFunc.BatchResult.of(upperCase(content)));
+				} catch (IllegalArgumentException e) {
+					results.add(FormatterFunc.BatchResult.failed(e));
+				}
+			}
+			return results;
+		}
+
+		private static String upperCase(String input) {
+			if (input.startsWith("fail")) {
+				throw new IllegalArgumentException("failing as requested");
+			}
+			return input.toUpperCase();
+		}
+	}
+
+	private static FormatterStep upperCaseStep() {
+		return FormatterStep.create("uppercase", false, UpperCaseFunc::new);
+	}
+
+	private static FormatterStep failingBatchStep() {
+		return FormatterStep.create("uppercase", true, UpperCaseFunc::new);
+	}
+
+	private static FormatterStep nonBatchStep() {
+		return FormatterStep.create("trim", "", unused -> input -> {
+			++nonBatchCalls;
+			return input.trim();
+		});
+	}
+
+	private static Formatter formatter(FormatterStep... steps) {
+		return Formatter.builder()
+				.lineEndingsPolicy(LineEnding.UNIX.createPolicy())
+				.encoding(StandardCharsets.UTF_8)
+				.steps(List.of(steps))
+				.build();
+	}
+
+	@BeforeEach
+	void resetCounters() {
+		batchCalls = 0;
+		singleCalls = 0;
+		nonBatchCalls = 0;
+	}
+
+	@Test
+	void prefetchFormatsAllFilesInOneBatch() throws Exception {
+		File a = setFile("a.txt").toContent("a");
+		File b = setFile("b.txt").toContent("b");
+		try (Formatter formatter = formatter(upperCaseStep())) {
+			assertThat(formatter.supportsBatch()).isTrue();
+			formatter.prefetch(List.of(a, b));
+			// once to format, once to check that the result converged
+			assertThat(batchCalls).isEqualTo(2);
+
+			assertThat(formatter.compute("a", a)).isEqualTo("A");
+			assertThat(formatter.compute("b", b)).isEqualTo("B");
+			assertThat(formatter.compute("A", a)).isEqualTo("A");
+			assertThat(singleCalls).isZero();
+		}
+	}
+
+	@Test
+	void stepsWithoutBatchesAreNotRunByPrefetch() throws Exception {
+		File a = setFile("a.txt").toContent(" a");
+		try (Formatter formatter = formatter(upperCaseStep(), nonBatchStep(), EndWithNewlineStep.create())) {
+			formatter.prefetch(List.of(a));
+			assertThat(batchCalls).isEqualTo(1);
+			assertThat(nonBatchCalls).isZero();
+
+			assertThat(formatter.compute(" a", a)).isEqualTo("A\n");
+			assertThat(nonBatchCalls).isEqualTo(1);
+			assertThat(singleCalls).isZero();
+		}
+	}
+
+	@Test
+	void wrappedStepsAreBatched() throws Exception {
+		File a = setFile("a.txt").toContent("a");
+		File b = setFile("b.txt").toContent("b");
+		FormatterStep wrapped = upperCaseStep()
+				.withTimeout(Duration.ofSeconds(10), true)
+				.filterByFile(SerializableFileFilter.skipFilesNamed("b.txt"));
+		try (Formatter formatter = formatter(wrapped)) {
+			assertThat(formatter.supportsBatch()).isTrue();
+			formatter.prefetch(List.of(a, b));
+			assertThat(batchCalls).isEqualTo(2);
+
+			assertThat(formatter.compute("a", a)).isEqualTo("A");
+			assertThat(formatter.compute("b", b)).isEqualTo("b");
+			assertThat(singleCalls).isZero();
+		}
+	}
+
+	@Test
+	void failedBatchFallsBackToSingleFiles() throws Exception {
+		File a = setFile("a.txt").toContent("a");
+		File b = setFile("b.txt").toContent("b");
+		try (Formatter formatter = formatter(failingBatchStep())) {
+			formatter.prefetch(List.of(a, b));
+			assertThat(batchCalls).isEqualTo(1);
+
+			assertThat(formatter.compute("a", a)).isEqualTo("A");
+			assertThat(formatter.compute("b", b)).isEqualTo("B");
+			assertThat(singleCalls).isEqualTo(2);
+		}
+	}
+
+	@Test
+	void contentWhichDiffersFromPrefetchIsFormattedAgain() throws Exception {
+		File a = setFile("a.txt").toContent("a");
+		try (Formatter formatter = formatter(upperCaseStep())) {
+			formatter.prefetch(List.of(a));
+			assertThat(formatter.compute("changed", a)).isEqualTo("CHANGED");
+			assertThat(singleCalls).isEqualTo(1);
+		}
+	}
+
+	@Test
+	void problemsAreReportedPerFile() throws Exception {
+		File ok = setFile("ok.txt").toContent("ok");
+		File bad = setFile("bad.txt").toContent("fail");
+		try (Formatter formatter = formatter(upperCaseStep())) {
+			formatter.prefetch(List.of(ok, bad));
+			assertThat(formatter.compute("ok", ok)).isEqualTo("OK");
+			assertThatThrownBy(() -> formatter.compute("fail", bad))
+					.isInstanceOf(IllegalArgumentException.class)
+					.hasMessage("failing as requested");
+			assertThat(singleCalls).isZero();
+		}
+	}
+
+	@Test
+	void prefetchDoesNothingWithoutBatchSteps() throws Exception {
+		File a = setFile("a.txt").toContent("a");
+		try (Formatter formatter = formatter(EndWithNewlineStep.create())) {
+			assertThat(formatter.supportsBatch()).isFalse();
+			formatter.prefetch(List.of(a));
+			assertThat(formatter.compute("a", a)).isEqualTo("a\n");
+		}
+	}
+}
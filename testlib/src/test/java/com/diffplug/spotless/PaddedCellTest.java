@@ -131,4 +131,28 @@ class PaddedCellTest {
 		// length > alphabetic
 		testCase.accept("b,aa,aaa", "b");
 	}
+
+	@Test
+	void dirtyStateRemembersPaddedCell() throws IOException {
+		assertPaddedCell(input -> "A", "A", true, false);
+		assertPaddedCell(input -> "A", "CCC", false, false);
+		// the canonical form of a cycle is clean, but only padded cell could tell
+		assertPaddedCell(input -> input.equals("A") ? "B" : "A", "A", true, true);
+		assertPaddedCell(input -> input.equals("A") ? "B" : "A", "CCC", false, true);
+		assertPaddedCell(input -> input + " ", "", false, true);
+	}
+
+	private void assertPaddedCell(SerializedFunction<String, String> step, String input, boolean clean, boolean paddedCell) throws IOException {
+		try (Formatter formatter = Formatter.builder()
+				.lineEndingsPolicy(LineEnding.UNIX.createPolicy())
+				.encoding(StandardCharsets.UTF_8)
+				.steps(List.of(NeverUpToDateStep.create("step", step))).build()) {
+			File file = new File(rootFolder, "input");
+			Files.write(file.toPath(), input.getBytes(StandardCharsets.UTF_8));
+
+			DirtyState dirtyState = DirtyState.of(formatter, file);
+			Assertions.assertEquals(clean, dirtyState.isClean());
+			Assertions.assertEquals(paddedCell, dirtyState.isPaddedCell());
+		}
+	}
 }
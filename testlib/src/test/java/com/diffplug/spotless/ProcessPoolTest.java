@@ -0,0 +1,101 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.condition.OS.WINDOWS;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+
+@DisabledOnOs(WINDOWS)
+class ProcessPoolTest {
+	/** Sends a line to {@code cat} and reads it back. */
+	private static String echo(ProcessRunner.LongRunningProcess process, String line) throws IOException {
+		process.getOutputStream().write((line + "\n").getBytes(StandardCharsets.UTF_8));
+		process.getOutputStream().flush();
+		InputStream input = process.getInputStream();
+		StringBuilder builder = new StringBuilder();
+		int c;
+		while ((c = input.read()) != '\n') {
+			if (c == -1) {
+				throw new EOFException();
+			}
+			builder.append((char) c);
+		}
+		return builder.toString();
+	}
+
+	@Test
+	void dispatchesConcurrently() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (ProcessPool pool = ProcessPool.create(2, null, null, List.of("cat"))) {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 20; ++i) {
+				String line = "line" + i;
+				results.add(executor.submit(() -> pool.call(process -> echo(process, line))));
+			}
+			for (int i = 0; i < 20; ++i) {
+				assertThat(results.get(i).get()).isEqualTo("line" + i);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	void restartsDeadProcess() throws Exception {
+		try (ProcessPool pool = ProcessPool.create(1, null, null, List.of("cat"))) {
+			pool.call(process -> process.destroyForcibly().waitFor());
+			String result = pool.call(process -> echo(process, "after"));
+			assertThat(result).isEqualTo("after");
+		}
+	}
+
+	@Test
+	void retriesOnceAfterCrash() throws Exception {
+		AtomicInteger attempts = new AtomicInteger();
+		try (ProcessPool pool = ProcessPool.create(1, null, null, List.of("cat"))) {
+			String result = pool.call(process -> {
+				if (attempts.getAndIncrement() == 0) {
+					process.destroyForcibly().waitFor();
+				}
+				return echo(process, "retried");
+			});
+			assertThat(result).isEqualTo("retried");
+			assertThat(attempts.get()).isEqualTo(2);
+		}
+	}
+
+	@Test
+	void closedPoolCannotBeUsed() {
+		ProcessPool pool = ProcessPool.create(1, null, null, List.of("cat"));
+		pool.close();
+		assertThatThrownBy(() -> pool.call(process -> echo(process, "closed"))).isInstanceOf(IllegalStateException.class);
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.condition.OS.WINDOWS;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
+
+class TimeoutFormatterStepTest {
+	/** Uppercases its input, but hangs on content which says so. */
+	private static class HangingStep implements FormatterStep {
+		private static final long serialVersionUID = 1L;
+
+		int closed;
+
+		@Override
+		public String getName() {
+			return "hanging";
+		}
+
+		@Override
+		public String format(String rawUnix, File file) throws Exception {
+			if (rawUnix.equals("hang")) {
+				Thread.sleep(Long.MAX_VALUE);
+			}
+			return rawUnix.toUpperCase();
+		}
+
+		@Override
+		public void close() {
+			++closed;
+		}
+	}
+
+	/** Uppercases its input, but ignores interrupts while it is stuck on content which says so. */
+	private static class StubbornStep implements FormatterStep {
+		private static final long serialVersionUID = 1L;
+
+		static final CountDownLatch release = new CountDownLatch(1);
+		static final AtomicInteger formatting = new AtomicInteger();
+		static final AtomicInteger closed = new AtomicInteger();
+		static final AtomicInteger closedWhileFormatting = new AtomicInteger();
+		static final AtomicInteger touchedWhileStuck = new AtomicInteger();
+
+		transient volatile boolean stuck;
+
+		@Override
+		public String getName() {
+			return "stubborn";
+		}
+
+		@Override
+		public String format(String rawUnix, File file) {
+			formatting.incrementAndGet();
+			try {
+				while (rawUnix.equals("stuck")) {
+					stuck = true;
+					try {
+						release.await();
+						break;
+					} catch (InterruptedException e) {
+						// ignored on purpose
+					}
+				}
+				stuck = false;
+				return rawUnix.toUpperCase();
+			} finally {
+				formatting.decrementAndGet();
+			}
+		}
+
+		@Override
+		public boolean supportsBatch() {
+			if (stuck) {
+				touchedWhileStuck.incrementAndGet();
+			}
+			return false;
+		}
+
+		@Override
+		public boolean isReusable() {
+			if (stuck) {
+				touchedWhileStuck.incrementAndGet();
+			}
+			return true;
+		}
+
+		@Override
+		public void close() {
+			if (formatting.get() > 0) {
+				closedWhileFormatting.incrementAndGet();
+			}
+			closed.incrementAndGet();
+		}
+	}
+
+	@Test
+	void formatsWithinBudget() throws Exception {
+		try (FormatterStep step = new HangingStep().withTimeout(Duration.ofSeconds(10), true)) {
+			assertThat(step.format("abc", new File("a.txt"))).isEqualTo("ABC");
+			assertThat(step.getName()).isEqualTo("hanging");
+		}
+	}
+
+	@Test
+	void restartsAfterTimeout() throws Exception {
+		HangingStep delegate = new HangingStep();
+		FormatterStep step = delegate.withTimeout(Duration.ofMillis(200), true);
+		assertThatThrownBy(() -> step.format("hang", new File("hung.txt")))
+				.isInstanceOf(TimeoutException.class)
+				.hasMessageContaining("hung.txt")
+				.hasMessageContaining("restarted");
+		assertThat(delegate.closed).isEqualTo(1);
+		assertThat(step.format("abc", new File("a.txt"))).isEqualTo("ABC");
+		assertThat(step.isReusable()).isTrue();
+		step.close();
+	}
+
+	@Test
+	void stuckStepIsClosedOnlyOnceItStops() throws Exception {
+		FormatterStep step = new StubbornStep().withTimeout(Duration.ofMillis(200), true);
+		assertThatThrownBy(() -> step.format("stuck", new File("stuck.txt"))).isInstanceOf(TimeoutException.class);
+		assertThat(StubbornStep.closed).hasValue(0);
+		// a fresh copy of the step answers and formats the remaining files
+		assertThat(step.supportsBatch()).isFalse();
+		assertThat(step.isReusable()).isTrue();
+		assertThat(step.format("abc", new File("a.txt"))).isEqualTo("ABC");
+		assertThat(StubbornStep.touchedWhileStuck).hasValue(0);
+
+		StubbornStep.release.countDown();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (StubbornStep.closed.get() == 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(StubbornStep.closed).hasValue(1);
+		step.close();
+		assertThat(StubbornStep.closed).hasValue(2);
+		assertThat(StubbornStep.closedWhileFormatting).hasValue(0);
+	}
+
+	/** Runs a shell which writes its pid and then hangs, through a {@link ProcessRunner} which is closed with the step. */
+	private static class SubprocessStep implements FormatterStep {
+		private static final long serialVersionUID = 1L;
+
+		private final File pidFile;
+		private transient ProcessRunner runner;
+
+		SubprocessStep(File pidFile) {
+			this.pidFile = pidFile;
+		}
+
+		@Override
+		public String getName() {
+			return "subprocess";
+		}
+
+		@Override
+		public synchronized String format(String rawUnix, File file) throws Exception {
+			if (runner == null) {
+				runner = new ProcessRunner();
+			}
+			return runner.exec("sh", "-c", "echo $$ > '" + pidFile + "'; exec sleep 600").stdOutUtf8();
+		}
+
+		@Override
+		public synchronized void close() {
+			if (runner != null) {
+				runner.close();
+				runner = null;
+			}
+		}
+	}
+
+	@Test
+	@DisabledOnOs(WINDOWS)
+	void timedOutSubprocessIsKilled(@TempDir File tempDir) throws Exception {
+		File pidFile = new File(tempDir, "pid");
+		FormatterStep step = new SubprocessStep(pidFile).withTimeout(Duration.ofSeconds(2), true);
+		assertThatThrownBy(() -> step.format("abc", new File("a.txt"))).isInstanceOf(TimeoutException.class);
+		long pid = Long.parseLong(Files.readString(pidFile.toPath()).trim());
+		Optional<ProcessHandle> process = ProcessHandle.of(pid);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (process.map(ProcessHandle::isAlive).orElse(false) && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(process.map(ProcessHandle::isAlive).orElse(false)).isFalse();
+		step.close();
+	}
+
+	@Test
+	void disabledAfterTimeoutWithoutRestart() throws Exception {
+		HangingStep delegate = new HangingStep();
+		FormatterStep step = delegate.withTimeout(Duration.ofMillis(200), false);
+		assertThat(step.isReusable()).isTrue();
+		assertThatThrownBy(() -> step.format("hang", new File("hung.txt"))).isInstanceOf(TimeoutException.class);
+		// an equal step, e.g. of the next build, must not inherit the disabled one
+		assertThat(step.isReusable()).isFalse();
+		assertThatThrownBy(() -> step.format("abc", new File("a.txt")))
+				.isInstanceOf(TimeoutException.class)
+				.hasMessageContaining("disabled")
+				.hasMessageContaining("hung.txt");
+		step.close();
+	}
+
+	@Test
+	void propagatesExceptions() {
+		FormatterStep step = new HangingStep() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public String format(String rawUnix, File file) {
+				throw new IllegalArgumentException("bad input");
+			}
+		}.withTimeout(Duration.ofSeconds(10), true);
+		assertThatThrownBy(() -> step.format("abc", new File("a.txt")))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessage("bad input");
+	}
+}
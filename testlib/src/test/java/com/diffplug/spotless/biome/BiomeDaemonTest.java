@@ -0,0 +1,95 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.biome;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.diffplug.spotless.FormatterStep;
+
+/** Uses a shell script in place of Biome, which records the daemon commands it receives. */
+@DisabledOnOs(OS.WINDOWS)
+class BiomeDaemonTest {
+	@TempDir
+	Path dir;
+
+	private Path exe;
+	private Path running;
+	private Path log;
+
+	@BeforeEach
+	void createExe() throws IOException {
+		running = dir.resolve("running");
+		log = dir.resolve("log");
+		exe = dir.resolve("biome");
+		Files.writeString(exe, "#!/bin/sh\n"
+				+ "case \"$1\" in\n"
+				+ "start)\n"
+				+ "  if [ -f '" + running + "' ]; then echo 'The server was already running'; else touch '" + running + "'; echo 'The server was successfully started'; fi ;;\n"
+				+ "stop)\n"
+				+ "  echo stop >> '" + log + "'; rm -f '" + running + "' ;;\n"
+				+ "format)\n"
+				+ "  echo \"$2\" >> '" + log + "'; tr a-z A-Z ;;\n"
+				+ "esac\n");
+		assertThat(exe.toFile().setExecutable(true)).isTrue();
+	}
+
+	private FormatterStep step() {
+		return BiomeStep.withExePath(exe.toString()).withDaemon(true).create();
+	}
+
+	@Test
+	void daemonStartedHereIsStoppedByItsLastUser() throws Exception {
+		FormatterStep first = step();
+		FormatterStep second = step();
+		assertThat(first.format("abc", new File("a.js"))).isEqualTo("ABC");
+		assertThat(second.format("def", new File("b.js"))).isEqualTo("DEF");
+		assertThat(Files.readAllLines(log)).containsExactly("--use-server", "--use-server");
+
+		first.close();
+		assertThat(Files.readAllLines(log)).doesNotContain("stop");
+		second.close();
+		assertThat(Files.readAllLines(log)).endsWith("stop");
+		assertThat(running).doesNotExist();
+	}
+
+	@Test
+	void daemonStartedElsewhereIsLeftRunning() throws Exception {
+		Files.createFile(running);
+		FormatterStep step = step();
+		assertThat(step.format("abc", new File("a.js"))).isEqualTo("ABC");
+		step.close();
+		assertThat(Files.readAllLines(log)).containsExactly("--use-server");
+		assertThat(running).exists();
+	}
+
+	@Test
+	void spawnedDaemonIsRecognizedFromTheStartOutput() {
+		assertThat(BiomeStep.spawnedDaemon("The server was successfully started")).isTrue();
+		assertThat(BiomeStep.spawnedDaemon("The server was already running")).isFalse();
+		assertThat(BiomeStep.spawnedDaemon("")).isFalse();
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.cpp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.diffplug.spotless.FormatterFunc;
+import com.diffplug.spotless.FormatterStep;
+
+/** Uses a shell script in place of clang-format, which removes a leading space and records its invocations. */
+@DisabledOnOs(OS.WINDOWS)
+class ClangFormatBatchTest {
+	@TempDir
+	Path dir;
+
+	private Path exe;
+	private Path log;
+
+	@BeforeEach
+	void createExe() throws IOException {
+		log = dir.resolve("log");
+		exe = dir.resolve("clang-format");
+		Files.writeString(exe, "#!/bin/sh\n"
+				+ "if [ \"$1\" = --version ]; then echo 'clang-format version 10.0.1'; exit 0; fi\n"
+				+ "echo \"$#\" >> '" + log + "'\n"
+				+ "files=''\n"
+				+ "for f in \"$@\"; do case \"$f\" in --*) ;; *) files=\"$files $f\" ;; esac; done\n"
+				+ "if [ -z \"$files\" ]; then files='" + dir.resolve("stdin") + "'; cat > $files; fi\n"
+				+ "for f in $files; do\n"
+				+ "  echo \"<?xml version='1.0'?>\"\n"
+				+ "  if grep -q '(' \"$f\"; then echo \"<replacements xml:space='preserve' incomplete_format='true'>\"; else echo \"<replacements xml:space='preserve' incomplete_format='false'>\"; fi\n"
+				+ "  case \"$(head -c 1 \"$f\")\" in ' ') echo \"<replacement offset='0' length='1'></replacement>\" ;; esac\n"
+				+ "  echo '</replacements>'\n"
+				+ "done\n");
+		assertThat(exe.toFile().setExecutable(true)).isTrue();
+	}
+
+	private FormatterStep step(String style) {
+		return ClangFormatStep.withVersion("10.0.1").withPathToExe(exe.toString()).withStyle(style).withReplacementsXml(true).create();
+	}
+
+	@Test
+	void formatsManyFilesWithOneInvocation() throws Exception {
+		try (FormatterStep step = step("LLVM")) {
+			assertThat(step.supportsBatch()).isTrue();
+			List<FormatterFunc.BatchResult> results = step.formatBatch(List.of(" a;\n", "b;\n", "c(\n"), List.of(new File("a.c"), new File("b.c"), new File("c.c")));
+			assertThat(results.get(0).get()).isEqualTo("a;\n");
+			assertThat(results.get(1).get()).isEqualTo("b;\n");
+			assertThatThrownBy(() -> results.get(2).get()).hasMessageContaining("syntax error");
+			// the style and replacements flags, and one temporary copy per file
+			assertThat(Files.readAllLines(log)).containsExactly("5");
+		}
+	}
+
+	@Test
+	void styleFromFilesIsFormattedPerFile() throws Exception {
+		try (FormatterStep step = step("file")) {
+			assertThat(step.supportsBatch()).isFalse();
+			assertThat(step.format(" a;\n", new File("a.c"))).isEqualTo("a;\n");
+		}
+	}
+
+	@Test
+	void replacementsXmlIsPartOfEquality() {
+		FormatterStep regular = ClangFormatStep.withVersion("10.0.1").withPathToExe(exe.toString()).withStyle("LLVM").create();
+		assertThat(step("LLVM")).isNotEqualTo(regular);
+	}
+}
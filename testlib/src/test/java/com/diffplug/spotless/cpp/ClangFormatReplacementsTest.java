@@ -0,0 +1,82 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.cpp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ClangFormatReplacementsTest {
+	@Test
+	void noReplacementsMeansClean() {
+		ClangFormatReplacements replacements = ClangFormatReplacements.parse("<?xml version='1.0'?>\n<replacements xml:space='preserve' incomplete_format='false'>\n</replacements>\n");
+		assertThat(replacements.isEmpty()).isTrue();
+		assertThat(replacements.applyTo("int a;\n")).isEqualTo("int a;\n");
+	}
+
+	@Test
+	void appliesReplacementsWithEntities() {
+		String xml = "<?xml version='1.0'?>\n" +
+				"<replacements xml:space='preserve' incomplete_format='false'>\n" +
+				"<replacement offset='3' length='2'> </replacement>\n" +
+				"<replacement offset='10' length='0'>&#10;  </replacement>\n" +
+				"<replacement offset='14' length='1'></replacement>\n" +
+				"</replacements>\n";
+		ClangFormatReplacements replacements = ClangFormatReplacements.parse(xml);
+		assertThat(replacements.isEmpty()).isFalse();
+		assertThat(replacements.applyTo("int  a() {b();  }")).isEqualTo("int a() {\n  b(); }");
+	}
+
+	@Test
+	void offsetsAreUtf8Bytes() {
+		String xml = "<replacements xml:space='preserve'>\n" +
+				"<replacement offset='5' length='2'>&lt;&amp;&gt;</replacement>\n" +
+				"</replacements>";
+		// 'ü' takes two bytes in UTF-8
+		assertThat(ClangFormatReplacements.parse(xml).applyTo("\"ü\";  x")).isEqualTo("\"ü\";<&>x");
+	}
+
+	@Test
+	void parsesOneElementPerFile() {
+		String xml = "<?xml version='1.0'?>\n" +
+				"<replacements xml:space='preserve' incomplete_format='false'>\n" +
+				"<replacement offset='0' length='1'></replacement>\n" +
+				"</replacements>\n" +
+				"<?xml version='1.0'?>\n" +
+				"<replacements xml:space='preserve' incomplete_format='false'>\n" +
+				"</replacements>\n";
+		List<ClangFormatReplacements> all = ClangFormatReplacements.parseAll(xml);
+		assertThat(all).hasSize(2);
+		assertThat(all.get(0).applyTo(" a")).isEqualTo("a");
+		assertThat(all.get(1).isEmpty()).isTrue();
+		assertThatThrownBy(() -> ClangFormatReplacements.parse(xml)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void incompleteFormatIsAnError() {
+		ClangFormatReplacements replacements = ClangFormatReplacements.parse("<replacements xml:space='preserve' incomplete_format='true'>\n</replacements>");
+		assertThatThrownBy(() -> replacements.applyTo("int a(")).isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("syntax error");
+	}
+
+	@Test
+	void rejectsUnexpectedOutput() {
+		assertThatThrownBy(() -> ClangFormatReplacements.parse("int a;\n")).isInstanceOf(IllegalArgumentException.class);
+	}
+}
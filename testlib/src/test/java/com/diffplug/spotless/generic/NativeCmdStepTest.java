@@ -15,13 +15,20 @@
  */
 package com.diffplug.spotless.generic;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assumptions.assumeThat;
 
 import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 
+import com.diffplug.spotless.FormatterFunc;
 import com.diffplug.spotless.FormatterStep;
 import com.diffplug.spotless.ResourceHarness;
 import com.diffplug.spotless.StepHarnessWithFile;
@@ -36,4 +43,48 @@ public class NativeCmdStepTest extends ResourceHarness {
 		StepHarnessWithFile.forStep(this, step)
 				.testResource("native_cmd/dirty.txt", "native_cmd/clean.txt");
 	}
+
+	@Test
+	public void testStreaming() throws Exception {
+		File python = new File("/usr/bin/python3");
+		assumeThat(python).exists();
+		File script = setFile("streaming.py").toResource("native_cmd/streaming.py");
+		FormatterStep step = NativeCmdStep.createStreaming("format-native", python, List.of(script.getAbsolutePath()), Duration.ofSeconds(30));
+		try (StepHarnessWithFile harness = StepHarnessWithFile.forStep(this, step)) {
+			harness.testResource("native_cmd/dirty.txt", "native_cmd/clean.txt")
+					.testResource("native_cmd/clean.txt", "native_cmd/clean.txt");
+		}
+		try (FormatterStep failing = NativeCmdStep.createStreaming("format-native", python, List.of(script.getAbsolutePath()), Duration.ofSeconds(30))) {
+			assertThatThrownBy(() -> failing.format("placeholder", newFile("dirty.fail")))
+					.hasMessageContaining("failed with status 1")
+					.hasMessageContaining("cannot format");
+		}
+	}
+
+	@Test
+	public void testStreamingWithSeveralInstances() throws Exception {
+		File python = new File("/usr/bin/python3");
+		assumeThat(python).exists();
+		File script = setFile("streaming.py").toResource("native_cmd/streaming.py");
+		try (FormatterStep step = NativeCmdStep.createStreaming("format-native", python, List.of(script.getAbsolutePath()), Duration.ofSeconds(30), 3)) {
+			assertThat(step.supportsBatch()).isTrue();
+			List<String> contents = new ArrayList<>();
+			List<File> files = new ArrayList<>();
+			for (int i = 0; i < 30; i++) {
+				contents.add("pid");
+				files.add(newFile("file" + i + ".txt"));
+			}
+			contents.add("placeholder");
+			files.add(newFile("last.fail"));
+			List<FormatterFunc.BatchResult> results = step.formatBatch(contents, files);
+			assertThat(results).hasSize(31);
+			Set<String> pids = new HashSet<>();
+			for (FormatterFunc.BatchResult result : results.subList(0, 30)) {
+				pids.add(result.get());
+			}
+			// every instance took a share of the files
+			assertThat(pids).hasSizeGreaterThan(1);
+			assertThatThrownBy(results.get(30)::get).hasMessageContaining("cannot format");
+		}
+	}
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.npm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.diffplug.spotless.npm.NpmFormatterStepStateBase.ServerProcessInfo;
+
+/** Uses a fake eslint server, which forgets configs on request, to check when the full config is sent. */
+class EslintConfigKeyTest {
+	@TempDir
+	File projectDir;
+
+	/** Keeps the configs it was sent, answers requests with only a config key it doesn't know with 409. */
+	private static class FakeEslintServer implements NpmServerClient {
+		final List<String> requests = new ArrayList<>();
+		final Set<Object> knownKeys = new HashSet<>();
+		final List<Object> tsConfigRootDirs = new ArrayList<>();
+		int failWithStatus;
+
+		@Override
+		public synchronized String postJson(String endpoint, Map<String, Object> jsonParams) {
+			Object key = jsonParams.get("eslint_config_key");
+			boolean fullConfig = jsonParams.containsKey("eslint_override_config");
+			requests.add(fullConfig ? "full" : "key");
+			if (jsonParams.containsKey("ts_config_root_dir")) {
+				tsConfigRootDirs.add(jsonParams.get("ts_config_root_dir"));
+			}
+			if (failWithStatus != 0) {
+				throw new SimpleRestClient.SimpleRestResponseException(failWithStatus, "failed", "Unexpected response status code at " + endpoint);
+			}
+			if (fullConfig) {
+				knownKeys.add(key);
+			} else if (!knownKeys.contains(key)) {
+				throw new SimpleRestClient.SimpleRestResponseException(EslintRestService.UNKNOWN_CONFIG_KEY_STATUS, "unknown config key", "Unexpected response status code at " + endpoint);
+			}
+			return "formatted " + jsonParams.get("file_content");
+		}
+
+		@Override
+		public String post(String endpoint) {
+			throw new UnsupportedOperationException(endpoint);
+		}
+	}
+
+	private final FakeEslintServer server = new FakeEslintServer();
+
+	private EslintFormatterStep.EslintFilePathPassingFormatterFunc func(NpmServerPool<EslintRestService> servers) {
+		return new EslintFormatterStep.EslintFilePathPassingFormatterFunc(projectDir, new EslintConfig(null, "module.exports = {};"), servers);
+	}
+
+	private NpmServerPool<EslintRestService> servers() {
+		return new NpmServerPool<>(1, () -> ServerProcessInfo.persistent("1", "secret"), client -> new EslintRestService(server));
+	}
+
+	@Test
+	void fullConfigIsSentOnlyOnce() throws Exception {
+		try (NpmServerPool<EslintRestService> servers = servers()) {
+			EslintFormatterStep.EslintFilePathPassingFormatterFunc func = func(servers);
+			assertThat(func.applyWithFile("a", new File(projectDir, "a.js"))).isEqualTo("formatted a");
+			assertThat(func.applyWithFile("b", new File(projectDir, "b.js"))).isEqualTo("formatted b");
+			assertThat(server.requests).containsExactly("full", "key");
+		}
+	}
+
+	@Test
+	void fullConfigIsSentAgainOnceTheServerForgotIt() throws Exception {
+		try (NpmServerPool<EslintRestService> servers = servers()) {
+			EslintFormatterStep.EslintFilePathPassingFormatterFunc func = func(servers);
+			func.applyWithFile("a", new File(projectDir, "a.js"));
+			// the server evicted the ESLint instance of the config from its cache
+			server.knownKeys.clear();
+			assertThat(func.applyWithFile("b", new File(projectDir, "b.js"))).isEqualTo("formatted b");
+			assertThat(func.applyWithFile("c", new File(projectDir, "c.js"))).isEqualTo("formatted c");
+			assertThat(server.requests).containsExactly("full", "key", "full", "key");
+		}
+	}
+
+	@Test
+	void tsConfigRootDirIsAbsoluteForAServerOfAnotherSubproject() throws Exception {
+		File subproject = new File(projectDir, "sub");
+		File tsConfig = new File(subproject, "tsconfig.json");
+		Files.createDirectories(subproject.toPath());
+		Files.writeString(tsConfig.toPath(), "{}");
+		try (NpmServerPool<EslintRestService> servers = servers()) {
+			new EslintFormatterStep.EslintFilePathPassingFormatterFunc(projectDir,
+					new EslintTypescriptConfig(null, "module.exports = {};", null), servers).applyWithFile("a", new File(projectDir, "a.ts"));
+			new EslintFormatterStep.EslintFilePathPassingFormatterFunc(subproject,
+					new EslintTypescriptConfig(null, "module.exports = {};", tsConfig), servers).applyWithFile("b", new File(subproject, "b.ts"));
+			assertThat(server.tsConfigRootDirs).containsExactly(projectDir.getAbsolutePath(), subproject.getAbsolutePath());
+		}
+	}
+
+	@Test
+	void otherErrorsAreNotResent() throws Exception {
+		try (NpmServerPool<EslintRestService> servers = servers()) {
+			EslintFormatterStep.EslintFilePathPassingFormatterFunc func = func(servers);
+			func.applyWithFile("a", new File(projectDir, "a.js"));
+			server.failWithStatus = 500;
+			assertThatThrownBy(() -> func.applyWithFile("b", new File(projectDir, "b.js")))
+					.isInstanceOf(SimpleRestClient.SimpleRestResponseException.class)
+					.hasMessageContaining("HTTP 500");
+			assertThat(server.requests).containsExactly("full", "key");
+		}
+	}
+}
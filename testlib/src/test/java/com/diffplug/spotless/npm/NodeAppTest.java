@@ -0,0 +1,147 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.npm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.diffplug.spotless.ProcessRunner;
+
+class NodeAppTest {
+	private static final String PACKAGE_JSON = "{\"name\": \"prettier\"}";
+	private static final String OK = "ok";
+
+	@TempDir
+	File folder;
+
+	private final List<String> calls = new ArrayList<>();
+	private final Queue<String> outputs = new ArrayDeque<>();
+
+	@Test
+	void packageLockIsInstalledOffline() {
+		npmInstall("{}", OK);
+		assertThat(calls).containsExactly("ci --offline");
+	}
+
+	@Test
+	void packageLockIsInstalledFromTheRegistryIfTheCacheLacksPackages() {
+		npmInstall("{}", "npm error code ENOTCACHED", OK);
+		assertThat(calls).containsExactly("ci --offline", "ci --prefer-offline");
+	}
+
+	@Test
+	void failingPackageLockFallsBackToInstall() {
+		npmInstall("{}", "npm error code ENOTCACHED", "npm error code E404", OK);
+		assertThat(calls).containsExactly("ci --offline", "ci --prefer-offline", "install --prefer-offline");
+	}
+
+	@Test
+	void packageLockOutOfSyncFallsBackToInstallRightAway() {
+		npmInstall("{}", "npm error code EUSAGE", OK);
+		assertThat(calls).containsExactly("ci --offline", "install --prefer-offline");
+	}
+
+	@Test
+	void missingPackageLockIsNotWrittenIntoTheProject() {
+		NodeApp app = npmInstall(null, OK);
+		assertThat(calls).containsExactly("install --prefer-offline");
+		assertThat(app.nodeServerLayout.packageLockJsonFile()).isFile();
+		assertThat(packageLockFile()).doesNotExist();
+	}
+
+	private File packageLockFile() {
+		return new File(folder, "project/config/package-lock.json");
+	}
+
+	/** Installs with the given package-lock.json content, while npm answers with the given outputs, failing unless they are {@link #OK}. */
+	private NodeApp npmInstall(String packageLockContent, String... outputs) {
+		this.outputs.addAll(List.of(outputs));
+		NpmConfig npmConfig = new NpmConfig(PACKAGE_JSON, "", null, packageLockContent);
+		NodeServerLayout layout = new NodeServerLayout(new File(folder, "build"), PACKAGE_JSON, "", packageLockContent);
+		NpmFormatterStepLocations locations = new NpmFormatterStepLocations(new File(folder, "project"), new File(folder, "build"), null,
+				new NpmPathResolver(null, null, null, List.of(), packageLockFile()));
+		NodeApp app = new NodeApp(layout, npmConfig, locations, new FakeNpm());
+		app.prepareNodeAppLayout();
+		app.npmInstall();
+		return app;
+	}
+
+	private final class FakeNpm implements NpmProcessFactory {
+		@Override
+		public NpmProcess createNpmInstallProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, OnlinePreferrence onlinePreferrence) {
+			return process("install " + onlinePreferrence.option(), nodeServerLayout);
+		}
+
+		@Override
+		public NpmProcess createNpmCiProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, OnlinePreferrence onlinePreferrence) {
+			return process("ci " + onlinePreferrence.option(), nodeServerLayout);
+		}
+
+		private NpmProcess process(String command, NodeServerLayout nodeServerLayout) {
+			return new NpmProcess() {
+				@Override
+				public String describe() {
+					return command;
+				}
+
+				@Override
+				public ProcessRunner.Result waitFor() {
+					calls.add(command);
+					String output = outputs.remove();
+					ProcessRunner.Result result = new ProcessRunner.Result(List.of("npm", command), output.equals(OK) ? 0 : 1, output.getBytes(StandardCharsets.UTF_8), null);
+					if (result.exitCode() != 0) {
+						throw new NpmProcessException("npm " + command + " failed", result);
+					}
+					try {
+						// like npm, which writes the package-lock.json of what it installed
+						Files.writeString(nodeServerLayout.packageLockJsonFile().toPath(), "{}");
+					} catch (IOException e) {
+						throw new NpmProcessException("npm " + command + " failed", e);
+					}
+					return result;
+				}
+			};
+		}
+
+		@Override
+		public NpmLongRunningProcess createNpmServeProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, UUID nodeServerInstanceId, boolean nodeCompileCache) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public NpmLongRunningProcess createNodeStdioServeProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, boolean nodeCompileCache) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public NpmProcess createNodeDaemonStartProcess(NodeServerLayout nodeServerLayout, NpmFormatterStepLocations formatterStepLocations, String nodeServerInstanceId, Duration idleTimeout, boolean nodeCompileCache) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
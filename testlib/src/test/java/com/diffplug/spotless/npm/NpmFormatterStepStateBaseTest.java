@@ -0,0 +1,89 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.npm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.diffplug.spotless.FormatterFunc;
+
+class NpmFormatterStepStateBaseTest {
+	private static final class State extends NpmFormatterStepStateBase {
+		@Serial
+		private static final long serialVersionUID = 1L;
+
+		State(NpmServerOptions serverOptions) throws IOException {
+			super("test", new NpmConfig("{}", "", null),
+					new NpmFormatterStepLocations(new File("project"), new File("build"), null, new NpmPathResolver(null, null, null, List.of())),
+					serverOptions);
+		}
+
+		@Override
+		public FormatterFunc createFormatterFunc() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	@Test
+	void poolSizeIsNotPartOfTheEquality() throws IOException {
+		byte[] single = toBytes(new State(NpmServerOptions.defaults()));
+		byte[] pooled = toBytes(new State(NpmServerOptions.defaults().withServerPoolSize(4)));
+		assertThat(pooled).isEqualTo(single);
+	}
+
+	@Test
+	void nodeCompileCacheIsNotPartOfTheEquality() throws IOException {
+		byte[] cached = toBytes(new State(NpmServerOptions.defaults()));
+		byte[] uncached = toBytes(new State(NpmServerOptions.defaults().withNodeCompileCache(false)));
+		assertThat(uncached).isEqualTo(cached);
+	}
+
+	@Test
+	void transportIsPartOfTheEquality() throws IOException {
+		byte[] http = toBytes(new State(NpmServerOptions.defaults()));
+		byte[] stdio = toBytes(new State(NpmServerOptions.defaults().withStdioTransport(true)));
+		assertThat(stdio).isNotEqualTo(http);
+	}
+
+	@Test
+	void runtimeOptionsSurviveTheRoundtrip() throws Exception {
+		NpmServerOptions pooled = NpmServerOptions.defaults().withServerPoolSize(4).withNodeCompileCache(false);
+		byte[] bytes = toBytes(new NpmFormatterStepStateBase.RoundtripState<>(new State(pooled)));
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			NpmFormatterStepStateBase.RoundtripState<?> roundtrip = (NpmFormatterStepStateBase.RoundtripState<?>) in.readObject();
+			assertThat(roundtrip.equalityState().serverOptions()).isEqualTo(pooled);
+		}
+	}
+
+	private static byte[] toBytes(Serializable state) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(state);
+		}
+		return bytes.toByteArray();
+	}
+}
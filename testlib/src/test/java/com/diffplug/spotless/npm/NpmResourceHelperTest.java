@@ -0,0 +1,49 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.npm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+class NpmResourceHelperTest {
+	@TempDir
+	File folder;
+
+	@Test
+	@DisabledOnOs(OS.WINDOWS)
+	void ownerOnlyFileCanOnlyBeReadByItsOwner() throws IOException {
+		File secret = new File(folder, "server.secret");
+		Files.writeString(secret.toPath(), "old");
+		NpmResourceHelper.writeOwnerOnlyFile(secret, "new");
+		assertThat(Files.readString(secret.toPath())).isEqualTo("new");
+		assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(secret.toPath()))).isEqualTo("rw-------");
+	}
+
+	@Test
+	void secretsAreRandom() {
+		String secret = NpmResourceHelper.randomSecret();
+		assertThat(secret).hasSize(64).isNotEqualTo(NpmResourceHelper.randomSecret());
+	}
+}
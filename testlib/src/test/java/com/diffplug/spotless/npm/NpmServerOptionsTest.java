@@ -0,0 +1,64 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.npm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+class NpmServerOptionsTest {
+	@Test
+	void defaultsStartOneServerPerBuildOverHttp() {
+		NpmServerOptions defaults = NpmServerOptions.defaults();
+		assertThat(defaults.serverPoolSize()).isEqualTo(1);
+		assertThat(defaults.stdioTransport()).isFalse();
+		assertThat(defaults.persistentServer()).isFalse();
+		assertThat(defaults.nodeCompileCache()).isTrue();
+	}
+
+	@Test
+	void nodeCompileCacheCanBeTurnedOff() {
+		NpmServerOptions options = NpmServerOptions.defaults().withServerPoolSize(2).withNodeCompileCache(false);
+		assertThat(options.nodeCompileCache()).isFalse();
+		assertThat(options.serverPoolSize()).isEqualTo(2);
+		assertThat(options).isNotEqualTo(NpmServerOptions.defaults().withServerPoolSize(2));
+		assertThat(options.withoutRuntimeOptions()).isEqualTo(NpmServerOptions.defaults());
+	}
+
+	@Test
+	void persistentServerHasAnIdleTimeout() {
+		NpmServerOptions options = NpmServerOptions.defaults().withPersistentServerIdleTimeout(Duration.ofMinutes(5));
+		assertThat(options.persistentServer()).isTrue();
+		assertThat(options.persistentServerIdleTimeout()).isEqualTo(Duration.ofMinutes(5));
+		assertThat(options.withPersistentServerIdleTimeout(Duration.ZERO).persistentServer()).isFalse();
+		assertThat(options).isEqualTo(NpmServerOptions.defaults().withPersistentServerIdleTimeout(Duration.ofMinutes(5)));
+	}
+
+	@Test
+	void persistentServerNeedsHttp() {
+		assertThatThrownBy(() -> NpmServerOptions.defaults().withStdioTransport(true).withPersistentServerIdleTimeout(Duration.ofMinutes(5)))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void rejectsInvalidValues() {
+		assertThatThrownBy(() -> NpmServerOptions.defaults().withServerPoolSize(0)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> NpmServerOptions.defaults().withPersistentServerIdleTimeout(Duration.ofSeconds(-1))).isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.npm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import com.diffplug.spotless.npm.NpmFormatterStepStateBase.ServerProcessInfo;
+
+/** Uses processes which exit right away in place of node servers, so that closing the pool is quick. */
+@DisabledOnOs(OS.WINDOWS)
+class NpmServerPoolTest {
+	private final AtomicInteger startedServers = new AtomicInteger();
+
+	private NpmServerPool<TsFmtRestService> pool(int size) {
+		return new NpmServerPool<>(size, () -> {
+			int port = 10000 + startedServers.incrementAndGet();
+			Process process = new ProcessBuilder("true").start();
+			return new ServerProcessInfo(process, Integer.toString(port), new File("server-" + port + ".port"));
+		}, TsFmtRestService::new);
+	}
+
+	@Test
+	void sequentialCallsUseASingleServer() throws Exception {
+		try (NpmServerPool<TsFmtRestService> pool = pool(4)) {
+			assertThat(startedServers).hasValue(0);
+			TsFmtRestService first = pool.call(service -> service);
+			TsFmtRestService second = pool.call(service -> service);
+			assertThat(second).isSameAs(first);
+			assertThat(startedServers).hasValue(1);
+		}
+	}
+
+	@Test
+	void concurrentCallsStartMoreServers() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try (NpmServerPool<TsFmtRestService> pool = pool(2)) {
+			CountDownLatch bothBusy = new CountDownLatch(2);
+			Set<TsFmtRestService> used = ConcurrentHashMap.newKeySet();
+			List<Future<?>> calls = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				calls.add(executor.submit(() -> pool.call(service -> {
+					used.add(service);
+					bothBusy.countDown();
+					return bothBusy.await(10, TimeUnit.SECONDS);
+				})));
+			}
+			for (Future<?> call : calls) {
+				assertThat(call.get()).isEqualTo(true);
+			}
+			assertThat(used).hasSize(2);
+			assertThat(startedServers).hasValue(2);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void partitionedCallsKeepTheOrder() throws Exception {
+		try (NpmServerPool<TsFmtRestService> pool = pool(3)) {
+			List<Integer> results = pool.callPartitioned(10, (service, from, to) -> {
+				List<Integer> partition = new ArrayList<>();
+				for (int i = from; i < to; i++) {
+					partition.add(i);
+				}
+				return partition;
+			});
+			assertThat(results).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+		}
+	}
+
+	@Test
+	void closedPoolRejectsCalls() throws Exception {
+		NpmServerPool<TsFmtRestService> pool = pool(1);
+		pool.call(service -> service);
+		pool.close();
+		assertThatThrownBy(() -> pool.call(service -> service))
+				.isInstanceOf(IllegalStateException.class);
+	}
+
+	@Test
+	void sharedPoolStaysOpenUntilItsLastUserClosesIt() throws Exception {
+		Object key = new Object();
+		NpmServerPool<TsFmtRestService> first = NpmServerPool.shared(key, () -> pool(1));
+		NpmServerPool<TsFmtRestService> second = NpmServerPool.shared(key, () -> pool(1));
+		assertThat(second).isSameAs(first);
+		TsFmtRestService service = first.call(s -> s);
+		first.close();
+		assertThat(second.call(s -> s)).isSameAs(service);
+		assertThat(startedServers).hasValue(1);
+		second.close();
+		assertThatThrownBy(() -> second.call(s -> s)).isInstanceOf(IllegalStateException.class);
+
+		NpmServerPool<TsFmtRestService> third = NpmServerPool.shared(key, () -> pool(1));
+		try {
+			assertThat(third).isNotSameAs(first);
+		} finally {
+			third.close();
+		}
+	}
+
+	@Test
+	void crashedServerIsReplacedByANewOne() throws Exception {
+		try (NpmServerPool<TsFmtRestService> pool = pool(1)) {
+			TsFmtRestService crashed = pool.call(service -> service);
+			TsFmtRestService replacement = pool.call(service -> {
+				if (service == crashed) {
+					throw new SimpleRestClient.SimpleRestIOException(new IOException("Connection refused"));
+				}
+				return service;
+			});
+			assertThat(replacement).isNotSameAs(crashed);
+			assertThat(pool.call(service -> service)).isSameAs(replacement);
+			assertThat(startedServers).hasValue(2);
+		}
+	}
+
+	@Test
+	void serverWhichKeepsFailingIsNotTriedForever() throws Exception {
+		try (NpmServerPool<TsFmtRestService> pool = pool(1)) {
+			AtomicInteger calls = new AtomicInteger();
+			assertThatThrownBy(() -> pool.call(service -> {
+				calls.incrementAndGet();
+				throw new SimpleRestClient.SimpleRestIOException(new IOException("Connection reset"));
+			})).isInstanceOf(SimpleRestClient.SimpleRestIOException.class);
+			assertThat(calls).hasValue(2);
+			assertThat(startedServers).hasValue(2);
+		}
+	}
+
+	@Test
+	void serverWhichAnsweredWithAnErrorIsKept() throws Exception {
+		try (NpmServerPool<TsFmtRestService> pool = pool(1)) {
+			TsFmtRestService first = pool.call(service -> service);
+			assertThatThrownBy(() -> pool.call(service -> {
+				throw new SimpleRestClient.SimpleRestResponseException(500, "syntax error", "Unexpected response status code");
+			})).isInstanceOf(SimpleRestClient.SimpleRestResponseException.class);
+			assertThat(pool.call(service -> service)).isSameAs(first);
+			assertThat(startedServers).hasValue(1);
+		}
+	}
+
+	@Test
+	void sizeMustBePositive() {
+		assertThatThrownBy(() -> pool(0)).isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.npm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.diffplug.spotless.tag.NpmTest;
+
+/** Runs {@code common-stdio.js} with an upper-casing endpoint in place of a real formatter. */
+@NpmTest
+class NpmStdioClientTest {
+	private static final String UPPER_SERVE_JS = "\napp.post(\"/upper/format\", async (req, res) => {\n" +
+			"\tconsole.log(\"logging must not end up in the response\");\n" +
+			"\tif (req.body.file_content === \"fail\") {\n" +
+			"\t\tres.status(501).send(\"cannot format \" + req.body.name);\n" +
+			"\t\treturn;\n" +
+			"\t}\n" +
+			"\tres.set(\"Content-Type\", \"text/plain\");\n" +
+			"\tres.send(req.body.file_content.toUpperCase() + req.body.name);\n" +
+			"});\n";
+
+	@TempDir
+	File tempDir;
+
+	private Process process;
+	private NpmStdioClient client;
+
+	@BeforeEach
+	void startServer() throws Exception {
+		File serveJs = new File(tempDir, "serve.js");
+		String common = NpmResourceHelper.readUtf8StringFromClasspath(NpmStdioClient.class,
+				"/com/diffplug/spotless/npm/common-stdio.js",
+				"/com/diffplug/spotless/npm/common-batch.js");
+		NpmResourceHelper.writeUtf8StringToFile(serveJs, common + UPPER_SERVE_JS);
+		process = new ProcessBuilder("node", serveJs.getAbsolutePath())
+				.redirectError(ProcessBuilder.Redirect.DISCARD)
+				.start();
+		client = new NpmStdioClient(process.getOutputStream(), process.getInputStream());
+	}
+
+	@AfterEach
+	void stopServer() throws Exception {
+		client.close();
+		if (!process.waitFor(10, TimeUnit.SECONDS)) {
+			process.destroyForcibly();
+		}
+	}
+
+	@Test
+	void sendsFileContentUnescaped() throws Exception {
+		assertThat(client.postJson("/upper/format", params("ünïcode \"quoted\"\n\\ 😀", "!")))
+				.isEqualTo("ÜNÏCODE \"QUOTED\"\n\\ 😀!");
+		assertThat(client.postJson("/upper/format", params("again", "?"))).isEqualTo("AGAIN?");
+	}
+
+	@Test
+	void reportsStatusAndBodyOfFailures() throws Exception {
+		assertThatThrownBy(() -> client.postJson("/upper/format", params("fail", "x")))
+				.isInstanceOfSatisfying(SimpleRestClient.SimpleRestResponseException.class, e -> {
+					assertThat(e.getStatusCode()).isEqualTo(501);
+					assertThat(e.getResponseMessage()).isEqualTo("cannot format x");
+				});
+		assertThatThrownBy(() -> client.post("/unknown"))
+				.isInstanceOfSatisfying(SimpleRestClient.SimpleRestResponseException.class,
+						e -> assertThat(e.getStatusCode()).isEqualTo(404));
+		assertThat(client.postJson("/upper/format", params("still usable", ""))).isEqualTo("STILL USABLE");
+	}
+
+	@Test
+	void shutdownEndsTheProcess() throws Exception {
+		client.post("/shutdown");
+		assertThat(process.waitFor(10, TimeUnit.SECONDS)).isTrue();
+	}
+
+	private static Map<String, Object> params(String fileContent, String name) {
+		Map<String, Object> params = new LinkedHashMap<>();
+		params.put("file_content", fileContent);
+		params.put("name", name);
+		return params;
+	}
+}
@@ -125,6 +125,29 @@ class PrettierFormatterStepTest extends NpmFormatterStepCommonTests {
 			}
 		}
 
+		@ParameterizedTest(name = "{index}: per-directory config is resolved for each file with prettier {0}")
+		@ValueSource(strings = {PRETTIER_VERSION_2, PRETTIER_VERSION_3})
+		void perDirectoryConfigIsResolvedForEachFile(String prettierVersion) throws Exception {
+			setFile(".prettierrc").toContent("{\"tabWidth\": 4}");
+			newFolder("sub");
+			setFile("sub/.prettierrc").toContent("{\"tabWidth\": 2, \"overrides\": [{\"files\": \"*.ts\", \"options\": {\"semi\": false}}]}");
+
+			final FormatterStep formatterStep = PrettierFormatterStep.create(
+					ImmutableMap.of("prettier", prettierVersion),
+					TestProvisioner.mavenCentral(),
+					projectDir(),
+					buildDir(),
+					null,
+					npmPathResolver(),
+					new PrettierConfig(null, ImmutableMap.of("singleQuote", true), true)); // inline options apply on top
+
+			try (StepHarnessWithFile stepHarness = StepHarnessWithFile.forStep(this, formatterStep)) {
+				stepHarness.test("top.js", "if (a) { b(\"c\"); }", "if (a) {\n    b('c');\n}\n");
+				stepHarness.test("sub/nested.js", "if (a) { b(\"c\"); }", "if (a) {\n  b('c');\n}\n");
+				stepHarness.test("sub/nested.ts", "if (a) { b(\"c\"); }", "if (a) {\n  b('c')\n}\n");
+			}
+		}
+
 		@Test
 		void verifyPrettierErrorMessageIsRelayed() throws Exception {
 			FormatterStep formatterStep = PrettierFormatterStep.create(
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.npm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PrettierPerDirectoryConfigTest {
+	@TempDir
+	File folder;
+
+	@Test
+	void configFilesOfTheProjectAndAboveAreFound() throws IOException {
+		File project = new File(folder, "repo/project");
+		File build = new File(project, "build/spotless");
+		write(folder, "repo/package.json");
+		write(project, ".prettierrc");
+		write(project, "src/a/.prettierrc.json");
+		write(project, "src/b/prettier.config.js");
+		write(project, "src/b/package.json");
+		write(project, "src/b/index.ts");
+		write(project, "node_modules/prettier/package.json");
+		write(project, "build/spotless/prettier-node-modules-0123/package.json");
+		write(project, "other/prettier-node-modules-4567/package.json");
+
+		assertThat(PrettierFormatterStep.perDirectoryConfigFiles(project, build)).containsExactly(
+				new File(folder, "repo/package.json"),
+				new File(project, ".prettierrc"),
+				new File(project, "src/a/.prettierrc.json"),
+				new File(project, "src/b/package.json"),
+				new File(project, "src/b/prettier.config.js"));
+	}
+
+	private static void write(File dir, String path) throws IOException {
+		File file = new File(dir, path);
+		Files.createDirectories(file.getParentFile().toPath());
+		Files.writeString(file.toPath(), "{}");
+	}
+}
@@ -19,6 +19,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
@@ -28,6 +29,8 @@ import java.util.stream.Collectors;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
 
 import com.diffplug.common.base.Suppliers;
 import com.diffplug.spotless.ResourceHarness;
@@ -119,6 +122,24 @@ class ShadowCopyTest extends ResourceHarness {
 		assertAllFilesAreEqualButNotSameAbsolutePath(copiedEntry, shadowCopyFile);
 	}
 
+	@Test
+	@DisabledOnOs(OS.WINDOWS)
+	void copiesAreHardLinksAndKeepSymbolicLinks() throws IOException {
+		File folderWithRandomFile = newFolderWithRandomFile();
+		String fileName = folderWithRandomFile.list()[0];
+		File bin = new File(folderWithRandomFile, ".bin");
+		Files.createDirectories(bin.toPath());
+		Files.createSymbolicLink(new File(bin, "tool").toPath(), Path.of("..", fileName));
+		shadowCopy.addEntry("someEntry", folderWithRandomFile);
+		File copiedEntry = shadowCopy.copyEntryInto("someEntry", folderWithRandomFile.getName(), newFolder("copyDest"));
+
+		File shadowCopyFile = shadowCopy.getEntry("someEntry", folderWithRandomFile.getName());
+		Assertions.assertThat(Files.isSameFile(new File(copiedEntry, fileName).toPath(), new File(shadowCopyFile, fileName).toPath())).isTrue();
+		Path copiedLink = copiedEntry.toPath().resolve(".bin").resolve("tool");
+		Assertions.assertThat(Files.isSymbolicLink(copiedLink)).isTrue();
+		Assertions.assertThat(Files.readSymbolicLink(copiedLink)).isEqualTo(Path.of("..", fileName));
+	}
+
 	@Test
 	void anAddedEntryExistsAfterAdding() throws IOException {
 		File folderWithRandomFile = newFolderWithRandomFile();
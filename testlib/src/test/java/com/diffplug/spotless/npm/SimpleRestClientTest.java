@@ -0,0 +1,181 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.npm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Uses a server which closes the connection without answering on request, like a node server closing an idle connection. */
+class SimpleRestClientTest {
+	private static final String CLOSE = "close";
+
+	private ServerSocket serverSocket;
+	private Thread serverThread;
+	private final List<String> received = new CopyOnWriteArrayList<>();
+	private final List<String> secrets = new CopyOnWriteArrayList<>();
+	private final Queue<String> answers = new ArrayDeque<>();
+
+	@BeforeEach
+	void start() throws IOException {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		serverThread = new Thread(this::serve, "fake-npm-server");
+		serverThread.setDaemon(true);
+		serverThread.start();
+	}
+
+	@AfterEach
+	void stop() throws IOException {
+		serverSocket.close();
+	}
+
+	private void serve() {
+		try {
+			while (true) {
+				try (Socket socket = serverSocket.accept()) {
+					while (answer(socket)) {
+						// keep the connection alive for the next request
+					}
+				} catch (SocketException e) {
+					if (serverSocket.isClosed()) {
+						return;
+					}
+				}
+			}
+		} catch (IOException e) {
+			// the test is over
+		}
+	}
+
+	/** Answers one request, returns false if the connection was closed. */
+	private boolean answer(Socket socket) throws IOException {
+		InputStream in = socket.getInputStream();
+		String head = readHead(in);
+		if (head == null) {
+			return false;
+		}
+		int contentLength = 0;
+		for (String line : head.split("\r\n")) {
+			if (line.toLowerCase(Locale.ROOT).startsWith("content-length:")) {
+				contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+			} else if (line.toLowerCase(Locale.ROOT).startsWith(SimpleRestClient.SECRET_HEADER.toLowerCase(Locale.ROOT) + ":")) {
+				secrets.add(line.substring(SimpleRestClient.SECRET_HEADER.length() + 1).trim());
+			}
+		}
+		in.readNBytes(contentLength);
+		received.add(head.substring(head.indexOf(' ') + 1, head.indexOf(' ', head.indexOf(' ') + 1)));
+		String answer;
+		synchronized (answers) {
+			answer = answers.isEmpty() ? "ok" : answers.remove();
+		}
+		if (answer.equals(CLOSE)) {
+			socket.close();
+			return false;
+		}
+		byte[] body = answer.getBytes(StandardCharsets.UTF_8);
+		OutputStream out = socket.getOutputStream();
+		out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+		out.write(body);
+		out.flush();
+		return true;
+	}
+
+	private static String readHead(InputStream in) throws IOException {
+		ByteArrayOutputStream head = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != -1) {
+			head.write(b);
+			byte[] bytes = head.toByteArray();
+			int n = bytes.length;
+			if (n >= 4 && bytes[n - 4] == '\r' && bytes[n - 3] == '\n' && bytes[n - 2] == '\r' && bytes[n - 1] == '\n') {
+				return head.toString(StandardCharsets.UTF_8);
+			}
+		}
+		return null;
+	}
+
+	private SimpleRestClient client() {
+		return SimpleRestClient.forBaseUrl("http://127.0.0.1:" + serverSocket.getLocalPort());
+	}
+
+	private void answerWith(String... answers) {
+		synchronized (this.answers) {
+			this.answers.addAll(List.of(answers));
+		}
+	}
+
+	@Test
+	void formatRequestIsRepeatedIfTheConnectionClosedWithoutAnswer() {
+		answerWith(CLOSE, "formatted");
+		assertThat(client().postJson("/prettier/format", Map.of("file_content", "a"))).isEqualTo("formatted");
+		assertThat(received).containsExactly("/prettier/format", "/prettier/format");
+	}
+
+	@Test
+	void formatRequestIsRepeatedOnlyOnce() {
+		answerWith(CLOSE, CLOSE);
+		assertThatThrownBy(() -> client().postJson("/prettier/format", Map.of("file_content", "a")))
+				.isInstanceOf(SimpleRestClient.SimpleRestIOException.class);
+		assertThat(received).containsExactly("/prettier/format", "/prettier/format");
+	}
+
+	@Test
+	void shutdownIsNotRepeated() {
+		answerWith(CLOSE);
+		assertThatThrownBy(() -> client().post("/shutdown"))
+				.isInstanceOf(SimpleRestClient.SimpleRestIOException.class);
+		assertThat(received).containsExactly("/shutdown");
+	}
+
+	@Test
+	void secretIsSentWithEachRequest() {
+		SimpleRestClient client = SimpleRestClient.forBaseUrl("http://127.0.0.1:" + serverSocket.getLocalPort(), "s3cr3t");
+		client.post("/ping");
+		client.postJson("/prettier/format", Map.of("file_content", "a"));
+		assertThat(secrets).containsExactly("s3cr3t", "s3cr3t");
+
+		client().post("/ping");
+		assertThat(secrets).hasSize(2);
+	}
+
+	@Test
+	void onlyConnectionsClosedBeforeAResponseAreRepeated() {
+		assertThat(SimpleRestClient.isClosedBeforeResponse(new IOException("HTTP/1.1 header parser received no bytes"))).isTrue();
+		assertThat(SimpleRestClient.isClosedBeforeResponse(new IOException(new SocketException("Connection reset")))).isTrue();
+		assertThat(SimpleRestClient.isClosedBeforeResponse(new HttpTimeoutException("request timed out"))).isFalse();
+		assertThat(SimpleRestClient.isClosedBeforeResponse(new IOException("fixed content-length: 10, bytes received: 5"))).isFalse();
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2025 DiffPlug
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.diffplug.spotless.npm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class StandardNpmProcessFactoryTest {
+	private static final File LAYOUT = new File("build/prettier-node-modules-0123");
+
+	@Test
+	void compileCacheIsKeptInTheLayout() {
+		Map<String, String> environment = StandardNpmProcessFactory.withNodeCompileCache(Map.of("PATH", "/bin"), LAYOUT, true);
+		assertThat(environment).containsEntry("PATH", "/bin")
+				.containsEntry("NODE_COMPILE_CACHE", new File(LAYOUT, ".node-compile-cache").getAbsolutePath());
+	}
+
+	@Test
+	void compileCacheCanBeTurnedOff() {
+		Map<String, String> environment = StandardNpmProcessFactory.withNodeCompileCache(Map.of("PATH", "/bin"), LAYOUT, false);
+		assertThat(environment).isEqualTo(Map.of("PATH", "/bin"));
+	}
+}